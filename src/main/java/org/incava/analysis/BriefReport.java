@@ -12,6 +12,10 @@ public class BriefReport extends Report {
         super(writer);
     }
 
+    public Report createReport(Writer writer) {
+        return new BriefReport(writer);
+    }
+
     /**
      * Returns the given difference, in brief format.
      */
@@ -0,0 +1,79 @@
+package org.incava.analysis;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+/**
+ * The lines of file contents, without end-of-line characters. The line offsets
+ * are found with one pass over the contents, and a line is copied to a string
+ * only when it is requested, such as when it is written in a report.
+ */
+public class ContentLines extends AbstractList<String> implements RandomAccess {
+    private final CharSequence contents;
+
+    /**
+     * The offset of the start of each line, with an extra element for the
+     * offset after the last line.
+     */
+    private int[] starts;
+
+    /**
+     * The offset of the end of each line, excluding the end-of-line.
+     */
+    private int[] ends;
+
+    private int size;
+
+    public ContentLines(CharSequence contents) {
+        this.contents = contents;
+        this.starts = new int[64];
+        this.ends = new int[64];
+        this.size = 0;
+        findLines();
+    }
+
+    protected void findLines() {
+        int len = contents.length();
+        int start = 0;
+        int pos = 0;
+        while (pos < len) {
+            char ch = contents.charAt(pos);
+            if (ch == '\n' || ch == '\r') {
+                addLine(start, pos);
+                if (ch == '\r' && pos + 1 < len && contents.charAt(pos + 1) == '\n') {
+                    ++pos;
+                }
+                start = pos + 1;
+            }
+            ++pos;
+        }
+        if (start < len) {
+            addLine(start, len);
+        }
+    }
+
+    protected void addLine(int start, int end) {
+        if (size == starts.length) {
+            int[] newStarts = new int[size * 2];
+            int[] newEnds = new int[size * 2];
+            System.arraycopy(starts, 0, newStarts, 0, size);
+            System.arraycopy(ends, 0, newEnds, 0, size);
+            starts = newStarts;
+            ends = newEnds;
+        }
+        starts[size] = start;
+        ends[size] = end;
+        ++size;
+    }
+
+    public String get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + "; size: " + size);
+        }
+        return contents.subSequence(starts[index], ends[index]).toString();
+    }
+
+    public int size() {
+        return size;
+    }
+}
@@ -1,17 +1,14 @@
 package org.incava.analysis;
 
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
-import java.io.StringReader;
 import java.io.Writer;
 import java.util.Collection;
-import java.util.EnumSet;
 import java.util.List;
 import org.incava.ijdk.io.*;
 import org.incava.ijdk.lang.*;
 import org.incava.ijdk.util.ANSI;
+import org.incava.log.Log;
 
 /**
  * Reports differences in long form.
@@ -23,16 +20,16 @@ public class DetailedReport extends Report {
     public static int tabWidth = 4;
 
     /**
-     * The reader associated with the from-file, which is used for reproducing
-     * the code associated with a reference.
+     * The contents of the from-file, which is used for reproducing the code
+     * associated with a reference. This is shared with the parser.
      */
-    private Reader fromFileRdr;
+    private CharSequence fromFileContents;
 
     /**
-     * The reader associated with the to-file, which is used for reproducing the
-     * code associated with a reference.
+     * The contents of the to-file, which is used for reproducing the code
+     * associated with a reference. This is shared with the parser.
      */
-    private Reader toFileRdr;
+    private CharSequence toFileContents;
 
     /**
      * The from-contents, separated by new lines, which are included at the end
@@ -62,36 +59,48 @@ public class DetailedReport extends Report {
         this.showContext = showContext;
         this.highlight = highlight;
     }
+
+    public Report createReport(Writer writer) {
+        return new DetailedReport(writer, showContext, highlight);
+    }
     
     /**
      * Associates the given string source with the list of differences, including
      * that are adding to this report later, i.e., prior to <code>flush</code>.
      */
-    public void reset(String fromFileName, String fromContents, String toFileName, String toContents) {
+    public void reset(String fromFileName, CharSequence fromContents, String toFileName, CharSequence toContents) {
         super.reset(fromFileName, fromContents, toFileName, toContents);
 
         this.fromContents = null;
         this.toContents = null;
         
-        fromFileRdr = new StringReader(fromContents);
-        toFileRdr = new StringReader(toContents);
+        fromFileContents = fromContents;
+        toFileContents = toContents;
     }
 
-    protected List<String> readReader(Reader rdr) {
-        return ReaderExt.readLines(rdr, EnumSet.noneOf(ReadOptionType.class));
+    /**
+     * Clears the differences, and releases the contents of the files, which
+     * are no longer needed once the differences are written.
+     */
+    protected void clear() {
+        super.clear();
+        fromFileContents = null;
+        toFileContents = null;
+        fromContents = null;
+        toContents = null;
     }
 
     public void writeDifferences() {
         try {
-            tr.Ace.stack("flushing differences");
+            Log.stack("flushing differences");
             Collection<FileDiff> diffs = getDifferences();
 
             if (fromContents == null) {
-                fromContents = readReader(fromFileRdr);
+                fromContents = new ContentLines(fromFileContents);
             }
 
             if (toContents == null) {
-                toContents = readReader(toFileRdr);
+                toContents = new ContentLines(toFileContents);
             }
 
             DiffWriter dw = (showContext ? (highlight ? 
@@ -0,0 +1,49 @@
+package org.incava.analysis;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The maximum number of differences to find, shared by a report and those
+ * created from it, such as for comparisons run in other threads. Once the
+ * maximum is reached, adding any more differences, to any of the reports,
+ * throws a <code>LimitReachedException</code>, which stops the comparison.
+ */
+public class DiffLimit {
+    private final int max;
+    private final AtomicInteger count;
+    private volatile boolean reached;
+
+    public DiffLimit(int max) {
+        this.max = max;
+        this.count = new AtomicInteger(0);
+        this.reached = false;
+    }
+
+    /**
+     * Notes that a difference is being added, throwing an exception if it is
+     * the last one allowed, or if the limit has already been reached.
+     */
+    public void added() {
+        if (reached || count.incrementAndGet() >= max) {
+            reached = true;
+            throw new LimitReachedException(max);
+        }
+    }
+
+    /**
+     * Notes that a difference was removed, such as when it is replaced by one
+     * spanning it and the next change on the same line, and so no longer
+     * counts toward the maximum.
+     */
+    public void removed() {
+        count.decrementAndGet();
+    }
+
+    public boolean isReached() {
+        return reached;
+    }
+
+    public int getMaximum() {
+        return max;
+    }
+}
@@ -1,5 +1,8 @@
 package org.incava.analysis;
 
+import java.text.MessageFormat;
+import java.util.HashMap;
+import java.util.Map;
 import net.sourceforge.pmd.ast.Token;
 import org.incava.ijdk.lang.ObjectExt;
 import org.incava.ijdk.text.Location;
@@ -42,10 +45,46 @@ public abstract class FileDiff implements Comparable<FileDiff> {
     }
 
     /**
-     * The message for this reference. This should be only one line, because it
-     * is used in single-line reports.
+     * The formats of the message templates, per thread, since a format cannot
+     * be shared by threads.
      */
-    private final String message;
+    private static final ThreadLocal<Map<String, MessageFormat>> formats = new ThreadLocal<Map<String, MessageFormat>>() {
+        protected Map<String, MessageFormat> initialValue() {
+            return new HashMap<String, MessageFormat>();
+        }
+    };
+
+    /**
+     * Returns the template formatted with the arguments, as by
+     * <code>MessageFormat.format</code>, but with the format of the template
+     * reused.
+     */
+    public static String format(String template, Object[] arguments) {
+        Map<String, MessageFormat> fmts = formats.get();
+        MessageFormat fmt = fmts.get(template);
+        if (fmt == null) {
+            fmt = new MessageFormat(template);
+            fmts.put(template, fmt);
+        }
+        return fmt.format(arguments);
+    }
+
+    /**
+     * The template of the message, such as "method removed: {0}", which is the
+     * same for all references of the same kind.
+     */
+    private final String template;
+
+    /**
+     * The arguments of the template, or null if the template is the message.
+     */
+    private final Object[] arguments;
+
+    /**
+     * The message for this reference, formatted when first requested. This
+     * should be only one line, because it is used in single-line reports.
+     */
+    private String message;
    
     /**
      * The location in the first file.
@@ -82,8 +121,26 @@ public abstract class FileDiff implements Comparable<FileDiff> {
      * @param toLoc       The location range in the to-file.
      */
     public FileDiff(Type type, String message, LocationRange fromLoc, LocationRange toLoc) {
+        this(type, message, null, fromLoc, toLoc);
+    }
+
+    /**
+     * Creates a reference from a message template and its arguments, which are
+     * formatted only when the message is requested, and begin and end
+     * positions.
+     *
+     * @param type        What type this reference is.
+     * @param template    The template of the message applying to this reference.
+     * @param arguments   The arguments of the template, converted to strings
+     *                    when the message is formatted.
+     * @param fromLoc     The location range in the from-file.
+     * @param toLoc       The location range in the to-file.
+     */
+    public FileDiff(Type type, String template, Object[] arguments, LocationRange fromLoc, LocationRange toLoc) {
         this.type           = type;
-        this.message        = message;
+        this.template       = template;
+        this.arguments      = arguments;
+        this.message        = arguments == null ? template : null;
         this.firstLocation  = fromLoc;
         this.secondLocation = toLoc;
     }
@@ -107,6 +164,22 @@ public abstract class FileDiff implements Comparable<FileDiff> {
         this(type, message, toLocationRange(fromStart, fromEnd), toLocationRange(toStart, toEnd));
     }
 
+    /**
+     * Creates a reference from a message template and its arguments, and two
+     * tokens, one in each file.
+     */
+    public FileDiff(Type type, String template, Object[] arguments, Token from, Token to) {
+        this(type, template, arguments, toLocationRange(from, from), toLocationRange(to, to));
+    }
+
+    /**
+     * Creates a reference from a message template and its arguments, and two
+     * beginning and ending tokens.
+     */
+    public FileDiff(Type type, String template, Object[] arguments, Token fromStart, Token fromEnd, Token toStart, Token toEnd) {
+        this(type, template, arguments, toLocationRange(fromStart, fromEnd), toLocationRange(toStart, toEnd));
+    }
+
     /**
      * Compares this reference to another. FileDiffs are sorted in order by
      * their beginning locations, then their end locations.
@@ -131,7 +204,7 @@ public abstract class FileDiff implements Comparable<FileDiff> {
 
         cmp = type.compareTo(other.type);
         if (cmp == 0) {
-            cmp = message.compareTo(other.message);
+            cmp = getMessage().compareTo(other.getMessage());
         }
         return cmp;
     }
@@ -152,8 +225,19 @@ public abstract class FileDiff implements Comparable<FileDiff> {
         }
     }
 
+    /**
+     * Returns a hash of the type and the lines, without formatting the
+     * message. References that are equal have the same type and locations.
+     */
     public int hashCode() {
-        return toString().hashCode();
+        int hash = type.ordinal();
+        hash = 31 * hash + getStartLine(firstLocation);
+        hash = 31 * hash + getStartLine(secondLocation);
+        return hash;
+    }
+
+    protected static int getStartLine(LocationRange lr) {
+        return lr == null || lr.getStart() == null ? 0 : lr.getStart().getLine();
     }
 
     /**
@@ -168,7 +252,7 @@ public abstract class FileDiff implements Comparable<FileDiff> {
         if (secondLocation != null) {
             sb.append(" to: ").append(toString(secondLocation));
         }
-        sb.append("] (").append(message).append(")");
+        sb.append("] (").append(getMessage()).append(")");
         return sb.toString();
     }
 
@@ -212,9 +296,29 @@ public abstract class FileDiff implements Comparable<FileDiff> {
     public abstract void printNoContext(DiffWriter dw, StringBuilder sb);
 
     public String getMessage() {
+        if (message == null) {
+            message = format(template, arguments);
+        }
         return message;
     }
 
+    /**
+     * Returns the template of the message, which identifies the kind of
+     * change. This is the message itself for a reference created with a
+     * message.
+     */
+    public String getTemplate() {
+        return template;
+    }
+
+    /**
+     * Returns the arguments of the template, or null if the reference was
+     * created with a message.
+     */
+    public Object[] getArguments() {
+        return arguments;
+    }
+
     public Type getType() {
         return type;
     }
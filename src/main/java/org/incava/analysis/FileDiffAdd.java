@@ -28,6 +28,18 @@ public class FileDiffAdd extends FileDiff {
         super(Type.ADDED, message, fromStart, fromEnd, toStart, toEnd);
     }
 
+    public FileDiffAdd(String template, Object[] arguments, LocationRange fromLoc, LocationRange toLoc) {
+        super(Type.ADDED, template, arguments, fromLoc, toLoc);
+    }
+
+    public FileDiffAdd(String template, Object[] arguments, Token from, Token to) {
+        super(Type.ADDED, template, arguments, from, to);
+    }
+
+    public FileDiffAdd(String template, Object[] arguments, Token fromStart, Token fromEnd, Token toStart, Token toEnd) {
+        super(Type.ADDED, template, arguments, fromStart, fromEnd, toStart, toEnd);
+    }
+
     public void printContext(DiffWriter dw, StringBuilder sb) {
         dw.printTo(sb, this);
     }
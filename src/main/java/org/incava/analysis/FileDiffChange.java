@@ -28,6 +28,18 @@ public class FileDiffChange extends FileDiff {
         super(Type.CHANGED, message, fromStart, fromEnd, toStart, toEnd);
     }
 
+    public FileDiffChange(String template, Object[] arguments, LocationRange fromLoc, LocationRange toLoc) {
+        super(Type.CHANGED, template, arguments, fromLoc, toLoc);
+    }
+
+    public FileDiffChange(String template, Object[] arguments, Token from, Token to) {
+        super(Type.CHANGED, template, arguments, from, to);
+    }
+
+    public FileDiffChange(String template, Object[] arguments, Token fromStart, Token fromEnd, Token toStart, Token toEnd) {
+        super(Type.CHANGED, template, arguments, fromStart, fromEnd, toStart, toEnd);
+    }
+
     /**
      * Expands a file diff for the given ranges.
      */
@@ -35,6 +47,10 @@ public class FileDiffChange extends FileDiff {
         this(message, fileDiff.getFirstLocation().getStart(), fromLocRg.getEnd(), fileDiff.getSecondLocation().getStart(), toLocRg.getEnd());
     }
 
+    public FileDiffChange(String template, Object[] arguments, FileDiff fileDiff, LocationRange fromLocRg, LocationRange toLocRg) {
+        this(template, arguments, new LocationRange(fileDiff.getFirstLocation().getStart(), fromLocRg.getEnd()), toLocationRange(fileDiff.getSecondLocation().getStart(), toLocRg.getEnd()));
+    }
+
     public void printContext(DiffWriter dw, StringBuilder sb) {
         dw.printFrom(sb, this);
         sb.append(DiffWriter.EOLN);
@@ -27,6 +27,10 @@ public class FileDiffCodeAdded extends FileDiffAdd {
         super(message, fromStart, fromEnd, toStart, toEnd);
     }
 
+    public FileDiffCodeAdded(String template, Object[] arguments, LocationRange fromLoc, LocationRange toLoc) {
+        super(template, arguments, fromLoc, toLoc);
+    }
+
     public void printNoContext(DiffWriter dw, StringBuilder sb) {
         dw.printFrom(sb, this);
         sb.append("---");
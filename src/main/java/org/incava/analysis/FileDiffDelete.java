@@ -30,6 +30,18 @@ public class FileDiffDelete extends FileDiff {
         super(Type.DELETED, message, fromStart, fromEnd, toStart, toEnd);
     }
 
+    public FileDiffDelete(String template, Object[] arguments, LocationRange fromLoc, LocationRange toLoc) {
+        super(Type.DELETED, template, arguments, fromLoc, toLoc);
+    }
+
+    public FileDiffDelete(String template, Object[] arguments, Token from, Token to) {
+        super(Type.DELETED, template, arguments, from, to);
+    }
+
+    public FileDiffDelete(String template, Object[] arguments, Token fromStart, Token fromEnd, Token toStart, Token toEnd) {
+        super(Type.DELETED, template, arguments, fromStart, fromEnd, toStart, toEnd);
+    }
+
     public void printContext(DiffWriter dw, StringBuilder sb) {
         dw.printFrom(sb, this);
     }
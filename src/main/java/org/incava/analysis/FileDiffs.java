@@ -1,26 +1,308 @@
 package org.incava.analysis;
 
-import java.util.TreeSet;
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import org.incava.ijdk.text.Location;
+import org.incava.ijdk.text.LocationRange;
 
 /**
  * A list/set/collection of FileDiffs, which knows that it was added to, even
  * after the set is cleared.
+ *
+ * FileDiffs are appended as they are added, with their locations packed as
+ * ints, and are sorted and made unique only when read, in the same order as
+ * they would be as a sorted set, with the first added of equal ones kept.
  */
-public class FileDiffs extends TreeSet<FileDiff> {
-    public static final long serialVersionUID = 1L;
+public class FileDiffs extends AbstractCollection<FileDiff> {
+    /**
+     * The number of ints packed per FileDiff: for each of its two location
+     * ranges, whether it is present, and the line and column of its start and
+     * of its end.
+     */
+    private static final int KEY_SIZE = 10;
 
+    /**
+     * Denotes a location that is null, which is less than any other.
+     */
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private FileDiff[] diffs;
+    private int[] keys;
+    private int size;
+    private boolean sorted;
     private boolean added;
+    private DiffLimit limit;
 
     public FileDiffs() {
+        diffs = new FileDiff[16];
+        keys = new int[16 * KEY_SIZE];
+        size = 0;
+        sorted = true;
         added = false;
+        limit = null;
     }
 
+    /**
+     * Adds the FileDiff, returning false if it is the same as the last one
+     * added, and otherwise true, even if it is the same as an earlier one,
+     * which is dropped when the FileDiffs are read. If there is a limit, and
+     * this is the last difference allowed, this throws a
+     * <code>LimitReachedException</code>.
+     */
     public boolean add(FileDiff fd) {
+        if (!append(fd)) {
+            return false;
+        }
+        if (limit != null) {
+            limit.added();
+        }
+        return true;
+    }
+
+    /**
+     * Adds the FileDiffs of the buffer, such as one filled in another thread.
+     * If the buffer has the same limit as these, its FileDiffs were counted
+     * toward it when added there, and are not counted again, except that
+     * those dropped here no longer count.
+     */
+    public void addBuffered(FileDiffs buffer) {
+        boolean counted = limit != null && buffer.limit == limit;
+        for (FileDiff fd : buffer) {
+            if (append(fd)) {
+                if (limit != null && !counted) {
+                    limit.added();
+                }
+            }
+            else if (counted) {
+                limit.removed();
+            }
+        }
+    }
+
+    /**
+     * Appends the FileDiff, returning false if it is the same as the last
+     * one.
+     */
+    protected boolean append(FileDiff fd) {
+        added = true;
+        if (size == diffs.length) {
+            diffs = Arrays.copyOf(diffs, size * 2);
+            keys = Arrays.copyOf(keys, size * 2 * KEY_SIZE);
+        }
+        diffs[size] = fd;
+        pack(fd, size);
+        ++size;
+
+        if (sorted && size > 1) {
+            int cmp = compare(size - 2, size - 1);
+            if (cmp == 0) {
+                --size;
+                diffs[size] = null;
+                return false;
+            }
+            sorted = cmp < 0;
+        }
+        return true;
+    }
+
+    /**
+     * Removes the FileDiff and any equal to it. While the FileDiffs are in
+     * order, they are unique, and the one to be removed is usually the one
+     * most recently added, so it is looked for from the end. Each removed no
+     * longer counts toward the limit.
+     */
+    public boolean remove(Object obj) {
+        if (sorted) {
+            for (int idx = size - 1; idx >= 0; --idx) {
+                if (diffs[idx] == obj) {
+                    removeAt(idx);
+                    return true;
+                }
+            }
+        }
+
+        boolean removed = false;
+        for (int idx = size - 1; idx >= 0; --idx) {
+            if (diffs[idx].equals(obj)) {
+                removeAt(idx);
+                removed = true;
+                if (sorted) {
+                    break;
+                }
+            }
+        }
+        return removed;
+    }
+
+    public void clear() {
+        Arrays.fill(diffs, 0, size, null);
+        size = 0;
+        sorted = true;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int size() {
+        sort();
+        return size;
+    }
+
+    /**
+     * Returns the FileDiffs in sorted order, without duplicates.
+     */
+    public Iterator<FileDiff> iterator() {
+        sort();
+        return new Iterator<FileDiff>() {
+            private int idx = 0;
+
+            public boolean hasNext() {
+                return idx < size;
+            }
+
+            public FileDiff next() {
+                if (idx >= size) {
+                    throw new NoSuchElementException();
+                }
+                return diffs[idx++];
+            }
+
+            public void remove() {
+                removeAt(--idx);
+            }
+        };
+    }
+
+    /**
+     * Marks this as having been added to, such as when the differences were
+     * collected and written by a separate report.
+     */
+    public void setAdded() {
         added = true;
-        return super.add(fd);
     }
 
     public boolean wasAdded() {
         return added;
     }
+
+    /**
+     * Sets the maximum number of differences, or null for no maximum.
+     */
+    public void setLimit(DiffLimit limit) {
+        this.limit = limit;
+    }
+
+    public DiffLimit getLimit() {
+        return limit;
+    }
+
+    protected void removeAt(int idx) {
+        System.arraycopy(diffs, idx + 1, diffs, idx, size - idx - 1);
+        System.arraycopy(keys, (idx + 1) * KEY_SIZE, keys, idx * KEY_SIZE, (size - idx - 1) * KEY_SIZE);
+        --size;
+        diffs[size] = null;
+        if (limit != null) {
+            limit.removed();
+        }
+    }
+
+    protected void pack(FileDiff fd, int idx) {
+        int offset = idx * KEY_SIZE;
+        pack(fd.getFirstLocation(), offset);
+        pack(fd.getSecondLocation(), offset + KEY_SIZE / 2);
+    }
+
+    protected void pack(LocationRange lr, int offset) {
+        keys[offset] = lr == null ? 0 : 1;
+        pack(lr == null ? null : lr.getStart(), offset + 1);
+        pack(lr == null ? null : lr.getEnd(), offset + 3);
+    }
+
+    protected void pack(Location loc, int offset) {
+        keys[offset] = loc == null ? NONE : loc.getLine();
+        keys[offset + 1] = loc == null ? NONE : loc.getColumn();
+    }
+
+    /**
+     * Compares the FileDiffs at the indices by their packed locations, and if
+     * those are the same, as FileDiffs.
+     */
+    protected int compare(int a, int b) {
+        int aOffset = a * KEY_SIZE;
+        int bOffset = b * KEY_SIZE;
+        for (int ki = 0; ki < KEY_SIZE; ++ki) {
+            int aKey = keys[aOffset + ki];
+            int bKey = keys[bOffset + ki];
+            if (aKey != bKey) {
+                return aKey < bKey ? -1 : 1;
+            }
+        }
+        return diffs[a].compareTo(diffs[b]);
+    }
+
+    /**
+     * Sorts the FileDiffs, stably, and removes all but the first of those that
+     * are equal.
+     */
+    protected void sort() {
+        if (sorted) {
+            return;
+        }
+
+        int[] order = new int[size];
+        for (int idx = 0; idx < size; ++idx) {
+            order[idx] = idx;
+        }
+        mergeSort(order, new int[size], 0, size);
+
+        FileDiff[] sortedDiffs = new FileDiff[diffs.length];
+        int[] sortedKeys = new int[keys.length];
+        int count = 0;
+        int last = -1;
+        for (int oi = 0; oi < size; ++oi) {
+            int idx = order[oi];
+            if (last < 0 || compare(last, idx) != 0) {
+                sortedDiffs[count] = diffs[idx];
+                System.arraycopy(keys, idx * KEY_SIZE, sortedKeys, count * KEY_SIZE, KEY_SIZE);
+                ++count;
+                last = idx;
+            }
+            else if (limit != null) {
+                // counted when added, but dropped as a duplicate
+                limit.removed();
+            }
+        }
+
+        diffs = sortedDiffs;
+        keys = sortedKeys;
+        size = count;
+        sorted = true;
+    }
+
+    protected void mergeSort(int[] order, int[] tmp, int from, int to) {
+        if (to - from < 2) {
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        mergeSort(order, tmp, from, mid);
+        mergeSort(order, tmp, mid, to);
+        if (compare(order[mid - 1], order[mid]) <= 0) {
+            return;
+        }
+
+        System.arraycopy(order, from, tmp, from, to - from);
+        int left = from;
+        int right = mid;
+        for (int oi = from; oi < to; ++oi) {
+            if (right >= to || (left < mid && compare(tmp[left], tmp[right]) <= 0)) {
+                order[oi] = tmp[left++];
+            }
+            else {
+                order[oi] = tmp[right++];
+            }
+        }
+    }
 }
@@ -0,0 +1,14 @@
+package org.incava.analysis;
+
+/**
+ * Thrown when the maximum number of differences has been found. It is
+ * unchecked, so that it passes through the comparisons of code, members,
+ * types, files, and directories, up to where the run is ended.
+ */
+public class LimitReachedException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    public LimitReachedException(int max) {
+        super("found " + max + (max == 1 ? " difference" : " differences"));
+    }
+}
@@ -0,0 +1,176 @@
+package org.incava.analysis;
+
+import java.text.MessageFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The items, such as methods and fields, removed from and added to all files
+ * of a comparison, from which those moved from one place to another are
+ * found once all files have been compared.
+ */
+public class Moves {
+    public static final String MOVED = "{0} {1} moved from {2} to {3}";
+    public static final String MOVED_AND_CHANGED = "{0} {1} moved from {2} to {3}, and changed";
+
+    /**
+     * Whether to record removed and added items, and report those moved.
+     */
+    public static boolean detectMoves = false;
+
+    /**
+     * An item removed or added, such as a method, by its kind, its name, and
+     * the name of the type, the file, and the line in which it was.
+     */
+    public static class Item {
+        private final String kind;
+        private final String name;
+        private final long fingerprint;
+        private final String container;
+        private final String fileName;
+        private final int line;
+        private boolean matched;
+
+        /**
+         * Creates an item, with its name as its signature, and its fingerprint
+         * as the hash of its tokens.
+         */
+        public Item(String kind, String name, long fingerprint, String container, String fileName, int line) {
+            this.kind = kind;
+            this.name = name;
+            this.fingerprint = fingerprint;
+            this.container = container;
+            this.fileName = fileName;
+            this.line = line;
+            this.matched = false;
+        }
+
+        public String getKey() {
+            return kind + " " + name;
+        }
+
+        public String getFileName() {
+            return fileName;
+        }
+
+        public int getLine() {
+            return line;
+        }
+    }
+
+    /**
+     * An item removed from one place and added to another.
+     */
+    public static class Move {
+        private final Item from;
+        private final Item to;
+
+        public Move(Item from, Item to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public Item getFrom() {
+            return from;
+        }
+
+        public Item getTo() {
+            return to;
+        }
+
+        public boolean isChanged() {
+            return from.fingerprint != to.fingerprint;
+        }
+
+        public String getMessage() {
+            String msg = isChanged() ? MOVED_AND_CHANGED : MOVED;
+            return MessageFormat.format(msg, from.kind, from.name, from.container, to.container);
+        }
+    }
+
+    private final List<Item> removed;
+    private final List<Item> added;
+
+    public Moves() {
+        this.removed = new ArrayList<Item>();
+        this.added = new ArrayList<Item>();
+    }
+
+    public synchronized void removed(Item item) {
+        removed.add(item);
+    }
+
+    public synchronized void added(Item item) {
+        added.add(item);
+    }
+
+    /**
+     * Adds the items of the other, after those of this one.
+     */
+    public synchronized void add(Moves other) {
+        removed.addAll(other.removed);
+        added.addAll(other.added);
+    }
+
+    public synchronized boolean isEmpty() {
+        return removed.isEmpty() || added.isEmpty();
+    }
+
+    /**
+     * Returns the moves, each an added item matched to the first removed item
+     * of the same kind and name, preferring one with the same fingerprint.
+     * The removed items are indexed in one pass, and each added item is looked
+     * up once.
+     */
+    public synchronized List<Move> getMoves() {
+        Map<String, Deque<Item>> byKey = new HashMap<String, Deque<Item>>();
+        Map<String, Deque<Item>> byKeyAndFingerprint = new HashMap<String, Deque<Item>>();
+        for (Item item : removed) {
+            item.matched = false;
+            getDeque(byKey, item.getKey()).add(item);
+            getDeque(byKeyAndFingerprint, item.getKey() + "\0" + item.fingerprint).add(item);
+        }
+
+        List<Move> moves = new ArrayList<Move>();
+        for (Item item : added) {
+            Item from = poll(byKeyAndFingerprint.get(item.getKey() + "\0" + item.fingerprint));
+            if (from == null) {
+                from = poll(byKey.get(item.getKey()));
+            }
+            if (from != null) {
+                from.matched = true;
+                moves.add(new Move(from, item));
+            }
+        }
+        return moves;
+    }
+
+    protected Deque<Item> getDeque(Map<String, Deque<Item>> map, String key) {
+        Deque<Item> deque = map.get(key);
+        if (deque == null) {
+            deque = new ArrayDeque<Item>();
+            map.put(key, deque);
+        }
+        return deque;
+    }
+
+    /**
+     * Returns the first unmatched item, discarding matched ones, each of which
+     * is in both indices.
+     */
+    protected Item poll(Deque<Item> deque) {
+        if (deque != null) {
+            while (!deque.isEmpty()) {
+                Item item = deque.poll();
+                if (!item.matched) {
+                    return item;
+                }
+            }
+        }
+        return null;
+    }
+}
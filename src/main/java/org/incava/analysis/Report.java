@@ -8,6 +8,7 @@ import java.util.Set;
 import java.util.TreeSet;
 import org.incava.ijdk.io.FileExt;
 import org.incava.ijdk.io.IO;
+import org.incava.log.Log;
 
 /**
  * Reports errors (differences), in a format that is determined by the subclass.
@@ -40,6 +41,16 @@ public abstract class Report {
      */
     private FileDiffs differences;
 
+    /**
+     * The counts of files processed.
+     */
+    private final ReportStats stats;
+
+    /**
+     * The items removed and added, for finding those moved.
+     */
+    private final Moves moves;
+
     /**
      * Creates a report for the given writer.
      *
@@ -48,13 +59,15 @@ public abstract class Report {
     public Report(Writer writer) {
         this.writer = writer;
         differences = new FileDiffs();
+        stats = new ReportStats();
+        moves = new Moves();
     }
 
     /**
      * Associates the given string source with the list of differences, including
      * that are adding to this report later, i.e., prior to <code>flush</code>.
      */
-    public void reset(String fromFileName, String fromContents, String toFileName, String toContents) {
+    public void reset(String fromFileName, CharSequence fromContents, String toFileName, CharSequence toContents) {
         this.fromFileName = fromFileName;
         this.toFileName   = toFileName;
     }
@@ -65,10 +78,61 @@ public abstract class Report {
     public abstract void writeDifferences();
 
     /**
-     * Writes all differences, and clears the list.
+     * Creates a report of the same format as this one, sending output to the
+     * given writer. This is used for comparisons that run separately from this
+     * report, such as in another thread, with the output written later via
+     * <code>writeOutput</code>.
+     */
+    public abstract Report createReport(Writer writer);
+
+    /**
+     * Writes output that was produced by a report created by
+     * <code>createReport</code>, and adds that report's statistics and whether
+     * it had differences to this one.
+     */
+    public void writeOutput(Report other, String output) {
+        if (other.differences.wasAdded()) {
+            differences.setAdded();
+        }
+        stats.add(other.stats);
+        moves.add(other.moves);
+        
+        try {
+            writer.write(output);
+            writer.flush();
+        }
+        catch (IOException ioe) {
+        }
+    }
+
+    /**
+     * Sets the maximum number of differences to find, or null for no maximum.
+     * A report created by <code>createReport</code> should be given the same
+     * limit, via <code>getLimit</code>, so that the count is of all of them.
+     */
+    public void setLimit(DiffLimit limit) {
+        differences.setLimit(limit);
+    }
+
+    public DiffLimit getLimit() {
+        return differences.getLimit();
+    }
+
+    /**
+     * Returns whether the maximum number of differences was found, after
+     * which nothing more is written.
+     */
+    public boolean isLimitReached() {
+        DiffLimit limit = differences.getLimit();
+        return limit != null && limit.isReached();
+    }
+
+    /**
+     * Writes all differences, and clears the list. Nothing is written once the
+     * limit, if any, is reached.
      */
     public void flush() {
-        if (hasDifferences()) {
+        if (hasDifferences() && !isLimitReached()) {
             printFileNames();
             writeDifferences();
         }
@@ -79,6 +143,44 @@ public abstract class Report {
         return differences;
     }
 
+    public ReportStats getStats() {
+        return stats;
+    }
+
+    public Moves getMoves() {
+        return moves;
+    }
+
+    /**
+     * Writes the items moved from one place to another, as found among all
+     * those removed and added since this report was created, one per line.
+     */
+    public void writeMoves() {
+        if (moves.isEmpty() || isLimitReached()) {
+            return;
+        }
+
+        try {
+            for (Moves.Move move : moves.getMoves()) {
+                StringBuilder sb = new StringBuilder();
+                sb.append(move.getFrom().getFileName());
+                sb.append(':');
+                sb.append(move.getFrom().getLine());
+                sb.append(" => ");
+                sb.append(move.getTo().getFileName());
+                sb.append(':');
+                sb.append(move.getTo().getLine());
+                sb.append(": ");
+                sb.append(move.getMessage());
+                sb.append(EOLN);
+                writer.write(sb.toString());
+            }
+            writer.flush();
+        }
+        catch (IOException ioe) {
+        }
+    }
+
     public void printFileNames() {
         // only print file names once per report.
         // extend this for unified (file name per line)
@@ -105,9 +207,9 @@ public abstract class Report {
      * Clears the list of differences.
      */
     protected void clear() {
-        tr.Ace.yellow("differences", differences);
+        Log.log("differences", differences);
         differences.clear();
-        tr.Ace.yellow("differences", differences);
+        Log.log("differences", differences);
     }
 
     public boolean hasDifferences() {
@@ -0,0 +1,69 @@
+package org.incava.analysis;
+
+/**
+ * Counts of the files processed for a report.
+ */
+public class ReportStats {
+    /**
+     * The number of file pairs that were parsed and compared.
+     */
+    private int filesCompared;
+
+    /**
+     * The number of file pairs that were identical, and so were not parsed.
+     */
+    private int filesIdentical;
+
+    /**
+     * The number of file pairs that had the same tokens, differing only in
+     * whitespace and comments, and so were not parsed.
+     */
+    private int filesEquivalent;
+
+    public ReportStats() {
+        filesCompared = 0;
+        filesIdentical = 0;
+        filesEquivalent = 0;
+    }
+
+    public void fileCompared() {
+        ++filesCompared;
+    }
+
+    public void fileIdentical() {
+        ++filesIdentical;
+    }
+
+    public void fileEquivalent() {
+        ++filesEquivalent;
+    }
+
+    public int getFilesCompared() {
+        return filesCompared;
+    }
+
+    public int getFilesIdentical() {
+        return filesIdentical;
+    }
+
+    public int getFilesEquivalent() {
+        return filesEquivalent;
+    }
+
+    /**
+     * Adds the counts from the other statistics to this one.
+     */
+    public void add(ReportStats other) {
+        filesCompared += other.filesCompared;
+        filesIdentical += other.filesIdentical;
+        filesEquivalent += other.filesEquivalent;
+    }
+
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("files compared: ").append(filesCompared);
+        sb.append("; identical (not parsed): ").append(filesIdentical);
+        sb.append("; equivalent tokens (not parsed): ").append(filesEquivalent);
+        return sb.toString();
+    }
+}
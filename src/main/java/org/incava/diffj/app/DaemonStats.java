@@ -0,0 +1,99 @@
+package org.incava.diffj.app;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import org.incava.diffj.io.JavaFile;
+import org.incava.diffj.io.ParseCache;
+
+/**
+ * Counts the requests served by the daemon, and the latencies of the most
+ * recent ones, from which percentiles are computed.
+ */
+public class DaemonStats implements DaemonStatsMBean {
+    public static final int MAX_SAMPLES = 1024;
+
+    private final AtomicLong requests;
+    private final AtomicInteger active;
+    private final AtomicLong failed;
+    private final long[] latencies;
+    private int nLatencies;
+    private int nextLatency;
+
+    public DaemonStats() {
+        requests = new AtomicLong();
+        active = new AtomicInteger();
+        failed = new AtomicLong();
+        latencies = new long[MAX_SAMPLES];
+        nLatencies = 0;
+        nextLatency = 0;
+    }
+
+    public void requestStarted() {
+        active.incrementAndGet();
+    }
+
+    public void requestFinished(long nanos, boolean succeeded) {
+        active.decrementAndGet();
+        requests.incrementAndGet();
+        if (!succeeded) {
+            failed.incrementAndGet();
+        }
+        synchronized (latencies) {
+            latencies[nextLatency] = nanos;
+            nextLatency = (nextLatency + 1) % latencies.length;
+            nLatencies = Math.min(nLatencies + 1, latencies.length);
+        }
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public int getActiveRequests() {
+        return active.get();
+    }
+
+    public long getFailedRequests() {
+        return failed.get();
+    }
+
+    public double getLatencyMillis50() {
+        return getLatencyMillis(50);
+    }
+
+    public double getLatencyMillis90() {
+        return getLatencyMillis(90);
+    }
+
+    public double getLatencyMillis99() {
+        return getLatencyMillis(99);
+    }
+
+    /**
+     * Returns the latency at the given percentile, of the most recent
+     * requests, or zero if none have been served.
+     */
+    public double getLatencyMillis(int percentile) {
+        long[] sorted;
+        synchronized (latencies) {
+            sorted = Arrays.copyOf(latencies, nLatencies);
+        }
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        Arrays.sort(sorted);
+        int idx = Math.min(sorted.length - 1, (int)Math.ceil(percentile / 100.0 * sorted.length) - 1);
+        return sorted[Math.max(0, idx)] / 1000000.0;
+    }
+
+    public long getCacheHits() {
+        ParseCache cache = JavaFile.parseCache;
+        return cache == null ? 0 : cache.getHits();
+    }
+
+    public long getCacheMisses() {
+        ParseCache cache = JavaFile.parseCache;
+        return cache == null ? 0 : cache.getMisses();
+    }
+}
@@ -0,0 +1,22 @@
+package org.incava.diffj.app;
+
+/**
+ * The metrics of the daemon, as exposed via JMX.
+ */
+public interface DaemonStatsMBean {
+    public long getRequests();
+
+    public int getActiveRequests();
+
+    public long getFailedRequests();
+
+    public double getLatencyMillis50();
+
+    public double getLatencyMillis90();
+
+    public double getLatencyMillis99();
+
+    public long getCacheHits();
+
+    public long getCacheMisses();
+}
@@ -1,44 +1,82 @@
 package org.incava.diffj.app;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.PrintStream;
 import java.io.Writer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.incava.analysis.BriefReport;
 import org.incava.analysis.DetailedReport;
+import org.incava.analysis.DiffLimit;
 import org.incava.analysis.FileDiffs;
+import org.incava.analysis.LimitReachedException;
+import org.incava.analysis.Moves;
 import org.incava.analysis.Report;
+import org.incava.analysis.ReportStats;
 import org.incava.diffj.*;
+import org.incava.diffj.git.GitRepository;
+import org.incava.diffj.git.RevisionComparison;
+import org.incava.diffj.io.FileComparisons;
+import org.incava.diffj.io.FilePair;
 import org.incava.diffj.io.JavaElementFactory;
 import org.incava.diffj.io.JavaFSElement;
+import org.incava.diffj.io.JavaFile;
+import org.incava.diffj.io.ParseCache;
 import org.incava.diffj.lang.DiffJException;
 import org.incava.ijdk.util.ListExt;
+import org.incava.log.Log;
 
 public class DiffJ {
     private final Report report;
     private int exitValue;
     private final boolean recurseDirectories;
+    private final int jobs;
     private final String fromLabel;
     private final String toLabel;
     private final String fromSource;
     private final String toSource;
     private final JavaElementFactory jef;
     private final FileDiffs fileDiffs;
-    
+    private final PrintStream err;
+    private File workingDirectory;
+    private CharSequence standardInput;
+
     public DiffJ(boolean briefOutput, boolean contextOutput, boolean highlightOutput, 
                  boolean recurseDirectories,
                  String fromLabel, String fromSource,
                  String toLabel, String toSource) {
-        // tr.Ace.set(true, 25, 4, 20, 25);
-        // tr.Ace.setOutput(Log.VERBOSE, Log.LEVEL4);
-        // tr.Ace.setOutput(Log.QUIET,   Log.LEVEL2);
-        // tr.Ace.setVerbose(true);
-        // tr.Ace.stack("this", this, 15);
+        this(briefOutput, contextOutput, highlightOutput, recurseDirectories, 1, fromLabel, fromSource, toLabel, toSource);
+    }
+
+    public DiffJ(boolean briefOutput, boolean contextOutput, boolean highlightOutput, 
+                 boolean recurseDirectories, int jobs,
+                 String fromLabel, String fromSource,
+                 String toLabel, String toSource) {
+        this(new BufferedWriter(new OutputStreamWriter(System.out)), System.err, briefOutput, contextOutput, highlightOutput, recurseDirectories, jobs, fromLabel, fromSource, toLabel, toSource);
+    }
+
+    /**
+     * Creates a DiffJ that writes its output and errors to the given writer
+     * and stream, such as for a request to the daemon.
+     */
+    public DiffJ(Writer writer, PrintStream err,
+                 boolean briefOutput, boolean contextOutput, boolean highlightOutput, 
+                 boolean recurseDirectories, int jobs,
+                 String fromLabel, String fromSource,
+                 String toLabel, String toSource) {
+        // Log.setVerbose(true);
+        // Log.stack("this", this);
 
-        Writer writer = new OutputStreamWriter(System.out);
         this.report = briefOutput ? new BriefReport(writer) : new DetailedReport(writer, contextOutput, highlightOutput);
         this.recurseDirectories = recurseDirectories;
+        this.jobs = jobs;
         this.fromLabel = fromLabel;
         this.toLabel = toLabel;
         this.fromSource = fromSource;
@@ -46,6 +84,45 @@ public class DiffJ {
         this.exitValue = 0;
         this.jef = new JavaElementFactory();
         this.fileDiffs = report.getDifferences();
+        this.err = err;
+        this.workingDirectory = null;
+        this.standardInput = null;
+    }
+
+    /**
+     * Sets the directory against which relative names are resolved, instead
+     * of that of this process.
+     */
+    public void setWorkingDirectory(File dir) {
+        workingDirectory = dir;
+    }
+
+    /**
+     * Sets the contents to be used for the name "-", instead of reading them
+     * from the standard input of this process.
+     */
+    public void setStandardInput(CharSequence contents) {
+        standardInput = contents;
+    }
+
+    /**
+     * Sets the number of differences at which comparison stops, with nothing
+     * more written, and the exit value 1. Zero is no maximum.
+     */
+    public void setMaxDifferences(int max) {
+        setLimit(createLimit(max));
+    }
+
+    /**
+     * Sets the limit of differences, which might be shared with other
+     * comparisons, or null for no maximum.
+     */
+    public void setLimit(DiffLimit limit) {
+        report.setLimit(limit);
+    }
+
+    protected static DiffLimit createLimit(int max) {
+        return max > 0 ? new DiffLimit(max) : null;
     }
 
     protected Report getReport() {
@@ -60,13 +137,25 @@ public class DiffJ {
         exitValue = ev;
     }
 
+    protected JavaFSElement createJavaElement(File file, String label, String source) throws DiffJException {
+        if (file.getName().equals("-") && standardInput != null) {
+            return new JavaFile(label == null ? "-" : label, standardInput, source);
+        }
+        else if (workingDirectory != null && !file.isAbsolute()) {
+            // shown as given, not as resolved:
+            String name = file.getPath();
+            return jef.createElement(new File(workingDirectory, name), label == null ? name : label, source, recurseDirectories, jobs);
+        }
+        return jef.createElement(file, label, source, recurseDirectories, jobs);
+    }
+
     protected JavaFSElement getJavaElement(File file, String label, String source) {
         try {
-            return jef.createElement(file, label, source, recurseDirectories);
+            return createJavaElement(file, label, source);
         }
         catch (DiffJException de) {
             // de.printStackTrace(System.out);
-            System.err.println(de.getMessage());
+            err.println(de.getMessage());
             exitValue = 1;
             return null;
         }
@@ -93,15 +182,52 @@ public class DiffJ {
             return true;
         }
         catch (DiffJException de) {
-            System.err.println(de.getMessage());
+            err.println(de.getMessage());
+            exitValue = 1;
+            return false;
+        }
+        catch (LimitReachedException lre) {
+            Log.log("lre", lre);
             exitValue = 1;
             return false;
         }
     }
 
+    /**
+     * Compares each of the from-files or directories with the to-file, with a
+     * pool of threads, writing the output in the order of the names. The
+     * to-file is read and parsed once, for all of the comparisons.
+     */
+    public void compareElements(List<String> fromNames, final JavaFile toFile) {
+        FileComparisons comparisons = new FileComparisons(jobs);
+        for (final String fromName : fromNames) {
+            comparisons.add(new FilePair() {
+                    public void compare(Report report) throws DiffJException {
+                        JavaFSElement fromElmt = createJavaElement(new File(fromName), fromLabel, fromSource);
+                        fromElmt.compareTo(report, toFile);
+                    }
+                });
+        }
+
+        try {
+            comparisons.run(report);
+        }
+        catch (DiffJException de) {
+            err.println(de.getMessage());
+            exitValue = 1;
+        }
+        catch (LimitReachedException lre) {
+            Log.log("lre", lre);
+            exitValue = 1;
+        }
+        if (fileDiffs.wasAdded()) {
+            exitValue = 1;
+        }
+    }
+
     public void processNames(List<String> names) {
         if (names.size() < 2) {
-            System.err.println("usage: diffj from-file to-file");
+            err.println("usage: diffj from-file to-file");
             exitValue = 1;
             return;
         }
@@ -112,17 +238,223 @@ public class DiffJ {
             return;
         }
 
-        for (int ni = 0; ni < names.size() - 1; ++ni) {
-            if (!compareElements(names.get(ni), toElmt)) {
+        List<String> fromNames = names.subList(0, names.size() - 1);
+        if (jobs > 1 && fromNames.size() > 1 && toElmt instanceof JavaFile) {
+            compareElements(fromNames, (JavaFile)toElmt);
+        }
+        else {
+            for (String fromName : fromNames) {
+                if (!compareElements(fromName, toElmt)) {
+                    break;
+                }
+            }
+        }
+        if (Moves.detectMoves) {
+            report.writeMoves();
+        }
+        Log.log("exitValue", exitValue);
+    }
+
+    /**
+     * Compares the Java files of two revisions in the git repository.
+     */
+    public void processRevisions(String repositoryDir, List<String> revisions) {
+        if (revisions.size() != 2) {
+            err.println("usage: diffj --git repository from-revision to-revision");
+            exitValue = 1;
+            return;
+        }
+
+        try {
+            File repositoryFile = new File(repositoryDir);
+            if (workingDirectory != null && !repositoryFile.isAbsolute()) {
+                repositoryFile = new File(workingDirectory, repositoryDir);
+            }
+            GitRepository repository = new GitRepository(repositoryFile);
+            RevisionComparison comparison = new RevisionComparison(repository, revisions.get(0), fromSource, revisions.get(1), toSource, jobs);
+            comparison.compare(report);
+            if (fileDiffs.wasAdded()) {
+                exitValue = 1;
+            }
+            if (Moves.detectMoves) {
+                report.writeMoves();
+            }
+        }
+        catch (DiffJException de) {
+            err.println(de.getMessage());
+            exitValue = 1;
+        }
+        catch (LimitReachedException lre) {
+            Log.log("lre", lre);
+            exitValue = 1;
+        }
+    }
+
+    /**
+     * Compares the pairs read from the reader, one per line, as
+     * "[-L from-label [-L to-label]] from-file to-file", all in this JVM. Blank
+     * lines and those beginning with "#" are skipped. The output of each pair
+     * is the same as that of a separate invocation; the returned exit value is
+     * the highest of all pairs. The maximum number of differences is for the
+     * whole batch, and once it is reached, no more pairs are compared.
+     */
+    public static int processBatch(BufferedReader reader, Options opts, ReportStats stats) throws IOException {
+        return processBatch(reader, opts, stats, new BufferedWriter(new OutputStreamWriter(System.out)), System.err);
+    }
+
+    /**
+     * Compares the pairs read from the reader, as above, with the output and
+     * errors written to the given writer and stream.
+     */
+    public static int processBatch(BufferedReader reader, Options opts, ReportStats stats, Writer writer, PrintStream err) throws IOException {
+        int batchExitValue = 0;
+        DiffLimit limit = createLimit(opts.getMaxDifferences());
+        String line;
+        while ((line = reader.readLine()) != null) {
+            List<String> args = splitLine(line);
+            if (args.isEmpty() || args.get(0).startsWith("#")) {
+                continue;
+            }
+
+            String fromLabel = null;
+            String toLabel = null;
+            List<String> names = new ArrayList<String>();
+            for (int ai = 0; ai < args.size(); ++ai) {
+                String arg = args.get(ai);
+                if (arg.equals("-L") && ai + 1 < args.size()) {
+                    if (fromLabel == null) {
+                        fromLabel = args.get(++ai);
+                    }
+                    else {
+                        toLabel = args.get(++ai);
+                    }
+                }
+                else if (!arg.equals("-u")) {
+                    // -u is passed by svn, and ignored, as on the command line
+                    names.add(arg);
+                }
+            }
+
+            DiffJ diffj = createDiffJ(opts, fromLabel, toLabel, limit, writer, err);
+            diffj.processNames(names);
+            stats.add(diffj.getReport().getStats());
+            batchExitValue = Math.max(batchExitValue, diffj.getExitValue());
+            if (limit != null && limit.isReached()) {
                 break;
             }
         }
-        tr.Ace.onGreen("exitValue", "" + exitValue);
+        return batchExitValue;
+    }
+
+    /**
+     * Splits the line into arguments, separated by whitespace, as a shell
+     * would for names with single or double quotes, or escaped characters.
+     */
+    protected static List<String> splitLine(String line) {
+        List<String> args = new ArrayList<String>();
+        StringBuilder arg = null;
+        char quote = 0;
+        for (int ci = 0; ci < line.length(); ++ci) {
+            char ch = line.charAt(ci);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+                else if (ch == '\\' && quote == '"' && ci + 1 < line.length()) {
+                    arg.append(line.charAt(++ci));
+                }
+                else {
+                    arg.append(ch);
+                }
+            }
+            else if (Character.isWhitespace(ch)) {
+                if (arg != null) {
+                    args.add(arg.toString());
+                    arg = null;
+                }
+            }
+            else {
+                if (arg == null) {
+                    arg = new StringBuilder();
+                }
+                if (ch == '"' || ch == '\'') {
+                    quote = ch;
+                }
+                else if (ch == '\\' && ci + 1 < line.length()) {
+                    arg.append(line.charAt(++ci));
+                }
+                else {
+                    arg.append(ch);
+                }
+            }
+        }
+        if (arg != null) {
+            args.add(arg.toString());
+        }
+        return args;
+    }
+
+    protected static DiffJ createDiffJ(Options opts, String fromLabel, String toLabel, DiffLimit limit, Writer writer, PrintStream err) {
+        DiffJ diffj = new DiffJ(writer, err, opts.showBriefOutput(), opts.showContextOutput(), opts.highlightOutput(),
+                                opts.recurse(), opts.getJobs(),
+                                fromLabel, opts.getFromSource(),
+                                toLabel, opts.getToSource());
+        diffj.setLimit(limit);
+        return diffj;
+    }
+
+    /**
+     * Processes the names (files, directories, or revisions) as for the
+     * command line, with the output and errors written to the given writer and
+     * stream. Returns the exit value.
+     */
+    public static int process(Options opts, List<String> names, Writer writer, PrintStream err, File workingDirectory, CharSequence standardInput) {
+        DiffJ diffj = new DiffJ(writer, err, opts.showBriefOutput(), opts.showContextOutput(), opts.highlightOutput(),
+                                opts.recurse(), opts.getJobs(),
+                                opts.getFirstFileName(), opts.getFromSource(),
+                                opts.getSecondFileName(), opts.getToSource());
+        diffj.setWorkingDirectory(workingDirectory);
+        diffj.setStandardInput(standardInput);
+        diffj.setMaxDifferences(opts.getMaxDifferences());
+        if (opts.getGitRepository() != null) {
+            diffj.processRevisions(opts.getGitRepository(), names);
+        }
+        else {
+            diffj.processNames(names);
+        }
+        if (opts.showStats()) {
+            err.println(diffj.getReport().getStats());
+        }
+        return diffj.exitValue;
+    }
+
+    protected static int runBatch(Options opts, List<String> names) {
+        ReportStats stats = new ReportStats();
+        int batchExitValue;
+        try {
+            boolean isStdin = names.isEmpty() || names.get(0).equals("-");
+            BufferedReader reader = new BufferedReader(isStdin ? new InputStreamReader(System.in) : new FileReader(names.get(0)));
+            try {
+                batchExitValue = processBatch(reader, opts, stats);
+            }
+            finally {
+                reader.close();
+            }
+        }
+        catch (IOException ioe) {
+            System.err.println("Error reading batch: " + ioe.getMessage());
+            batchExitValue = 1;
+        }
+        if (opts.showStats()) {
+            System.err.println(stats);
+        }
+        return batchExitValue;
     }
 
     public static void main(String[] args) {
         Options opts = new Options();
         List<String> names = opts.process(Arrays.asList(args));
+        opts.applyGlobals();
 
         if (opts.showVersion()) {
             System.out.println("diffj, version " + Options.VERSION);
@@ -131,11 +463,42 @@ public class DiffJ {
             System.exit(0);
         }
 
-        DiffJ diffj = new DiffJ(opts.showBriefOutput(), opts.showContextOutput(), opts.highlightOutput(),
-                                opts.recurse(),
-                                opts.getFirstFileName(), opts.getFromSource(),
-                                opts.getSecondFileName(), opts.getToSource());
-        diffj.processNames(names);
-        System.exit(diffj.exitValue);
+        if (opts.client()) {
+            System.exit(new DiffJClient(opts.getPort()).run(args));
+        }
+
+        if (opts.getCacheDir() != null) {
+            try {
+                JavaFile.parseCache = new ParseCache(new File(opts.getCacheDir()), opts.getCacheSize() * 1024L * 1024L);
+            }
+            catch (DiffJException de) {
+                // continue without caching
+                System.err.println(de.getMessage());
+            }
+        }
+
+        if (opts.daemon()) {
+            try {
+                new DiffJDaemon(opts.getPort()).run();
+                System.exit(0);
+            }
+            catch (IOException ioe) {
+                System.err.println("Error running daemon: " + ioe.getMessage());
+                System.exit(1);
+            }
+        }
+
+        int exitValue;
+        if (opts.batch()) {
+            exitValue = runBatch(opts, names);
+        }
+        else {
+            exitValue = process(opts, names, new BufferedWriter(new OutputStreamWriter(System.out)), System.err, null, null);
+        }
+
+        if (opts.showStats() && JavaFile.parseCache != null) {
+            System.err.println(JavaFile.parseCache);
+        }
+        System.exit(exitValue);
     }
 }
@@ -0,0 +1,92 @@
+package org.incava.diffj.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.NoSuchFileException;
+import org.incava.diffj.io.FileContents;
+
+/**
+ * Sends the command line to a running daemon, and writes its output and exit
+ * value as if DiffJ were run in this process.
+ */
+public class DiffJClient {
+    private final int port;
+
+    public DiffJClient(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Runs the arguments on the daemon, returning the exit value.
+     */
+    public int run(String[] args) {
+        return run(args, System.out, System.err);
+    }
+
+    /**
+     * Runs the arguments on the daemon, writing its output and errors to the
+     * given streams, and returning the exit value.
+     */
+    public int run(String[] args, PrintStream stdout, PrintStream stderr) {
+        try {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            try {
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+
+                DiffJDaemon.writeFrame(out, DiffJDaemon.SECRET, DiffJDaemon.readSecret(port));
+                DiffJDaemon.writeFrame(out, DiffJDaemon.CWD, System.getProperty("user.dir"));
+                boolean readsStdin = false;
+                for (String arg : args) {
+                    DiffJDaemon.writeFrame(out, DiffJDaemon.ARG, arg);
+                    readsStdin |= arg.equals("-");
+                }
+                if (readsStdin) {
+                    CharSequence contents = FileContents.read(new InputStreamReader(System.in));
+                    DiffJDaemon.writeFrame(out, DiffJDaemon.STDIN, contents.toString());
+                }
+                DiffJDaemon.writeFrame(out, DiffJDaemon.END, "");
+                out.flush();
+
+                while (true) {
+                    int type = in.readByte();
+                    if (type == DiffJDaemon.EXIT) {
+                        stdout.flush();
+                        return in.readInt();
+                    }
+                    String value = DiffJDaemon.readFrame(in);
+                    if (type == DiffJDaemon.STDOUT) {
+                        stdout.print(value);
+                        stdout.flush();
+                    }
+                    else if (type == DiffJDaemon.STDERR) {
+                        stderr.print(value);
+                    }
+                }
+            }
+            finally {
+                socket.close();
+            }
+        }
+        catch (ConnectException ce) {
+            stderr.println("diffj daemon is not running on port " + port);
+            return 1;
+        }
+        catch (NoSuchFileException nsfe) {
+            stderr.println("diffj daemon on port " + port + " was not started by this user");
+            return 1;
+        }
+        catch (IOException ioe) {
+            stderr.println("Error communicating with diffj daemon: " + ioe.getMessage());
+            return 1;
+        }
+    }
+}
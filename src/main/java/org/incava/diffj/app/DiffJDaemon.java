@@ -0,0 +1,341 @@
+package org.incava.diffj.app;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import org.incava.ijdk.lang.StringExt;
+
+/**
+ * Runs DiffJ as a resident process, accepting requests on a loopback port, so
+ * that clients do not pay for starting the JVM and loading and compiling the
+ * parser. Requests are processed concurrently, and the output of each is
+ * streamed back as it is written.
+ *
+ * <p>Each message is a frame: a type byte, a length, and that many bytes of
+ * UTF-8. A request is the secret ({@link #SECRET}), the working directory
+ * ({@link #CWD}), the arguments ({@link #ARG}), optionally the contents for
+ * "-" ({@link #STDIN}), and {@link #END}. The response is a series of
+ * {@link #STDOUT} and {@link #STDERR} frames, then {@link #EXIT}, the length
+ * of which is the exit value.</p>
+ *
+ * <p>The secret is generated when the daemon starts, and written to a file in
+ * the home directory that only the owner can read, so that other users on
+ * the host cannot have the daemon read files for them.</p>
+ *
+ * <p>Options that set static values, such as the tab width, apply to all
+ * requests, and so can be given only when starting the daemon. Requests that
+ * would change them are rejected.</p>
+ */
+public class DiffJDaemon {
+    public static final int DEFAULT_PORT = 7337;
+
+    public static final int SECRET = 'S';
+
+    public static final int CWD = 'D';
+
+    public static final int ARG = 'A';
+
+    public static final int STDIN = 'I';
+
+    public static final int END = 'E';
+
+    public static final int STDOUT = 'O';
+
+    public static final int STDERR = 'R';
+
+    public static final int EXIT = 'X';
+
+    public static final Charset UTF8 = Charset.forName("UTF-8");
+
+    /**
+     * The longest frame of a request, in bytes, such as for the contents of
+     * standard input.
+     */
+    public static final int MAX_FRAME_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * The default time, in milliseconds, for which the daemon waits for the
+     * next part of a request before closing the connection.
+     */
+    public static final int DEFAULT_TIMEOUT = 30 * 1000;
+
+    /**
+     * Writes each flushed block of output as a frame.
+     */
+    private static class FrameWriter extends Writer {
+        private final DataOutputStream out;
+        private final StringBuilder buffer;
+
+        public FrameWriter(DataOutputStream out) {
+            this.out = out;
+            this.buffer = new StringBuilder();
+        }
+
+        public void write(char[] cbuf, int off, int len) {
+            buffer.append(cbuf, off, len);
+        }
+
+        public void flush() throws IOException {
+            if (buffer.length() > 0) {
+                writeFrame(out, STDOUT, buffer.toString());
+                buffer.setLength(0);
+            }
+            out.flush();
+        }
+
+        public void close() throws IOException {
+            flush();
+        }
+    }
+
+    private final int port;
+    private final DaemonStats stats;
+    private final ExecutorService executor;
+    private byte[] secret;
+    private int timeout;
+
+    public DiffJDaemon(int port) {
+        this.port = port;
+        this.stats = new DaemonStats();
+        this.executor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+        this.timeout = DEFAULT_TIMEOUT;
+    }
+
+    /**
+     * Sets the time, in milliseconds, for which the daemon waits for the next
+     * part of a request, after which the connection is closed.
+     */
+    public void setTimeout(int timeout) {
+        this.timeout = timeout;
+    }
+
+    public DaemonStats getStats() {
+        return stats;
+    }
+
+    /**
+     * Returns the file containing the secret of the daemon on the port.
+     */
+    public static File getSecretFile(int port) {
+        return new File(System.getProperty("user.home"), ".diffj-daemon-" + port);
+    }
+
+    /**
+     * Generates the secret, and writes it to a new file readable only by the
+     * owner, replacing any left by a previous daemon.
+     */
+    protected void writeSecret(File file) throws IOException {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder();
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        secret = sb.toString().getBytes(UTF8);
+
+        Path path = file.toPath();
+        Files.deleteIfExists(path);
+        try {
+            Files.createFile(path, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        }
+        catch (UnsupportedOperationException uoe) {
+            // not a POSIX file system
+            Files.createFile(path);
+            file.setReadable(false, false);
+            file.setWritable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(true, true);
+        }
+        Files.write(path, secret);
+    }
+
+    /**
+     * Returns the secret of the daemon on the port, as written when it
+     * started.
+     */
+    public static String readSecret(int port) throws IOException {
+        return new String(Files.readAllBytes(getSecretFile(port).toPath()), UTF8).trim();
+    }
+
+    /**
+     * Accepts and processes requests until this process is stopped.
+     */
+    public void run() throws IOException {
+        registerMBean();
+
+        ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        File secretFile = getSecretFile(port);
+        try {
+            writeSecret(secretFile);
+            // also when the process is stopped:
+            secretFile.deleteOnExit();
+            System.err.println("diffj daemon listening on " + server.getLocalSocketAddress());
+            accept(server);
+        }
+        finally {
+            server.close();
+            secretFile.delete();
+            stop();
+        }
+    }
+
+    /**
+     * Accepts requests on the socket, processing each in a separate thread,
+     * until the socket is closed.
+     */
+    protected void accept(ServerSocket server) throws IOException {
+        while (true) {
+            final Socket socket = server.accept();
+            executor.execute(new Runnable() {
+                    public void run() {
+                        serve(socket);
+                    }
+                });
+        }
+    }
+
+    /**
+     * Stops the requests being processed.
+     */
+    protected void stop() {
+        executor.shutdownNow();
+    }
+
+    protected void registerMBean() {
+        try {
+            ObjectName name = new ObjectName("org.incava.diffj:type=Daemon");
+            ManagementFactory.getPlatformMBeanServer().registerMBean(stats, name);
+        }
+        catch (JMException jme) {
+            System.err.println("Error registering daemon metrics: " + jme.getMessage());
+        }
+    }
+
+    protected void serve(Socket socket) {
+        long start = System.nanoTime();
+        boolean succeeded = false;
+        stats.requestStarted();
+        try {
+            // a client that sends nothing does not hold the thread:
+            socket.setSoTimeout(timeout);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+
+            // the secret is read with no more bytes than it has:
+            if (in.readByte() != SECRET || !MessageDigest.isEqual(secret, readFrame(in, secret.length).getBytes(UTF8))) {
+                writeFrame(out, STDERR, "diffj daemon: the request does not have the secret of this daemon" + System.getProperty("line.separator"));
+                out.writeByte(EXIT);
+                out.writeInt(1);
+                out.flush();
+                return;
+            }
+
+            File workingDirectory = null;
+            List<String> args = new ArrayList<String>();
+            String standardInput = null;
+
+            int type;
+            while ((type = in.readByte()) != END) {
+                String value = readFrame(in, MAX_FRAME_SIZE);
+                if (type == CWD) {
+                    workingDirectory = new File(value);
+                }
+                else if (type == ARG) {
+                    args.add(value);
+                }
+                else if (type == STDIN) {
+                    standardInput = value;
+                }
+            }
+            // the length of the end frame:
+            in.readInt();
+
+            ByteArrayOutputStream errBytes = new ByteArrayOutputStream();
+            PrintStream err = new PrintStream(errBytes, true, UTF8.name());
+            FrameWriter writer = new FrameWriter(out);
+
+            Options opts = new Options();
+            List<String> names = opts.process(args);
+            List<String> globalChanges = opts.getGlobalChanges();
+            int exitValue;
+            if (globalChanges.isEmpty()) {
+                exitValue = DiffJ.process(opts, names, writer, err, workingDirectory, standardInput);
+            }
+            else {
+                err.println("diffj daemon: options apply to all requests, and must be given when starting the daemon: " + StringExt.join(globalChanges, ", "));
+                exitValue = 1;
+            }
+
+            writer.flush();
+            err.flush();
+            if (errBytes.size() > 0) {
+                writeFrame(out, STDERR, new String(errBytes.toByteArray(), UTF8));
+            }
+            out.writeByte(EXIT);
+            out.writeInt(exitValue);
+            out.flush();
+            succeeded = true;
+        }
+        catch (IOException ioe) {
+            // the client went away
+        }
+        catch (RuntimeException re) {
+            re.printStackTrace(System.err);
+        }
+        finally {
+            try {
+                socket.close();
+            }
+            catch (IOException ioe) {
+            }
+            stats.requestFinished(System.nanoTime() - start, succeeded);
+        }
+    }
+
+    public static void writeFrame(DataOutputStream out, int type, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeByte(type);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readFrame(DataInputStream in) throws IOException {
+        return readFrame(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Reads the value of a frame, the length of which is at most the given
+     * one. A longer or negative length is an error, with nothing more read.
+     */
+    public static String readFrame(DataInputStream in, int maxLength) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > maxLength) {
+            throw new IOException("invalid frame length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+}
@@ -1,14 +1,23 @@
 package org.incava.diffj.app;
 
+import java.io.File;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import org.incava.analysis.DetailedReport;
+import org.incava.analysis.Moves;
+import org.incava.diffj.code.Code;
+import org.incava.diffj.io.JavaFile;
+import org.incava.diffj.io.ParseCache;
+import org.incava.diffj.lang.Parallel;
+import org.incava.diffj.type.Renames;
 import org.incava.ijdk.lang.StringExt;
 import org.incava.jagol.BooleanOption;
 import org.incava.jagol.IntegerOption;
 import org.incava.jagol.OptionSet;
 import org.incava.jagol.StringOption;
 import org.incava.java.Java;
+import org.incava.log.Log;
 
 public class Options extends OptionSet {
     public static final String VERSION = "1.4.0";
@@ -21,19 +30,52 @@ public class Options extends OptionSet {
     private String fromSource = DEFAULT_SOURCE;
     private String toSource = DEFAULT_SOURCE;
     private Boolean recurse = false;
+    private int jobs = 1;
+    private boolean quiet = false;
+    private int maxDifferences = 0;
+    private boolean showStats = false;
+    private String cacheDir = null;
+    private int cacheSize = 256;
+    private String gitRepository = null;
+    private boolean batch = false;
+    private boolean daemon = false;
+    private boolean client = false;
+    private int port = DiffJDaemon.DEFAULT_PORT;
     private String firstFileName = null;
     private String secondFileName = null;
     private Boolean verbose = false;
 
+    // values of the static settings, which are shared by all comparisons in
+    // this process, or null if not set:
+    private Integer tabWidth = null;
+    private Integer linearDiffThreshold = null;
+    private Boolean detectRenames = null;
+    private Boolean detectMoves = null;
+    private Boolean logVerbose = null;
+
     private final BooleanOption briefOpt;
     private final BooleanOption contextOpt;
     private final IntegerOption tabWidthOpt;
+    private final IntegerOption linearDiffOpt;
+    private final BooleanOption renamesOpt;
+    private final BooleanOption movesOpt;
     private final BooleanOption verboseOpt;
     private final BooleanOption versionOpt;
     private final StringOption fromSourceOpt;
     private final StringOption toSourceOpt;
     private final StringOption sourceOpt;
     private final BooleanOption recurseOpt;
+    private final IntegerOption jobsOpt;
+    private final BooleanOption quietOpt;
+    private final IntegerOption maxDiffsOpt;
+    private final BooleanOption statsOpt;
+    private final StringOption cacheDirOpt;
+    private final IntegerOption cacheSizeOpt;
+    private final StringOption gitOpt;
+    private final BooleanOption batchOpt;
+    private final BooleanOption daemonOpt;
+    private final BooleanOption clientOpt;
+    private final IntegerOption portOpt;
     private final BooleanOption highlightOpt;
 
     private static Options instance = new Options();
@@ -54,7 +96,27 @@ public class Options extends OptionSet {
 
         String tabWidthProperty = System.getProperty("diffj.tabwidth");
         if (tabWidthProperty != null) {
-            DetailedReport.tabWidth = Integer.valueOf(tabWidthProperty);
+            tabWidth = Integer.valueOf(tabWidthProperty);
+        }
+
+        String cacheDirProperty = System.getProperty("diffj.cachedir");
+        if (cacheDirProperty != null) {
+            cacheDir = cacheDirProperty;
+        }
+
+        String linearDiffProperty = System.getProperty("diffj.lineardiff");
+        if (linearDiffProperty != null) {
+            linearDiffThreshold = Integer.valueOf(linearDiffProperty);
+        }
+
+        String renamesProperty = System.getProperty("diffj.renames");
+        if (renamesProperty != null) {
+            detectRenames = Boolean.valueOf(renamesProperty);
+        }
+
+        String movesProperty = System.getProperty("diffj.moves");
+        if (movesProperty != null) {
+            detectMoves = Boolean.valueOf(movesProperty);
         }
 
         String verboseProperty = System.getProperty("diffj.verbose");
@@ -66,7 +128,21 @@ public class Options extends OptionSet {
         contextOpt    = addBooleanOption("context",   "Show context (non-brief form only)");
         highlightOpt  = addBooleanOption("highlight", "Whether to use colors (context output only)");
         tabWidthOpt   = addOption(new IntegerOption("tabwidth",  "The number of spaces to treat tabs equal to"));
+        linearDiffOpt = addOption(new IntegerOption("linear-diff", "The number of tokens above which code is compared in linear space (default " + Code.linearDiffThreshold + ")"));
+        renamesOpt    = addBooleanOption("renames",   "Report removed and added methods and fields with similar code as renamed");
+        movesOpt      = addBooleanOption("moves",     "Report methods and fields removed from one type and added to another, in any of the files compared, including those in only one of the directories or archives");
         recurseOpt    = addOption(new BooleanOption("recurse",   "Process directories recursively", 'r'));
+        jobsOpt       = addOption(new IntegerOption("jobs",      "The number of threads, comparing files and the members of types in parallel", 'j'));
+        quietOpt      = addOption(new BooleanOption("quiet",     "Write nothing, and exit with 1 at the first difference", 'q'));
+        maxDiffsOpt   = addOption(new IntegerOption("max-diffs", "The number of differences at which to stop, writing nothing more, and exit with 1"));
+        statsOpt      = addBooleanOption("stats",     "Display the number of files compared, and skipped as identical");
+        cacheDirOpt   = addOption(new StringOption("cache-dir",  "The directory in which to cache parsed files"));
+        cacheSizeOpt  = addOption(new IntegerOption("cache-size", "The maximum size of the cache, in megabytes (default 256)"));
+        gitOpt        = addOption(new StringOption("git",        "Compares two revisions in the given git repository"));
+        batchOpt      = addBooleanOption("batch",     "Compares the pairs of files listed, one pair per line, in the given file or standard input");
+        daemonOpt     = addBooleanOption("daemon",    "Runs as a daemon, processing requests from clients on the (loopback) port");
+        clientOpt     = addBooleanOption("client",    "Sends the request to a running daemon");
+        portOpt       = addOption(new IntegerOption("port",      "The port of the daemon (default " + DiffJDaemon.DEFAULT_PORT + ")"));
         verboseOpt    = addBooleanOption("verbose",   "Whether to run in verbose mode (for debugging)");
         versionOpt    = addOption(new BooleanOption("version",   "Displays the version", 'v'));
 
@@ -107,16 +183,31 @@ public class Options extends OptionSet {
     }
 
     /**
-     * Processes the run control files and command line arguments, and sets the
-     * static variables. Returns the arguments that were not consumed by option
-     * processing.
+     * Processes the run control files and command line arguments. Returns the
+     * arguments that were not consumed by option processing. Static settings,
+     * such as the tab width, are not changed until <code>applyGlobals</code>.
      */
     public List<String> process(List<String> args) {
         List<String> unprocessed = super.process(args);
 
         Integer tabWidthInt = tabWidthOpt.getValue();
         if (tabWidthInt != null) {
-            DetailedReport.tabWidth = tabWidthInt;
+            tabWidth = tabWidthInt;
+        }
+
+        Integer linearDiffInt = linearDiffOpt.getValue();
+        if (linearDiffInt != null) {
+            linearDiffThreshold = linearDiffInt;
+        }
+
+        Boolean renamesBool = renamesOpt.getValue();
+        if (renamesBool != null) {
+            detectRenames = renamesBool;
+        }
+
+        Boolean movesBool = movesOpt.getValue();
+        if (movesBool != null) {
+            detectMoves = movesBool;
         }
     
         Boolean briefBool = briefOpt.getValue();
@@ -150,9 +241,64 @@ public class Options extends OptionSet {
             recurse = recurseBool;
         }
 
+        Integer jobsInt = jobsOpt.getValue();
+        if (jobsInt != null) {
+            jobs = Math.max(1, jobsInt);
+        }
+
+        Boolean quietBool = quietOpt.getValue();
+        if (quietBool != null) {
+            quiet = quietBool;
+        }
+
+        Integer maxDiffsInt = maxDiffsOpt.getValue();
+        if (maxDiffsInt != null) {
+            maxDifferences = Math.max(0, maxDiffsInt);
+        }
+
+        Boolean statsBool = statsOpt.getValue();
+        if (statsBool != null) {
+            showStats = statsBool;
+        }
+
+        String cacheDirStr = cacheDirOpt.getValue();
+        if (cacheDirStr != null) {
+            cacheDir = cacheDirStr;
+        }
+
+        Integer cacheSizeInt = cacheSizeOpt.getValue();
+        if (cacheSizeInt != null) {
+            cacheSize = Math.max(1, cacheSizeInt);
+        }
+
+        String gitStr = gitOpt.getValue();
+        if (gitStr != null) {
+            gitRepository = gitStr;
+        }
+
+        Boolean batchBool = batchOpt.getValue();
+        if (batchBool != null) {
+            batch = batchBool;
+        }
+
+        Boolean daemonBool = daemonOpt.getValue();
+        if (daemonBool != null) {
+            daemon = daemonBool;
+        }
+
+        Boolean clientBool = clientOpt.getValue();
+        if (clientBool != null) {
+            client = clientBool;
+        }
+
+        Integer portInt = portOpt.getValue();
+        if (portInt != null) {
+            port = portInt;
+        }
+
         Boolean verboseBool = verboseOpt.getValue();
         if (verboseBool != null) {
-            tr.Ace.setVerbose(verboseBool);
+            logVerbose = verboseBool;
         }
 
         Boolean versionBool = versionOpt.getValue();
@@ -181,6 +327,63 @@ public class Options extends OptionSet {
         return unprocessed;
     }
 
+    /**
+     * Sets the static settings, such as the tab width, which apply to all
+     * comparisons in this process.
+     */
+    public void applyGlobals() {
+        if (tabWidth != null) {
+            DetailedReport.tabWidth = tabWidth;
+        }
+        if (linearDiffThreshold != null) {
+            Code.linearDiffThreshold = linearDiffThreshold;
+        }
+        if (detectRenames != null) {
+            Renames.detectRenames = detectRenames;
+        }
+        if (detectMoves != null) {
+            Moves.detectMoves = detectMoves;
+        }
+        if (logVerbose != null) {
+            Log.setVerbose(logVerbose);
+        }
+        Parallel.setThreads(jobs);
+    }
+
+    /**
+     * Returns the names of the options that would change the static settings,
+     * or the parse cache, from their current values. The daemon rejects
+     * requests with these, since the settings are shared by all requests.
+     */
+    public List<String> getGlobalChanges() {
+        List<String> changed = new ArrayList<String>();
+        if (tabWidth != null && tabWidth != DetailedReport.tabWidth) {
+            changed.add("tabwidth");
+        }
+        if (linearDiffThreshold != null && linearDiffThreshold != Code.linearDiffThreshold) {
+            changed.add("linear-diff");
+        }
+        if (detectRenames != null && detectRenames != Renames.detectRenames) {
+            changed.add("renames");
+        }
+        if (detectMoves != null && detectMoves != Moves.detectMoves) {
+            changed.add("moves");
+        }
+        if (logVerbose != null && logVerbose != Log.isVerbose()) {
+            changed.add("verbose");
+        }
+
+        // the parse cache is created once, when the daemon starts:
+        ParseCache cache = JavaFile.parseCache;
+        if (cacheDir != null && (cache == null || !new File(cacheDir).equals(cache.getDirectory()))) {
+            changed.add("cache-dir");
+        }
+        if (cacheSizeOpt.getValue() != null && (cache == null || cacheSize * 1024L * 1024L != cache.getMaxSize())) {
+            changed.add("cache-size");
+        }
+        return changed;
+    }
+
     /**
      * Whether to use brief or detailed reporting.
      */
@@ -230,6 +433,77 @@ public class Options extends OptionSet {
         return recurse;
     }
 
+    /**
+     * The number of files to compare in parallel.
+     */
+    public int getJobs() {
+        return jobs;
+    }
+
+    /**
+     * Whether to write nothing, and stop at the first difference.
+     */
+    public boolean quiet() {
+        return quiet;
+    }
+
+    /**
+     * The number of differences at which to stop, which is 1 in quiet mode,
+     * or 0 for no maximum.
+     */
+    public int getMaxDifferences() {
+        return quiet ? 1 : maxDifferences;
+    }
+
+    /**
+     * Whether to display statistics when done.
+     */
+    public boolean showStats() {
+        return showStats;
+    }
+
+    /**
+     * Returns the directory for the parse cache, or null if not caching.
+     */
+    public String getCacheDir() {
+        return cacheDir;
+    }
+
+    /**
+     * Returns the maximum size of the parse cache, in megabytes.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the git repository, the revisions of which are compared, or
+     * null if comparing files and directories.
+     */
+    public String getGitRepository() {
+        return gitRepository;
+    }
+
+    /**
+     * Returns whether pairs of files are read from a manifest or standard
+     * input, instead of from the command line.
+     */
+    public boolean batch() {
+        return batch;
+    }
+
+    public boolean daemon() {
+        return daemon;
+    }
+
+    public boolean client() {
+        return client;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
     /**
      * The name of the first file, if not the actual name.
      */
@@ -1,7 +1,7 @@
 package org.incava.diffj.code;
 
-import java.text.MessageFormat;
 import java.util.List;
+import net.sourceforge.pmd.ast.SimpleNode;
 import net.sourceforge.pmd.ast.Token;
 import org.incava.analysis.FileDiff;
 import org.incava.analysis.FileDiffChange;
@@ -9,7 +9,6 @@ import org.incava.analysis.FileDiffCodeAdded;
 import org.incava.analysis.FileDiffCodeDeleted;
 import org.incava.diffj.element.Differences;
 import org.incava.ijdk.text.LocationRange;
-import org.incava.ijdk.util.diff.Diff;
 import org.incava.ijdk.util.diff.Difference;
 
 public class Code {    
@@ -17,20 +16,72 @@ public class Code {
     public static final String CODE_ADDED = "code added in {0}";
     public static final String CODE_REMOVED = "code removed in {0}";
 
+    /**
+     * Code with more tokens than this, on either side, is compared with a diff
+     * using linear space.
+     */
+    public static int linearDiffThreshold = 10000;
+
+    /**
+     * Returns a 64-bit hash of the kinds and images of the tokens from first to
+     * last, inclusive, walking the tokens rather than building a list of them.
+     * Whitespace and comments are special tokens, so they do not change it.
+     */
+    public static long getFingerprint(Token first, Token last) {
+        long hash = 0xcbf29ce484222325L;
+        for (Token tk = first; tk != null; tk = tk == last ? null : tk.next) {
+            hash ^= tk.kind;
+            hash *= 0x100000001b3L;
+            String image = tk.image;
+            int len = image.length();
+            for (int ci = 0; ci < len; ++ci) {
+                hash ^= image.charAt(ci);
+                hash *= 0x100000001b3L;
+            }
+            // separates images, so "ab" "c" differs from "a" "bc":
+            hash ^= 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Returns whether the tokens from the first to the last of each are the
+     * same, by kind and image.
+     */
+    public static boolean isSameTokens(Token fromFirst, Token fromLast, Token toFirst, Token toLast) {
+        Token fromTk = fromFirst;
+        Token toTk = toFirst;
+        while (fromTk != null && toTk != null) {
+            if (fromTk.kind != toTk.kind || !fromTk.image.equals(toTk.image)) {
+                return false;
+            }
+            fromTk = fromTk == fromLast ? null : fromTk.next;
+            toTk = toTk == toLast ? null : toTk.next;
+        }
+        return fromTk == null && toTk == null;
+    }
+
     private final String name;
     private final TokenList tokenList;
 
     public Code(String name, List<Token> tokens) {
+        this(name, tokens, null);
+    }
+
+    /**
+     * Creates code of the tokens, which are compared first by the units (such
+     * as statements), and then by the tokens within the units that differ.
+     */
+    public Code(String name, List<Token> tokens, List<SimpleNode> units) {
         this.name = name;
-        this.tokenList = new TokenList(tokens);
+        this.tokenList = new TokenList(tokens, units);
     }
 
     public void diff(Code toCode, Differences differences) {
         TokenList toTokenList = toCode.tokenList;
-        Diff<Token> tokenDiff = tokenList.diff(toTokenList);
-        
+        List<Difference> diffList = tokenList.diff(toTokenList);
         FileDiff currFileDiff = null;
-        List<Difference> diffList = tokenDiff.execute();
 
         for (Difference diff : diffList) {
             currFileDiff = processDifference(diff, toTokenList, currFileDiff, differences);
@@ -41,8 +92,7 @@ public class Code {
     }
 
     protected FileDiff replaceReference(FileDiff fileDiff, LocationRange fromLocRg, LocationRange toLocRg, Differences differences) {
-        String newMsg = MessageFormat.format(CODE_CHANGED, name);
-        FileDiff newDiff = new FileDiffChange(newMsg, fileDiff, fromLocRg, toLocRg);
+        FileDiff newDiff = new FileDiffChange(CODE_CHANGED, new Object[] { name }, fileDiff, fromLocRg, toLocRg);
         differences.getFileDiffs().remove(fileDiff);
         return addFileDiff(newDiff, differences);
     }
@@ -53,17 +103,17 @@ public class Code {
     }
 
     protected FileDiff addReference(String msg, LocationRange fromLocRg, LocationRange toLocRg, Differences differences) {
-        String str = MessageFormat.format(msg, name);
+        Object[] args = new Object[] { name };
 
         if (msg.equals(CODE_ADDED)) {
             // this will show as add when highlighted, as change when not.
-            return addFileDiff(new FileDiffCodeAdded(str, fromLocRg, toLocRg), differences);
+            return addFileDiff(new FileDiffCodeAdded(msg, args, fromLocRg, toLocRg), differences);
         }
         else if (msg.equals(CODE_REMOVED)) {
-            return addFileDiff(new FileDiffCodeDeleted(str, fromLocRg, toLocRg), differences);
+            return addFileDiff(new FileDiffCodeDeleted(msg, args, fromLocRg, toLocRg), differences);
         }
         else {
-            return addFileDiff(new FileDiffChange(str, fromLocRg, toLocRg), differences);
+            return addFileDiff(new FileDiffChange(msg, args, fromLocRg, toLocRg), differences);
         }
     }
     
@@ -0,0 +1,159 @@
+package org.incava.diffj.code;
+
+/**
+ * Computes the differences between two arrays of symbols in linear space,
+ * with the divide-and-conquer form of the Myers algorithm: the middle snake of
+ * the shortest edit is found by searching forward and backward at once, and
+ * the parts before and after it are compared recursively.
+ *
+ * <p>This is for very long sequences, such as generated code, for which the
+ * state of {@link SymbolDiff} can grow quadratically. The edit is as short,
+ * but where tokens are repeated it might be aligned differently.</p>
+ */
+public class LinearSymbolDiff extends SymbolDiff {
+    public LinearSymbolDiff(int[] a, int[] b, int nSymbols) {
+        super(a, b, nSymbols);
+    }
+
+    protected void addMatches(int[] matches, int aStart, int aEnd, int bStart, int bEnd) {
+        compare(matches, aStart, aEnd + 1, bStart, bEnd + 1);
+    }
+
+    /**
+     * Compares the ranges, from the low index (inclusive) to the high one
+     * (exclusive).
+     */
+    protected void compare(int[] matches, int aLo, int aHi, int bLo, int bHi) {
+        while (aLo < aHi && bLo < bHi && a[aLo] == b[bLo]) {
+            matches[aLo++] = bLo++;
+        }
+
+        while (aLo < aHi && bLo < bHi && a[aHi - 1] == b[bHi - 1]) {
+            matches[--aHi] = --bHi;
+        }
+
+        if (aLo == aHi || bLo == bHi) {
+            return;
+        }
+
+        int[] split = findMiddleSnake(aLo, aHi, bLo, bHi);
+        if (split == null) {
+            // nothing in common
+            return;
+        }
+
+        // the arrays of the search are released before recursing
+        compare(matches, aLo, aLo + split[0], bLo, bLo + split[1]);
+        compare(matches, aLo + split[0], aHi, bLo + split[1], bHi);
+    }
+
+    /**
+     * Returns the offsets into the ranges at which the forward and backward
+     * searches of the shortest edit overlap, or null if the ranges have
+     * nothing in common.
+     */
+    protected int[] findMiddleSnake(int aLo, int aHi, int bLo, int bHi) {
+        int n = aHi - aLo;
+        int m = bHi - bLo;
+        int maxD = (n + m + 1) / 2;
+        int vOffset = maxD;
+        int vLength = 2 * maxD + 2;
+        int[] v1 = new int[vLength];
+        int[] v2 = new int[vLength];
+        for (int vi = 0; vi < vLength; ++vi) {
+            v1[vi] = -1;
+            v2[vi] = -1;
+        }
+        v1[vOffset + 1] = 0;
+        v2[vOffset + 1] = 0;
+
+        int delta = n - m;
+        // if odd, the forward search finds the overlap; if even, the reverse:
+        boolean front = (delta & 1) != 0;
+        int k1Start = 0;
+        int k1End = 0;
+        int k2Start = 0;
+        int k2End = 0;
+
+        for (int d = 0; d < maxD; ++d) {
+            for (int k1 = -d + k1Start; k1 <= d - k1End; k1 += 2) {
+                int k1Offset = vOffset + k1;
+                int x1;
+                if (k1 == -d || (k1 != d && v1[k1Offset - 1] < v1[k1Offset + 1])) {
+                    x1 = v1[k1Offset + 1];
+                }
+                else {
+                    x1 = v1[k1Offset - 1] + 1;
+                }
+                int y1 = x1 - k1;
+                while (x1 < n && y1 < m && a[aLo + x1] == b[bLo + y1]) {
+                    ++x1;
+                    ++y1;
+                }
+                v1[k1Offset] = x1;
+                if (x1 > n) {
+                    // off the right of the graph
+                    k1End += 2;
+                }
+                else if (y1 > m) {
+                    // off the bottom of the graph
+                    k1Start += 2;
+                }
+                else if (front) {
+                    int k2Offset = vOffset + delta - k1;
+                    if (k2Offset >= 0 && k2Offset < vLength && v2[k2Offset] != -1) {
+                        int x2 = n - v2[k2Offset];
+                        if (x1 >= x2) {
+                            return getSplit(x1, y1, n, m);
+                        }
+                    }
+                }
+            }
+
+            for (int k2 = -d + k2Start; k2 <= d - k2End; k2 += 2) {
+                int k2Offset = vOffset + k2;
+                int x2;
+                if (k2 == -d || (k2 != d && v2[k2Offset - 1] < v2[k2Offset + 1])) {
+                    x2 = v2[k2Offset + 1];
+                }
+                else {
+                    x2 = v2[k2Offset - 1] + 1;
+                }
+                int y2 = x2 - k2;
+                while (x2 < n && y2 < m && a[aHi - x2 - 1] == b[bHi - y2 - 1]) {
+                    ++x2;
+                    ++y2;
+                }
+                v2[k2Offset] = x2;
+                if (x2 > n) {
+                    k2End += 2;
+                }
+                else if (y2 > m) {
+                    k2Start += 2;
+                }
+                else if (!front) {
+                    int k1Offset = vOffset + delta - k2;
+                    if (k1Offset >= 0 && k1Offset < vLength && v1[k1Offset] != -1) {
+                        int x1 = v1[k1Offset];
+                        int y1 = vOffset + x1 - k1Offset;
+                        if (x1 >= n - x2) {
+                            return getSplit(x1, y1, n, m);
+                        }
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the split, or null if it is at either end, which would not
+     * reduce the problem.
+     */
+    protected int[] getSplit(int x, int y, int n, int m) {
+        if ((x == 0 && y == 0) || (x == n && y == m)) {
+            return null;
+        }
+        return new int[] { x, y };
+    }
+}
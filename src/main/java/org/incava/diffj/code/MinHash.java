@@ -0,0 +1,104 @@
+package org.incava.diffj.code;
+
+import java.util.Arrays;
+import java.util.List;
+import net.sourceforge.pmd.ast.Token;
+
+/**
+ * Computes MinHash signatures of token sequences, over their shingles, the
+ * runs of consecutive tokens. The fraction of equal values in two signatures
+ * estimates the Jaccard similarity of their sets of shingles.
+ */
+public class MinHash {
+    /**
+     * The number of tokens in a shingle.
+     */
+    public static final int SHINGLE_SIZE = 4;
+
+    /**
+     * The number of values in a signature.
+     */
+    public static final int SIGNATURE_SIZE = 32;
+
+    private static final long[] SEEDS = new long[SIGNATURE_SIZE];
+
+    static {
+        long seed = 0x2545f4914f6cdd1dL;
+        for (int si = 0; si < SIGNATURE_SIZE; ++si) {
+            seed += 0x9e3779b97f4a7c15L;
+            SEEDS[si] = mix(seed);
+        }
+    }
+
+    /**
+     * Returns the signature of the tokens, or null if there are fewer than
+     * make up a single shingle.
+     */
+    public static int[] getSignature(List<Token> tokens) {
+        int nTokens = tokens.size();
+        if (nTokens < SHINGLE_SIZE) {
+            return null;
+        }
+
+        long[] hashes = new long[nTokens];
+        int idx = 0;
+        for (Token tk : tokens) {
+            hashes[idx++] = hash(tk);
+        }
+
+        long[] mins = new long[SIGNATURE_SIZE];
+        Arrays.fill(mins, Long.MAX_VALUE);
+
+        for (int start = 0; start + SHINGLE_SIZE <= nTokens; ++start) {
+            long shingle = 0;
+            for (int ti = start; ti < start + SHINGLE_SIZE; ++ti) {
+                shingle = shingle * 0x100000001b3L + hashes[ti];
+            }
+            for (int si = 0; si < SIGNATURE_SIZE; ++si) {
+                long value = mix(shingle ^ SEEDS[si]);
+                if (value < mins[si]) {
+                    mins[si] = value;
+                }
+            }
+        }
+
+        int[] signature = new int[SIGNATURE_SIZE];
+        for (int si = 0; si < SIGNATURE_SIZE; ++si) {
+            signature[si] = (int)(mins[si] ^ (mins[si] >>> 32));
+        }
+        return signature;
+    }
+
+    /**
+     * Returns the estimated similarity, from 0.0 to 1.0, of the signatures.
+     */
+    public static double getSimilarity(int[] a, int[] b) {
+        int same = 0;
+        for (int si = 0; si < SIGNATURE_SIZE; ++si) {
+            if (a[si] == b[si]) {
+                ++same;
+            }
+        }
+        return (double)same / SIGNATURE_SIZE;
+    }
+
+    protected static long hash(Token tk) {
+        long hash = 0xcbf29ce484222325L ^ tk.kind;
+        String image = tk.image;
+        int len = image.length();
+        for (int ci = 0; ci < len; ++ci) {
+            hash = (hash ^ image.charAt(ci)) * 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * The finalizer of SplitMix64, which spreads each bit of the input across
+     * the output.
+     */
+    protected static long mix(long value) {
+        value = (value ^ (value >>> 30)) * 0xbf58476d1ce4e5b9L;
+        value = (value ^ (value >>> 27)) * 0x94d049bb133111ebL;
+        return value ^ (value >>> 31);
+    }
+}
@@ -0,0 +1,193 @@
+package org.incava.diffj.code;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.incava.ijdk.util.diff.Difference;
+
+/**
+ * Computes the differences between two arrays of symbols, such as interned
+ * tokens. This uses the same longest common subsequence algorithm as
+ * <code>org.incava.ijdk.util.diff.Diff</code>, and so produces the same
+ * differences, but works on primitive arrays instead of lists of objects and a
+ * comparator.
+ */
+public class SymbolDiff {
+    protected final int[] a;
+    protected final int[] b;
+    protected final int nSymbols;
+
+    /**
+     * The links of the common subsequences, each the previous link and the
+     * indices in <code>a</code> and <code>b</code>.
+     */
+    private int[] linkPrev;
+    private int[] linkA;
+    private int[] linkB;
+    private int nLinks;
+
+    /**
+     * Creates the diff for arrays of symbols, each of which is less than
+     * <code>nSymbols</code>.
+     */
+    public SymbolDiff(int[] a, int[] b, int nSymbols) {
+        this.a = a;
+        this.b = b;
+        this.nSymbols = nSymbols;
+    }
+
+    /**
+     * Returns the differences, in the form produced by
+     * <code>Diff#execute</code>.
+     */
+    public List<Difference> execute() {
+        return getDifferences(getMatches());
+    }
+
+    /**
+     * Returns, for each element of <code>a</code>, the index of the element
+     * of <code>b</code> it matches in the longest common subsequence, or -1.
+     */
+    protected int[] getMatches() {
+        int[] matches = new int[a.length];
+        Arrays.fill(matches, -1);
+
+        int aStart = 0;
+        int aEnd = a.length - 1;
+        int bStart = 0;
+        int bEnd = b.length - 1;
+
+        while (aStart <= aEnd && bStart <= bEnd && a[aStart] == b[bStart]) {
+            matches[aStart++] = bStart++;
+        }
+
+        while (aStart <= aEnd && bStart <= bEnd && a[aEnd] == b[bEnd]) {
+            matches[aEnd--] = bEnd--;
+        }
+
+        if (aStart <= aEnd && bStart <= bEnd) {
+            addMatches(matches, aStart, aEnd, bStart, bEnd);
+        }
+        return matches;
+    }
+
+    /**
+     * Sets the matches of the longest common subsequence of the ranges of
+     * <code>a</code> and <code>b</code>, inclusive, the ends of which differ.
+     */
+    protected void addMatches(int[] matches, int aStart, int aEnd, int bStart, int bEnd) {
+        // the positions in b of each symbol, chained in descending order:
+        int[] positions = new int[nSymbols];
+        Arrays.fill(positions, -1);
+        int[] nextPosition = new int[b.length];
+        for (int bi = bStart; bi <= bEnd; ++bi) {
+            nextPosition[bi] = positions[b[bi]];
+            positions[b[bi]] = bi;
+        }
+
+        // thresh[k] is the smallest index in b ending a common subsequence of
+        // length k + 1, and threshLinks[k] is the link of that subsequence.
+        int[] thresh = new int[Math.min(aEnd - aStart, bEnd - bStart) + 1];
+        int[] threshLinks = new int[thresh.length];
+        int threshSize = 0;
+
+        int initialLinks = 16;
+        linkPrev = new int[initialLinks];
+        linkA = new int[initialLinks];
+        linkB = new int[initialLinks];
+        nLinks = 0;
+
+        for (int ai = aStart; ai <= aEnd; ++ai) {
+            // positions are descending, so each insertion point is at or
+            // before the previous one:
+            int bound = threshSize;
+            for (int bi = positions[a[ai]]; bi >= 0; bi = nextPosition[bi]) {
+                int lo = 0;
+                int hi = bound;
+                while (lo < hi) {
+                    int mid = (lo + hi) >>> 1;
+                    if (thresh[mid] < bi) {
+                        lo = mid + 1;
+                    }
+                    else {
+                        hi = mid;
+                    }
+                }
+
+                if (lo >= threshSize || thresh[lo] != bi) {
+                    thresh[lo] = bi;
+                    threshLinks[lo] = addLink(lo > 0 ? threshLinks[lo - 1] : -1, ai, bi);
+                    if (lo == threshSize) {
+                        ++threshSize;
+                    }
+                }
+                bound = lo + 1;
+            }
+        }
+
+        if (threshSize > 0) {
+            for (int link = threshLinks[threshSize - 1]; link >= 0; link = linkPrev[link]) {
+                matches[linkA[link]] = linkB[link];
+            }
+        }
+    }
+
+    protected int addLink(int prev, int ai, int bi) {
+        if (nLinks == linkPrev.length) {
+            int len = nLinks * 2;
+            linkPrev = Arrays.copyOf(linkPrev, len);
+            linkA = Arrays.copyOf(linkA, len);
+            linkB = Arrays.copyOf(linkB, len);
+        }
+        linkPrev[nLinks] = prev;
+        linkA[nLinks] = ai;
+        linkB[nLinks] = bi;
+        return nLinks++;
+    }
+
+    /**
+     * Returns the differences between the matches, each spanning the
+     * unmatched elements of <code>a</code> (deleted) and of <code>b</code>
+     * (added) between two matches.
+     */
+    protected List<Difference> getDifferences(int[] matches) {
+        List<Difference> diffs = new ArrayList<Difference>();
+        int bi = 0;
+        int delStart = Difference.NONE;
+        int delEnd = Difference.NONE;
+        int addStart = Difference.NONE;
+        int addEnd = Difference.NONE;
+        boolean pending = false;
+
+        for (int ai = 0; ai <= a.length; ++ai) {
+            int match = ai < a.length ? matches[ai] : b.length;
+            if (match < 0) {
+                if (!pending) {
+                    delStart = ai;
+                    addStart = bi;
+                    pending = true;
+                }
+                delEnd = ai;
+            }
+            else {
+                while (bi < match) {
+                    if (!pending) {
+                        delStart = ai;
+                        addStart = bi;
+                        pending = true;
+                    }
+                    addEnd = bi++;
+                }
+                if (pending) {
+                    diffs.add(new Difference(delStart, delEnd, addStart, addEnd));
+                    delEnd = Difference.NONE;
+                    addEnd = Difference.NONE;
+                    pending = false;
+                }
+                ++bi;
+            }
+        }
+
+        return diffs;
+    }
+}
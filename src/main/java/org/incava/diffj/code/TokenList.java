@@ -1,12 +1,14 @@
 package org.incava.diffj.code;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import net.sourceforge.pmd.ast.SimpleNode;
 import net.sourceforge.pmd.ast.Token;
 import org.incava.analysis.FileDiff;
 import org.incava.ijdk.text.LocationRange;
 import org.incava.ijdk.util.DefaultComparator;
 import org.incava.ijdk.util.ListExt;
-import org.incava.ijdk.util.diff.Diff;
 import org.incava.ijdk.util.diff.Difference;
 
 /**
@@ -25,12 +27,129 @@ public class TokenList {
 
     private final List<Token> tokens;
 
+    /**
+     * The indices of the first token of each unit, such as a statement, with
+     * the number of tokens at the end. Tokens not within a unit are each a
+     * unit of their own. This is null if the tokens are not in units.
+     */
+    private final int[] unitStarts;
+
     public TokenList(List<Token> tokens) {
+        this(tokens, null);
+    }
+
+    /**
+     * Creates the list of tokens, grouped by the nodes (such as statements),
+     * which are compared as units before their tokens are.
+     */
+    public TokenList(List<Token> tokens, List<SimpleNode> units) {
         this.tokens = tokens;
+        this.unitStarts = units == null || units.isEmpty() ? null : getUnitStarts(units);
+    }
+
+    protected int[] getUnitStarts(List<SimpleNode> units) {
+        int[] starts = new int[tokens.size() + 1];
+        int nUnits = 0;
+        int ti = 0;
+        for (SimpleNode unit : units) {
+            int first = indexOf(unit.getFirstToken(), ti);
+            int last = first < 0 ? -1 : indexOf(unit.getLastToken(), first);
+            if (last < 0) {
+                // not in the list, so the tokens are compared individually
+                return null;
+            }
+            while (ti < first) {
+                starts[nUnits++] = ti++;
+            }
+            starts[nUnits++] = first;
+            ti = last + 1;
+        }
+        while (ti < tokens.size()) {
+            starts[nUnits++] = ti++;
+        }
+        starts[nUnits++] = tokens.size();
+        return Arrays.copyOf(starts, nUnits);
+    }
+
+    protected int indexOf(Token tk, int start) {
+        for (int ti = start; ti < tokens.size(); ++ti) {
+            if (tokens.get(ti) == tk) {
+                return ti;
+            }
+        }
+        return -1;
+    }
+
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Returns the differences between the tokens in this list and the other,
+     * which are compared as symbols, each interned by kind and image.
+     *
+     * If both lists are grouped into units, the units are compared first, and
+     * then only the tokens of those that differ.
+     */
+    public List<Difference> diff(TokenList toTokenList) {
+        TokenSymbols symbols = new TokenSymbols();
+        int[] fromSymbols = symbols.getSymbols(tokens);
+        int[] toSymbols = symbols.getSymbols(toTokenList.tokens);
+
+        if (unitStarts == null || toTokenList.unitStarts == null) {
+            return createDiff(fromSymbols, toSymbols, symbols.size()).execute();
+        }
+
+        UnitSymbols units = new UnitSymbols();
+        int[] fromUnits = units.getSymbols(fromSymbols, unitStarts);
+        int[] toUnits = units.getSymbols(toSymbols, toTokenList.unitStarts);
+        List<Difference> unitDiffs = createDiff(fromUnits, toUnits, units.size()).execute();
+
+        List<Difference> diffs = new ArrayList<Difference>();
+        for (Difference unitDiff : unitDiffs) {
+            int fromStart = unitStarts[unitDiff.getDeletedStart()];
+            int fromEnd = unitDiff.getDeletedEnd() == Difference.NONE ? fromStart : unitStarts[unitDiff.getDeletedEnd() + 1];
+            int toStart = toTokenList.unitStarts[unitDiff.getAddedStart()];
+            int toEnd = unitDiff.getAddedEnd() == Difference.NONE ? toStart : toTokenList.unitStarts[unitDiff.getAddedEnd() + 1];
+            addDifferences(diffs, fromSymbols, fromStart, fromEnd, toSymbols, toStart, toEnd, symbols.size());
+        }
+        return diffs;
+    }
+
+    /**
+     * Adds the differences between the ranges of symbols, from the start
+     * (inclusive) to the end (exclusive), with indices into the full arrays.
+     */
+    protected void addDifferences(List<Difference> diffs, int[] fromSymbols, int fromStart, int fromEnd, int[] toSymbols, int toStart, int toEnd, int nSymbols) {
+        if (fromStart == fromEnd) {
+            diffs.add(new Difference(fromStart, Difference.NONE, toStart, toEnd - 1));
+        }
+        else if (toStart == toEnd) {
+            diffs.add(new Difference(fromStart, fromEnd - 1, toStart, Difference.NONE));
+        }
+        else {
+            int[] from = Arrays.copyOfRange(fromSymbols, fromStart, fromEnd);
+            int[] to = Arrays.copyOfRange(toSymbols, toStart, toEnd);
+            for (Difference diff : createDiff(from, to, nSymbols).execute()) {
+                int delEnd = diff.getDeletedEnd();
+                int addEnd = diff.getAddedEnd();
+                diffs.add(new Difference(diff.getDeletedStart() + fromStart, delEnd == Difference.NONE ? delEnd : delEnd + fromStart,
+                                         diff.getAddedStart() + toStart,     addEnd == Difference.NONE ? addEnd : addEnd + toStart));
+            }
+        }
     }
 
-    public Diff<Token> diff(TokenList toTokenList) {
-        return new Diff<Token>(tokens, toTokenList.tokens, new TokenComparator());
+    /**
+     * Returns the diff for the symbols, in linear space if either array is
+     * longer than the threshold.
+     */
+    protected SymbolDiff createDiff(int[] from, int[] to, int nSymbols) {
+        if (Math.max(from.length, to.length) > Code.linearDiffThreshold) {
+            return new LinearSymbolDiff(from, to, nSymbols);
+        }
+        else {
+            return new SymbolDiff(from, to, nSymbols);
+        }
     }
 
     public LocationRange getLocationRange(Integer start, Integer end) {
@@ -0,0 +1,63 @@
+package org.incava.diffj.code;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import net.sourceforge.pmd.ast.Token;
+
+/**
+ * Maps tokens to integer symbols, equal for tokens of the same kind and image,
+ * so that sequences of tokens can be compared as arrays of integers.
+ */
+public class TokenSymbols {
+    private final Map<String, Integer> ids;
+    private int[] kinds;
+    private int size;
+
+    public TokenSymbols() {
+        ids = new HashMap<String, Integer>();
+        kinds = new int[64];
+        size = 0;
+    }
+
+    /**
+     * Returns the number of distinct symbols, each of which is less than this.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getSymbol(Token tk) {
+        Integer id = ids.get(tk.image);
+        if (id == null) {
+            return add(tk.image, tk.kind);
+        }
+        else if (kinds[id] == tk.kind) {
+            return id;
+        }
+
+        // the same image as a token of another kind, which is rare:
+        String key = tk.kind + "\0" + tk.image;
+        id = ids.get(key);
+        return id == null ? add(key, tk.kind) : id;
+    }
+
+    public int[] getSymbols(List<Token> tokens) {
+        int[] symbols = new int[tokens.size()];
+        int idx = 0;
+        for (Token tk : tokens) {
+            symbols[idx++] = getSymbol(tk);
+        }
+        return symbols;
+    }
+
+    protected int add(String key, int kind) {
+        if (size == kinds.length) {
+            kinds = Arrays.copyOf(kinds, size * 2);
+        }
+        kinds[size] = kind;
+        ids.put(key, size);
+        return size++;
+    }
+}
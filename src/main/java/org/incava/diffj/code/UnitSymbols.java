@@ -0,0 +1,85 @@
+package org.incava.diffj.code;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps units of code, such as statements, to integer symbols, equal for units
+ * with the same sequence of token symbols. Units are looked up by hash, and
+ * compared in full to the first unit of that hash.
+ */
+public class UnitSymbols {
+    private final Map<Long, Integer> ids;
+    private final List<int[]> unitSymbols;
+    private final List<int[]> unitRanges;
+
+    public UnitSymbols() {
+        ids = new HashMap<Long, Integer>();
+        unitSymbols = new ArrayList<int[]>();
+        unitRanges = new ArrayList<int[]>();
+    }
+
+    public int size() {
+        return unitSymbols.size();
+    }
+
+    /**
+     * Returns the symbols of the units, each of the symbols from its start to
+     * the next one.
+     */
+    public int[] getSymbols(int[] symbols, int[] starts) {
+        int[] units = new int[starts.length - 1];
+        for (int ui = 0; ui < units.length; ++ui) {
+            units[ui] = getSymbol(symbols, starts[ui], starts[ui + 1]);
+        }
+        return units;
+    }
+
+    public int getSymbol(int[] symbols, int start, int end) {
+        long hash = hash(symbols, start, end);
+        Integer id = ids.get(hash);
+        if (id == null) {
+            id = add(symbols, start, end);
+            ids.put(hash, id);
+            return id;
+        }
+        else if (isEqual(id, symbols, start, end)) {
+            return id;
+        }
+        else {
+            // a collision, so this unit does not match any other:
+            return add(symbols, start, end);
+        }
+    }
+
+    protected int add(int[] symbols, int start, int end) {
+        unitSymbols.add(symbols);
+        unitRanges.add(new int[] { start, end });
+        return unitSymbols.size() - 1;
+    }
+
+    protected boolean isEqual(int id, int[] symbols, int start, int end) {
+        int[] other = unitSymbols.get(id);
+        int[] range = unitRanges.get(id);
+        if (range[1] - range[0] != end - start) {
+            return false;
+        }
+        for (int oi = range[0], si = start; si < end; ++oi, ++si) {
+            if (other[oi] != symbols[si]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    protected static long hash(int[] symbols, int start, int end) {
+        long hash = 0xcbf29ce484222325L;
+        for (int si = start; si < end; ++si) {
+            hash ^= symbols[si];
+            hash *= 0x100000001b3L;
+        }
+        return hash ^ (end - start);
+    }
+}
@@ -43,4 +43,12 @@ public class CompilationUnit {
         Types toTypes = toCompUnit.getTypes();
         fromTypes.diff(toTypes, differences);
     }
+
+    /**
+     * Adds the methods and fields of all types to those removed, or added, in
+     * the report, for a file in only one of the trees compared.
+     */
+    public void addMoveItems(boolean removed, Report report) {
+        getTypes().addMoveItems(removed, new Differences(report));
+    }
 }
@@ -1,28 +1,102 @@
 package org.incava.diffj.element;
 
+import java.util.ArrayList;
 import java.util.List;
 import net.sourceforge.pmd.ast.SimpleNode;
 import net.sourceforge.pmd.ast.Token;
 import org.incava.diffj.code.Code;
 
 public abstract class CodedElement extends AccessibleElement {
+    private long codeFingerprint;
+    private boolean hasCodeFingerprint;
+
     public CodedElement(SimpleNode node) {
         super(node);
+        this.hasCodeFingerprint = false;
     }
 
     abstract protected List<Token> getCodeTokens();
 
     abstract protected String getName();
 
+    /**
+     * Returns the nodes, such as statements, within the code tokens that are
+     * compared as units before their tokens are, or null if the tokens are
+     * compared only individually.
+     */
+    protected List<SimpleNode> getCodeUnits() {
+        return null;
+    }
+
+    /**
+     * Returns the children of the node, as units of code.
+     */
+    protected List<SimpleNode> getChildNodes(SimpleNode node) {
+        List<SimpleNode> children = new ArrayList<SimpleNode>();
+        int nChildren = node == null ? 0 : node.jjtGetNumChildren();
+        for (int ci = 0; ci < nChildren; ++ci) {
+            children.add((SimpleNode)node.jjtGetChild(ci));
+        }
+        return children;
+    }
+
     protected Code getCode() {
-        return new Code(getName(), getCodeTokens());
+        return new Code(getName(), getCodeTokens(), getCodeUnits());
     }
 
     public void compareCode(Code fromCode, Code toCode, Differences differences) {
         fromCode.diff(toCode, differences);
     }
 
+    /**
+     * Returns the first of the code tokens, or null if they are not known
+     * without building the list of them.
+     */
+    protected Token getFirstCodeToken() {
+        return null;
+    }
+
+    /**
+     * Returns the last of the code tokens, or null if they are not known
+     * without building the list of them.
+     */
+    protected Token getLastCodeToken() {
+        return null;
+    }
+
+    /**
+     * Returns a 64-bit hash of the kinds and images of the code tokens,
+     * computed when first requested, and without building the list of tokens.
+     * An element can be compared with others in several threads.
+     */
+    protected synchronized long getCodeFingerprint() {
+        if (!hasCodeFingerprint) {
+            codeFingerprint = Code.getFingerprint(getFirstCodeToken(), getLastCodeToken());
+            hasCodeFingerprint = true;
+        }
+        return codeFingerprint;
+    }
+
+    /**
+     * Returns whether this element and the other have the same code. Elements
+     * with different fingerprints do not; those with the same fingerprint are
+     * confirmed by comparing their tokens, since fingerprints can collide.
+     */
+    protected boolean hasSameCode(CodedElement toCodedElement) {
+        if (getFirstCodeToken() == null || toCodedElement.getFirstCodeToken() == null) {
+            return false;
+        }
+        if (getCodeFingerprint() != toCodedElement.getCodeFingerprint()) {
+            return false;
+        }
+        return Code.isSameTokens(getFirstCodeToken(), getLastCodeToken(), toCodedElement.getFirstCodeToken(), toCodedElement.getLastCodeToken());
+    }
+
     public void compareCode(CodedElement toCodedElement, Differences differences) {
+        if (hasSameCode(toCodedElement)) {
+            return;
+        }
+
         Code fromCode = getCode();
         Code toCode = toCodedElement.getCode();
         fromCode.diff(toCode, differences);
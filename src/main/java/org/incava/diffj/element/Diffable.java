@@ -1,5 +1,6 @@
 package org.incava.diffj.element;
 
+import java.util.List;
 import net.sourceforge.pmd.ast.SimpleNode;
 
 /**
@@ -8,6 +9,12 @@ import net.sourceforge.pmd.ast.SimpleNode;
 public interface Diffable<DiffType extends Diffable> {
     public double getMatchScore(DiffType toDiffable);
 
+    /**
+     * Returns the keys under which this is matched against others. Two
+     * diffables that have no key in common have a match score of zero.
+     */
+    public List<String> getMatchKeys();
+
     public void diff(DiffType toDiffable, Differences differences);
 
     public String getName();
@@ -1,6 +1,5 @@
 package org.incava.diffj.element;
 
-import java.text.MessageFormat;
 import java.util.ArrayList;
 import java.util.List;
 import net.sourceforge.pmd.ast.SimpleNode;
@@ -11,6 +10,7 @@ import org.incava.analysis.FileDiffChange;
 import org.incava.analysis.FileDiffDelete;
 import org.incava.analysis.FileDiffs;
 import org.incava.analysis.Report;
+import org.incava.log.Log;
 import org.incava.pmdx.SimpleNodeUtil;
 
 public class Differences {
@@ -31,17 +31,45 @@ public class Differences {
         this(new FileDiffs());
     }
 
+    protected Differences(Report report, FileDiffs diffs) {
+        this.report = report;
+        this.fileDiffs = diffs;
+    }
+
+    /**
+     * Returns differences with the same report and limit as these, but with
+     * their own list, such as for a comparison run in another thread. Those
+     * differences are then added to these, via <code>addAll</code>.
+     */
+    public Differences createBuffer() {
+        FileDiffs buffer = new FileDiffs();
+        buffer.setLimit(fileDiffs.getLimit());
+        return new Differences(report, buffer);
+    }
+
     public FileDiffs getFileDiffs() {
         return fileDiffs;
     }
 
+    /**
+     * Returns the report to which the differences are added, which is null if
+     * they are added to a list of differences only.
+     */
+    public Report getReport() {
+        return report;
+    }
+
     // -------------------------------------------------------
 
     public void add(FileDiff fdiff) {
-        tr.Ace.stack("fdiff: " + fdiff);
+        Log.stack("fdiff", fdiff);
         fileDiffs.add(fdiff);
     }
 
+    public void addAll(Differences other) {
+        fileDiffs.addBuffered(other.fileDiffs);
+    }
+
     public Object[] toParameters(Token a, Token b) {
         List<Object> params = new ArrayList<Object>();
         if (a != null) {
@@ -53,17 +81,32 @@ public class Differences {
         return params.toArray(new Object[params.size()]);
     }
 
+    /**
+     * Returns the parameters for the nodes, each of which is converted to a
+     * string only if and when the message is formatted.
+     */
     public Object[] toParameters(SimpleNode a, SimpleNode b) {
         List<Object> params = new ArrayList<Object>();
         if (a != null) {
-            params.add(SimpleNodeUtil.toString(a));
+            params.add(toText(a));
         }
         if (b != null) {
-            params.add(SimpleNodeUtil.toString(b));
+            params.add(toText(b));
         }
         return params.toArray(new Object[params.size()]);
     }
 
+    /**
+     * Returns an object whose string is that of the node.
+     */
+    protected Object toText(final SimpleNode node) {
+        return new Object() {
+            public String toString() {
+                return SimpleNodeUtil.toString(node);
+            }
+        };
+    }
+
     // -------------------------------------------------------
     // changed
     // -------------------------------------------------------
@@ -73,8 +116,7 @@ public class Differences {
     }
 
     public void changed(Token from, Token to, String msg, Object ... params) {
-        String str = MessageFormat.format(msg, params);
-        add(new FileDiffChange(str, from, to));
+        add(new FileDiffChange(msg, params, from, to));
     }
 
     public void changed(Token from, Token to, String msg) {
@@ -90,8 +132,7 @@ public class Differences {
     }
 
     public void changed(Token fromStart, Token fromEnd, Token toStart, Token toEnd, String msg, Object ... params) {
-        String str = MessageFormat.format(msg, params);
-        add(new FileDiffChange(str, fromStart, fromEnd, toStart, toEnd));
+        add(new FileDiffChange(msg, params, fromStart, fromEnd, toStart, toEnd));
     }
 
     public void changed(SimpleNode from, Token to, String msg, Object ... params) {
@@ -107,8 +148,7 @@ public class Differences {
     // -------------------------------------------------------
 
     public void deleted(Token from, Token to, String msg, Object ... params) {
-        String str = MessageFormat.format(msg, params);
-        add(new FileDiffDelete(str, from, to));
+        add(new FileDiffDelete(msg, params, from, to));
     }
 
     public void deleted(Token from, Token to, String msg) {
@@ -124,8 +164,7 @@ public class Differences {
     }
 
     public void deleted(Token fromStart, Token fromEnd, Token toStart, Token toEnd, String msg, Object ... params) {
-        String str = MessageFormat.format(msg, params);
-        add(new FileDiffDelete(str, fromStart, fromEnd, toStart, toEnd));
+        add(new FileDiffDelete(msg, params, fromStart, fromEnd, toStart, toEnd));
     }
 
     public void deleted(SimpleNode from, Token to, String msg, Object ... params) {
@@ -141,8 +180,7 @@ public class Differences {
     // -------------------------------------------------------
 
     public void added(Token from, Token to, String msg, Object ... params) {
-        String str = MessageFormat.format(msg, params);
-        add(new FileDiffAdd(str, from, to));
+        add(new FileDiffAdd(msg, params, from, to));
     }
 
     public void added(Token from, Token to, String msg) {
@@ -158,8 +196,7 @@ public class Differences {
     }
 
     public void added(Token fromStart, Token fromEnd, Token toStart, Token toEnd, String msg, Object ... params) {
-        String str = MessageFormat.format(msg, params);
-        add(new FileDiffAdd(str, fromStart, fromEnd, toStart, toEnd));
+        add(new FileDiffAdd(msg, params, fromStart, fromEnd, toStart, toEnd));
     }
 
     public void added(SimpleNode from, Token to, String msg, Object ... params) {
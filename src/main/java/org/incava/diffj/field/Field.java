@@ -6,6 +6,8 @@ import java.util.Set;
 import net.sourceforge.pmd.ast.ASTFieldDeclaration;
 import net.sourceforge.pmd.ast.ASTType;
 import net.sourceforge.pmd.ast.ASTVariableDeclarator;
+import net.sourceforge.pmd.ast.ASTVariableInitializer;
+import net.sourceforge.pmd.ast.Node;
 import net.sourceforge.pmd.ast.SimpleNode;
 import net.sourceforge.pmd.ast.Token;
 import org.incava.diffj.element.AccessibleElement;
@@ -13,18 +15,49 @@ import org.incava.diffj.element.Diffable;
 import org.incava.diffj.element.Differences;
 import org.incava.ijdk.util.CollectionExt;
 import org.incava.pmdx.FieldUtil;
-import org.incava.pmdx.SimpleNodeUtil;
 import org.incava.pmdx.VariableUtil;
 
 public class Field extends AccessibleElement implements Diffable<Field> {
     public static final String FIELD_REMOVED = "field removed: {0}";
     public static final String FIELD_ADDED = "field added: {0}";    
+    public static final String FIELD_RENAMED = "field renamed from {0} to {1}";
 
     private final ASTFieldDeclaration field;
+    private final ASTType type;
+    private final List<ASTVariableDeclarator> varDecls;
+    private final ASTVariableInitializer initializer;
 
+    /**
+     * Creates the field, with its type, variables, and the initializer of the
+     * first variable found in one pass over the children of the declaration.
+     */
     public Field(ASTFieldDeclaration field) {
         super(field);
         this.field = field;
+
+        ASTType fieldType = null;
+        ASTVariableInitializer firstInit = null;
+        this.varDecls = new ArrayList<ASTVariableDeclarator>();
+        int nChildren = field.jjtGetNumChildren();
+        for (int ci = 0; ci < nChildren; ++ci) {
+            Node child = field.jjtGetChild(ci);
+            if (child instanceof ASTVariableDeclarator) {
+                ASTVariableDeclarator varDecl = (ASTVariableDeclarator)child;
+                if (varDecls.isEmpty()) {
+                    // the initializer follows the name:
+                    Node last = varDecl.jjtGetChild(varDecl.jjtGetNumChildren() - 1);
+                    if (last instanceof ASTVariableInitializer) {
+                        firstInit = (ASTVariableInitializer)last;
+                    }
+                }
+                varDecls.add(varDecl);
+            }
+            else if (child instanceof ASTType && fieldType == null) {
+                fieldType = (ASTType)child;
+            }
+        }
+        this.type = fieldType;
+        this.initializer = firstInit;
     }
 
     public void diff(Field toField, Differences differences) {
@@ -56,12 +89,11 @@ public class Field extends AccessibleElement implements Diffable<Field> {
     }
 
     protected ASTType getType() {
-        return (ASTType)SimpleNodeUtil.findChild(field, net.sourceforge.pmd.ast.ASTType.class);
+        return type;
     }
 
     protected Variables getVariables() {
-        List<ASTVariableDeclarator> varDecls = SimpleNodeUtil.snatchChildren(field, "net.sourceforge.pmd.ast.ASTVariableDeclarator");
-        return new Variables(getType(), varDecls);
+        return new Variables(type, varDecls);
     }
 
     protected void compareVariables(Field toField, Differences differences) {
@@ -75,7 +107,6 @@ public class Field extends AccessibleElement implements Diffable<Field> {
      * field.
      */
     public List<String> getNameList() {
-        List<ASTVariableDeclarator> varDecls = SimpleNodeUtil.snatchChildren(field, "net.sourceforge.pmd.ast.ASTVariableDeclarator");
         List<String> names = new ArrayList<String>();
         for (ASTVariableDeclarator varDecl : varDecls) {
             names.add(VariableUtil.getName(varDecl).image);
@@ -83,6 +114,59 @@ public class Field extends AccessibleElement implements Diffable<Field> {
         return names;
     }
 
+    /**
+     * Returns the tokens of the field other than the name, for a field of one
+     * variable with an initializer, and otherwise null.
+     */
+    public List<Token> getUnnamedTokens() {
+        if (varDecls.size() != 1 || initializer == null) {
+            return null;
+        }
+
+        Token nameTk = VariableUtil.getName(varDecls.get(0));
+        List<Token> tokens = new ArrayList<Token>();
+        Token last = field.getLastToken();
+        for (Token tk = field.getFirstToken(); tk != null; tk = tk == last ? null : tk.next) {
+            if (tk != nameTk) {
+                tokens.add(tk);
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Compares this field to the one to which it was renamed, which both have a
+     * single variable, reporting the rename and then the differences as if the
+     * names were the same.
+     */
+    public void diffRenamed(Field toField, Differences differences) {
+        ASTVariableDeclarator fromVarDecl = varDecls.get(0);
+        ASTVariableDeclarator toVarDecl = toField.varDecls.get(0);
+        Token fromName = VariableUtil.getName(fromVarDecl);
+        Token toName = VariableUtil.getName(toVarDecl);
+        differences.changed(fromName, toName, FIELD_RENAMED, fromName.image, toName.image);
+
+        compareAccess(toField, differences);
+        compareModifiers(toField, differences);
+
+        Variable fromVariable = new Variable(getType(), fromVarDecl);
+        Variable toVariable = new Variable(toField.getType(), toVarDecl);
+        fromVariable.diff(toVariable, differences);
+    }
+
+    /**
+     * Returns the names of the variables, and the type, since fields match
+     * when either is the same.
+     */
+    public List<String> getMatchKeys() {
+        List<String> keys = new ArrayList<String>();
+        for (String name : getNameList()) {
+            keys.add("name:" + name);
+        }
+        keys.add("type:" + toString(getType()));
+        return keys;
+    }
+
     public double getMatchScore(Field toField) {
         // a field can have more than one name.
 
@@ -1,6 +1,7 @@
 package org.incava.diffj.field;
 
 import java.util.List;
+import net.sourceforge.pmd.ast.ASTArrayInitializer;
 import net.sourceforge.pmd.ast.ASTType;
 import net.sourceforge.pmd.ast.ASTVariableDeclarator;
 import net.sourceforge.pmd.ast.ASTVariableInitializer;
@@ -62,6 +63,23 @@ public class Variable extends CodedElement {
     public List<Token> getCodeTokens() {
         return SimpleNodeUtil.getChildTokens(init);
     }    
+
+    protected Token getFirstCodeToken() {
+        return init == null ? null : init.getFirstToken();
+    }
+
+    protected Token getLastCodeToken() {
+        return init == null ? null : init.getLastToken();
+    }
+
+    /**
+     * Returns the elements of an array initializer, or null if the
+     * initializer is not of an array.
+     */
+    protected List<SimpleNode> getCodeUnits() {
+        SimpleNode arrayInit = SimpleNodeUtil.findChild(init, ASTArrayInitializer.class);
+        return arrayInit == null ? null : getChildNodes(arrayInit);
+    }
     
     public String getTypeName() {
         return SimpleNodeUtil.toString(type);
@@ -1,11 +1,16 @@
 package org.incava.diffj.function;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import net.sourceforge.pmd.ast.ASTBlockStatement;
 import net.sourceforge.pmd.ast.ASTConstructorDeclaration;
+import net.sourceforge.pmd.ast.ASTExplicitConstructorInvocation;
 import net.sourceforge.pmd.ast.ASTFormalParameters;
 import net.sourceforge.pmd.ast.ASTNameList;
 import net.sourceforge.pmd.ast.JavaParserConstants;
+import net.sourceforge.pmd.ast.SimpleNode;
 import net.sourceforge.pmd.ast.Token;
 import org.incava.diffj.element.Diffable;
 import org.incava.diffj.element.Differences;
@@ -63,6 +68,44 @@ public class Ctor extends Function implements Diffable<Ctor> {
         return children;
     }
 
+    /**
+     * Returns the left brace of the body, as in {@link #getCodeTokens}.
+     */
+    protected Token getFirstCodeToken() {
+        Token last = ctor.getLastToken();
+        for (Token tk = ctor.getFirstToken(); tk != null; tk = tk == last ? null : tk.next) {
+            if (tk.kind == JavaParserConstants.LBRACE) {
+                return tk;
+            }
+        }
+        return null;
+    }
+
+    protected Token getLastCodeToken() {
+        return ctor.getLastToken();
+    }
+
+    /**
+     * Returns the statements of the body, including any explicit invocation
+     * of another constructor.
+     */
+    protected List<SimpleNode> getCodeUnits() {
+        List<SimpleNode> units = new ArrayList<SimpleNode>();
+        for (SimpleNode child : getChildNodes(ctor)) {
+            if (child instanceof ASTBlockStatement || child instanceof ASTExplicitConstructorInvocation) {
+                units.add(child);
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Returns a single key, since any two ctors can match by parameters.
+     */
+    public List<String> getMatchKeys() {
+        return Collections.singletonList("");
+    }
+
     public double getMatchScore(Ctor toCtor) {
         Parameters fromParams = getParameters();
         Parameters toParams = toCtor.getParameters();
@@ -41,6 +41,6 @@ public abstract class Function extends CodedElement {
     }
 
     protected Code getCode() {
-        return new Code(getName(), getCodeTokens());
+        return new Code(getName(), getCodeTokens(), getCodeUnits());
     }
 }
@@ -1,5 +1,6 @@
 package org.incava.diffj.function;
 
+import java.util.Collections;
 import java.util.List;
 import net.sourceforge.pmd.ast.ASTBlock;
 import net.sourceforge.pmd.ast.ASTFormalParameters;
@@ -19,6 +20,7 @@ public class Method extends Function implements Diffable<Method> {
     public static final String METHOD_REMOVED = "method removed: {0}";
     public static final String METHOD_ADDED = "method added: {0}";
     public static final String METHOD_CHANGED = "method changed from {0} to {1}";
+    public static final String METHOD_RENAMED = "method renamed from {0} to {1}";
     public static final String RETURN_TYPE_CHANGED = "return type changed from {0} to {1}";
     public static final String METHOD_BLOCK_ADDED = "method block added";
     public static final String METHOD_BLOCK_REMOVED = "method block removed";
@@ -94,19 +96,34 @@ public class Method extends Function implements Diffable<Method> {
 
     // protected void compareBlocks(String fromName, ASTBlock fromBlock, String toName, ASTBlock toBlock)
     // {
-    //     tr.Ace.cyan("fromBlock", fromBlock);
+    //     Log.log("fromBlock", fromBlock);
     //     SimpleNodeUtil.dump(fromBlock, "");
-    //     tr.Ace.cyan("toBlock", toBlock);
+    //     Log.log("toBlock", toBlock);
     //     SimpleNodeUtil.dump(toBlock, "");
     //     // walk through, looking for common if and for statements ...
-    //     tr.Ace.cyan("aChildren(null)", SimpleNodeUtil.findChildren(fromBlock));
-    //     tr.Ace.cyan("bChildren(null)", SimpleNodeUtil.findChildren(toBlock));        
+    //     Log.log("aChildren(null)", SimpleNodeUtil.findChildren(fromBlock));
+    //     Log.log("bChildren(null)", SimpleNodeUtil.findChildren(toBlock));        
     // }
 
     protected List<Token> getCodeTokens() {
         return SimpleNodeUtil.getChildTokens(block);
     }
 
+    protected Token getFirstCodeToken() {
+        return block == null ? null : block.getFirstToken();
+    }
+
+    protected Token getLastCodeToken() {
+        return block == null ? null : block.getLastToken();
+    }
+
+    /**
+     * Returns the statements of the block.
+     */
+    protected List<SimpleNode> getCodeUnits() {
+        return getChildNodes(block);
+    }
+
     protected void compareReturnTypes(Method toMethod, Differences differences) {
         SimpleNode fromRetType    = getReturnType();
         SimpleNode toRetType      = toMethod.getReturnType();
@@ -126,6 +143,28 @@ public class Method extends Function implements Diffable<Method> {
         return decl.getFirstToken().image;
     }
 
+    /**
+     * Compares this method to the one to which it was renamed, reporting the
+     * rename and then the differences as if the names were the same.
+     */
+    public void diffRenamed(Method toMethod, Differences differences) {
+        Token fromName = MethodUtil.getDeclarator(method).getFirstToken();
+        Token toName = MethodUtil.getDeclarator(toMethod.method).getFirstToken();
+        differences.changed(fromName, toName, METHOD_RENAMED, fromName.image, toName.image);
+        diff(toMethod, differences);
+    }
+
+    /**
+     * Returns the tokens of the block, or null if the method is abstract.
+     */
+    public List<Token> getBodyTokens() {
+        return block == null ? null : getCodeTokens();
+    }
+
+    public List<String> getMatchKeys() {
+        return Collections.singletonList(getMethodName());
+    }
+
     public double getMatchScore(Method toMethod) {
         String fromName = getMethodName();
         String toName = toMethod.getMethodName();
@@ -1,8 +1,10 @@
 package org.incava.diffj.function;
 
+import java.util.ArrayList;
 import java.util.List;
 import net.sourceforge.pmd.ast.ASTName;
 import net.sourceforge.pmd.ast.ASTNameList;
+import net.sourceforge.pmd.ast.Node;
 import net.sourceforge.pmd.ast.SimpleNode;
 import org.incava.diffj.element.Differences;
 import org.incava.pmdx.SimpleNodeUtil;
@@ -15,10 +17,20 @@ public class Throws {
 
     private final SimpleNode node;
     private final ASTNameList nameList;
+    private final List<ASTName> names;
     
     public Throws(SimpleNode node, ASTNameList nameList) {
         this.node = node;
         this.nameList = nameList;
+        this.names = new ArrayList<ASTName>();
+
+        int nChildren = nameList == null ? 0 : nameList.jjtGetNumChildren();
+        for (int ci = 0; ci < nChildren; ++ci) {
+            Node child = nameList.jjtGetChild(ci);
+            if (child instanceof ASTName) {
+                names.add((ASTName)child);
+            }
+        }
     }
 
     public boolean isEmpty() {
@@ -39,8 +51,11 @@ public class Throws {
         }
     }
 
+    /**
+     * Returns a copy of the names, which the caller can change.
+     */
     public List<ASTName> getChildNames() {
-        return SimpleNodeUtil.snatchChildren(nameList, "net.sourceforge.pmd.ast.ASTName");
+        return new ArrayList<ASTName>(names);
     }
 
     protected void changeThrows(SimpleNode fromNode, SimpleNode toNode, String msg, ASTName name, Differences differences) {
@@ -0,0 +1,50 @@
+package org.incava.diffj.git;
+
+/**
+ * An object read from a git repository: a commit, tree, blob, or tag, with
+ * its (inflated) contents.
+ */
+public class GitObject {
+    public static final int COMMIT = 1;
+
+    public static final int TREE = 2;
+
+    public static final int BLOB = 3;
+
+    public static final int TAG = 4;
+
+    public static final String[] TYPE_NAMES = new String[] { null, "commit", "tree", "blob", "tag" };
+
+    private final int type;
+    private final byte[] data;
+
+    public GitObject(int type, byte[] data) {
+        this.type = type;
+        this.data = data;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getTypeName() {
+        return type > 0 && type < TYPE_NAMES.length ? TYPE_NAMES[type] : "unknown";
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+
+    public static int getType(String typeName) {
+        for (int ti = 1; ti < TYPE_NAMES.length; ++ti) {
+            if (TYPE_NAMES[ti].equals(typeName)) {
+                return ti;
+            }
+        }
+        return -1;
+    }
+
+    public String toString() {
+        return getTypeName() + " (" + data.length + " bytes)";
+    }
+}
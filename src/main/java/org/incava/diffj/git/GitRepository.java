@@ -0,0 +1,496 @@
+package org.incava.diffj.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.InflaterInputStream;
+import org.incava.diffj.lang.DiffJException;
+
+/**
+ * A local git repository, read directly from its directory: loose objects,
+ * pack files, and references (loose and packed). Nothing is written, and no
+ * external git command is run.
+ */
+public class GitRepository {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String HEX = "0123456789abcdef";
+
+    private final File gitDir;
+    private final File commonDir;
+    private final File objectsDir;
+    private final List<PackFile> packs;
+
+    /**
+     * Opens the repository at the given directory, which is either the git
+     * directory (as for a bare repository), or a working tree containing one.
+     */
+    public GitRepository(File dir) throws DiffJException {
+        this.gitDir = findGitDir(dir);
+        this.commonDir = findCommonDir(gitDir);
+        this.objectsDir = new File(commonDir, "objects");
+        this.packs = new ArrayList<PackFile>();
+
+        File[] packFiles = new File(objectsDir, "pack").listFiles();
+        if (packFiles != null) {
+            for (File idx : packFiles) {
+                String name = idx.getName();
+                if (name.endsWith(".idx")) {
+                    File pack = new File(idx.getParentFile(), name.substring(0, name.length() - 4) + ".pack");
+                    if (pack.isFile()) {
+                        packs.add(new PackFile(this, idx, pack));
+                    }
+                }
+            }
+        }
+    }
+
+    protected static File findGitDir(File dir) throws DiffJException {
+        File dotGit = new File(dir, ".git");
+        if (dotGit.isDirectory()) {
+            return dotGit;
+        }
+        else if (dotGit.isFile()) {
+            // a linked worktree or submodule: "gitdir: path"
+            String line = readLine(dotGit);
+            if (line != null && line.startsWith("gitdir:")) {
+                File linked = new File(line.substring(7).trim());
+                return linked.isAbsolute() ? linked : new File(dir, linked.getPath());
+            }
+        }
+        else if (new File(dir, "objects").isDirectory() && new File(dir, "HEAD").isFile()) {
+            return dir;
+        }
+        throw new DiffJException("not a git repository: " + dir);
+    }
+
+    protected static File findCommonDir(File gitDir) throws DiffJException {
+        File commonFile = new File(gitDir, "commondir");
+        if (commonFile.isFile()) {
+            File common = new File(readLine(commonFile));
+            return common.isAbsolute() ? common : new File(gitDir, common.getPath());
+        }
+        return gitDir;
+    }
+
+    public File getGitDir() {
+        return gitDir;
+    }
+
+    public String toString() {
+        return gitDir.getPath();
+    }
+
+    // -------------------------------------------------------
+    // objects
+    // -------------------------------------------------------
+
+    /**
+     * Reads the object with the given (full) id, from the loose objects or
+     * from the pack files.
+     */
+    public GitObject read(String id) throws DiffJException {
+        File loose = new File(objectsDir, id.substring(0, 2) + File.separator + id.substring(2));
+        if (loose.isFile()) {
+            return readLoose(loose);
+        }
+
+        byte[] idBytes = fromHex(id);
+        for (PackFile pack : packs) {
+            long offset = pack.findOffset(idBytes);
+            if (offset >= 0) {
+                return pack.read(offset);
+            }
+        }
+        throw new DiffJException("object not found: " + id);
+    }
+
+    public boolean hasObject(String id) {
+        if (new File(objectsDir, id.substring(0, 2) + File.separator + id.substring(2)).isFile()) {
+            return true;
+        }
+
+        byte[] idBytes = fromHex(id);
+        for (PackFile pack : packs) {
+            if (pack.findOffset(idBytes) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Reads the object, which must be of the given type.
+     */
+    public GitObject read(String id, int type) throws DiffJException {
+        GitObject obj = read(id);
+        if (obj.getType() != type) {
+            throw new DiffJException("object " + id + " is a " + obj.getTypeName() + ", not a " + GitObject.TYPE_NAMES[type]);
+        }
+        return obj;
+    }
+
+    protected GitObject readLoose(File file) throws DiffJException {
+        try {
+            InputStream in = new InflaterInputStream(new FileInputStream(file));
+            try {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buf = new byte[8192];
+                int nRead;
+                while ((nRead = in.read(buf)) >= 0) {
+                    bytes.write(buf, 0, nRead);
+                }
+                byte[] raw = bytes.toByteArray();
+
+                // "<type> <size>\0<data>"
+                int space = indexOf(raw, (byte)' ', 0);
+                int nul = indexOf(raw, (byte)0, space + 1);
+                if (space < 0 || nul < 0) {
+                    throw new DiffJException("invalid object: " + file);
+                }
+                int type = GitObject.getType(new String(raw, 0, space, UTF8));
+                byte[] data = new byte[raw.length - nul - 1];
+                System.arraycopy(raw, nul + 1, data, 0, data.length);
+                return new GitObject(type, data);
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException ioe) {
+            throw new DiffJException("Error reading object '" + file + "': " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * Returns the entries of the tree with the given id.
+     */
+    public List<TreeEntry> readTree(String id) throws DiffJException {
+        byte[] data = read(id, GitObject.TREE).getData();
+        List<TreeEntry> entries = new ArrayList<TreeEntry>();
+
+        // "<mode> <name>\0<20-byte id>", repeated
+        int pos = 0;
+        while (pos < data.length) {
+            int space = indexOf(data, (byte)' ', pos);
+            int nul = indexOf(data, (byte)0, space + 1);
+            if (space < 0 || nul < 0 || nul + 21 > data.length) {
+                throw new DiffJException("invalid tree: " + id);
+            }
+            String mode = new String(data, pos, space - pos, UTF8);
+            String name = new String(data, space + 1, nul - space - 1, UTF8);
+            entries.add(new TreeEntry(mode, name, toHex(data, nul + 1)));
+            pos = nul + 21;
+        }
+        return entries;
+    }
+
+    /**
+     * Returns the id of the tree for the revision, peeling tags and commits.
+     */
+    public String resolveTree(String rev) throws DiffJException {
+        String id = resolve(rev);
+        while (true) {
+            GitObject obj = read(id);
+            switch (obj.getType()) {
+                case GitObject.TREE:
+                    return id;
+                case GitObject.COMMIT:
+                    return getHeader(obj, "tree", id);
+                case GitObject.TAG:
+                    id = getHeader(obj, "object", id);
+                    break;
+                default:
+                    throw new DiffJException("revision " + rev + " is not a tree, commit or tag");
+            }
+        }
+    }
+
+    /**
+     * Returns the id of the commit for the revision, peeling tags.
+     */
+    protected String resolveCommit(String id) throws DiffJException {
+        GitObject obj = read(id);
+        while (obj.getType() == GitObject.TAG) {
+            id = getHeader(obj, "object", id);
+            obj = read(id);
+        }
+        if (obj.getType() != GitObject.COMMIT) {
+            throw new DiffJException("object " + id + " is not a commit");
+        }
+        return id;
+    }
+
+    /**
+     * Returns the value of the first header (such as "tree" or "object") of a
+     * commit or tag.
+     */
+    protected String getHeader(GitObject obj, String name, String id) throws DiffJException {
+        List<String> values = getHeaders(obj, name);
+        if (values.isEmpty()) {
+            throw new DiffJException("object " + id + " has no " + name);
+        }
+        return values.get(0);
+    }
+
+    protected List<String> getHeaders(GitObject obj, String name) {
+        List<String> values = new ArrayList<String>();
+        String text = new String(obj.getData(), UTF8);
+        String prefix = name + " ";
+        for (String line : text.split("\n")) {
+            if (line.length() == 0) {
+                // end of headers
+                break;
+            }
+            else if (line.startsWith(prefix)) {
+                values.add(line.substring(prefix.length()).trim());
+            }
+        }
+        return values;
+    }
+
+    // -------------------------------------------------------
+    // revisions and references
+    // -------------------------------------------------------
+
+    /**
+     * Resolves the revision to an object id. Supported are full and
+     * abbreviated ids, HEAD, branch, tag and remote names (short or full),
+     * and the suffixes "^", "^N", "~N" and "^{}".
+     */
+    public String resolve(String rev) throws DiffJException {
+        int suffixPos = findSuffix(rev);
+        if (suffixPos < 0) {
+            return resolveName(rev);
+        }
+
+        String id = resolve(rev.substring(0, suffixPos));
+        String suffix = rev.substring(suffixPos);
+
+        if (suffix.equals("^{}")) {
+            GitObject obj = read(id);
+            while (obj.getType() == GitObject.TAG) {
+                id = getHeader(obj, "object", id);
+                obj = read(id);
+            }
+            return id;
+        }
+
+        char op = suffix.charAt(0);
+        int n = suffix.length() == 1 ? 1 : parseNumber(suffix.substring(1), rev);
+        if (op == '~') {
+            for (int ni = 0; ni < n; ++ni) {
+                id = getParent(id, 1, rev);
+            }
+            return id;
+        }
+        else {
+            return n == 0 ? resolveCommit(id) : getParent(id, n, rev);
+        }
+    }
+
+    /**
+     * Returns the position of the last "^" or "~" suffix, or -1 if none.
+     */
+    protected int findSuffix(String rev) {
+        if (rev.endsWith("^{}")) {
+            return rev.length() - 3;
+        }
+        int pos = rev.length();
+        while (pos > 0 && Character.isDigit(rev.charAt(pos - 1))) {
+            --pos;
+        }
+        if (pos > 0 && (rev.charAt(pos - 1) == '^' || rev.charAt(pos - 1) == '~')) {
+            return pos - 1;
+        }
+        return -1;
+    }
+
+    protected int parseNumber(String str, String rev) throws DiffJException {
+        try {
+            return Integer.parseInt(str);
+        }
+        catch (NumberFormatException nfe) {
+            throw new DiffJException("invalid revision: " + rev);
+        }
+    }
+
+    protected String getParent(String id, int n, String rev) throws DiffJException {
+        String commitId = resolveCommit(id);
+        List<String> parents = getHeaders(read(commitId), "parent");
+        if (n > parents.size()) {
+            throw new DiffJException("revision " + rev + " does not exist");
+        }
+        return parents.get(n - 1);
+    }
+
+    protected String resolveName(String name) throws DiffJException {
+        String[] candidates = new String[] {
+            name,
+            "refs/" + name,
+            "refs/tags/" + name,
+            "refs/heads/" + name,
+            "refs/remotes/" + name,
+            "refs/remotes/" + name + "/HEAD",
+        };
+
+        for (String candidate : candidates) {
+            String id = readRef(candidate, 0);
+            if (id != null) {
+                return id;
+            }
+        }
+
+        if (name.length() == 40 && isHex(name) && hasObject(name.toLowerCase())) {
+            return name.toLowerCase();
+        }
+        else if (name.length() >= 4 && name.length() < 40 && isHex(name)) {
+            String id = findObject(name.toLowerCase());
+            if (id != null) {
+                return id;
+            }
+        }
+
+        throw new DiffJException("unknown revision: " + name);
+    }
+
+    /**
+     * Returns the object id of the reference, following symbolic references,
+     * or null if there is no such reference.
+     */
+    protected String readRef(String name, int depth) throws DiffJException {
+        if (depth > 5) {
+            throw new DiffJException("too many levels of symbolic references: " + name);
+        }
+
+        // HEAD and other per-worktree references are in the git directory;
+        // branches and tags are in the common one.
+        File file = new File(gitDir, name);
+        if (!file.isFile()) {
+            file = new File(commonDir, name);
+        }
+
+        if (file.isFile()) {
+            String line = readLine(file);
+            if (line != null && line.startsWith("ref:")) {
+                return readRef(line.substring(4).trim(), depth + 1);
+            }
+            else if (line != null && line.length() == 40 && isHex(line)) {
+                return line;
+            }
+        }
+
+        return name.startsWith("refs/") ? readPackedRef(name) : null;
+    }
+
+    protected String readPackedRef(String name) throws DiffJException {
+        File packedRefs = new File(commonDir, "packed-refs");
+        if (!packedRefs.isFile()) {
+            return null;
+        }
+
+        try {
+            for (String line : Files.readAllLines(packedRefs.toPath(), UTF8)) {
+                if (line.startsWith("#") || line.startsWith("^")) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                if (space == 40 && line.substring(41).trim().equals(name)) {
+                    return line.substring(0, 40);
+                }
+            }
+            return null;
+        }
+        catch (IOException ioe) {
+            throw new DiffJException("Error reading '" + packedRefs + "': " + ioe.getMessage(), ioe);
+        }
+    }
+
+    /**
+     * Returns the single object with the abbreviated id, or null if there is
+     * none.
+     */
+    protected String findObject(String prefix) throws DiffJException {
+        Set<String> ids = new TreeSet<String>();
+
+        File looseDir = new File(objectsDir, prefix.substring(0, 2));
+        String[] names = looseDir.list();
+        if (names != null) {
+            for (String name : names) {
+                String id = prefix.substring(0, 2) + name;
+                if (id.startsWith(prefix)) {
+                    ids.add(id);
+                }
+            }
+        }
+
+        for (PackFile pack : packs) {
+            pack.findIds(prefix, ids, 2);
+        }
+
+        if (ids.size() > 1) {
+            throw new DiffJException("ambiguous revision: " + prefix);
+        }
+        return ids.isEmpty() ? null : ids.iterator().next();
+    }
+
+    // -------------------------------------------------------
+    // utilities
+    // -------------------------------------------------------
+
+    protected static String readLine(File file) throws DiffJException {
+        try {
+            List<String> lines = Files.readAllLines(file.toPath(), UTF8);
+            return lines.isEmpty() ? null : lines.get(0).trim();
+        }
+        catch (IOException ioe) {
+            throw new DiffJException("Error reading '" + file + "': " + ioe.getMessage(), ioe);
+        }
+    }
+
+    protected static int indexOf(byte[] bytes, byte b, int start) {
+        for (int bi = start; bi < bytes.length; ++bi) {
+            if (bytes[bi] == b) {
+                return bi;
+            }
+        }
+        return -1;
+    }
+
+    protected static boolean isHex(String str) {
+        for (int ci = 0; ci < str.length(); ++ci) {
+            if (HEX.indexOf(Character.toLowerCase(str.charAt(ci))) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the 20 bytes of the id at the offset, as a hexadecimal string.
+     */
+    public static String toHex(byte[] bytes, int offset) {
+        StringBuilder sb = new StringBuilder(40);
+        for (int bi = offset; bi < offset + 20; ++bi) {
+            sb.append(HEX.charAt((bytes[bi] >> 4) & 0x0f));
+            sb.append(HEX.charAt(bytes[bi] & 0x0f));
+        }
+        return sb.toString();
+    }
+
+    public static byte[] fromHex(String id) {
+        byte[] bytes = new byte[id.length() / 2];
+        for (int bi = 0; bi < bytes.length; ++bi) {
+            bytes[bi] = (byte)((HEX.indexOf(id.charAt(bi * 2)) << 4) | HEX.indexOf(id.charAt(bi * 2 + 1)));
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,344 @@
+package org.incava.diffj.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import org.incava.diffj.lang.DiffJException;
+
+/**
+ * A pack file and its index, both memory-mapped. Objects are looked up in the
+ * index by binary search, and deltas (by offset or by reference) are resolved
+ * against their bases, the most recently used of which are cached, up to a
+ * total size.
+ */
+public class PackFile {
+    public static final int OFS_DELTA = 6;
+
+    public static final int REF_DELTA = 7;
+
+    private static final int IDX_V2_MAGIC = 0xff744f63;
+
+    /**
+     * The most bytes of objects cached as bases of deltas. An object larger
+     * than this is not cached.
+     */
+    private static final long MAX_CACHED_BYTES = 32L * 1024 * 1024;
+
+    private final File packFile;
+    private final GitRepository repository;
+    private final ByteBuffer pack;
+    private final ByteBuffer index;
+    private final int version;
+    private final int count;
+    private final Map<Long, GitObject> bases;
+    private long cachedBytes;
+
+    public PackFile(GitRepository repository, File indexFile, File packFile) throws DiffJException {
+        this.repository = repository;
+        this.packFile = packFile;
+        this.index = map(indexFile);
+        this.pack = map(packFile);
+
+        if (index.getInt(0) == IDX_V2_MAGIC) {
+            version = index.getInt(4);
+            if (version != 2) {
+                throw new DiffJException("unsupported pack index version " + version + ": " + indexFile);
+            }
+        }
+        else {
+            version = 1;
+        }
+        count = index.getInt(getFanoutOffset() + 255 * 4);
+
+        this.bases = new LinkedHashMap<Long, GitObject>(16, 0.75f, true);
+        this.cachedBytes = 0;
+    }
+
+    protected static ByteBuffer map(File file) throws DiffJException {
+        try {
+            FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+            try {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new DiffJException("pack file too large: " + file);
+                }
+                return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            }
+            finally {
+                channel.close();
+            }
+        }
+        catch (IOException ioe) {
+            throw new DiffJException("Error reading '" + file + "': " + ioe.getMessage(), ioe);
+        }
+    }
+
+    public String toString() {
+        return packFile.getPath();
+    }
+
+    protected int getFanoutOffset() {
+        return version == 2 ? 8 : 0;
+    }
+
+    /**
+     * Returns the offset in the pack of the object, or -1 if it is not in this
+     * pack.
+     */
+    public long findOffset(byte[] id) {
+        int first = id[0] & 0xff;
+        int fanout = getFanoutOffset();
+        int lo = first == 0 ? 0 : index.getInt(fanout + (first - 1) * 4);
+        int hi = index.getInt(fanout + first * 4) - 1;
+
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            int cmp = compareId(id, getIdPosition(mid));
+            if (cmp == 0) {
+                return getOffset(mid);
+            }
+            else if (cmp < 0) {
+                hi = mid - 1;
+            }
+            else {
+                lo = mid + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the ids in this pack that begin with the given hexadecimal
+     * prefix, up to the maximum number.
+     */
+    public void findIds(String prefix, Set<String> ids, int max) {
+        int first = Integer.parseInt(prefix.substring(0, 2), 16);
+        int fanout = getFanoutOffset();
+        int lo = first == 0 ? 0 : index.getInt(fanout + (first - 1) * 4);
+        int hi = index.getInt(fanout + first * 4);
+
+        for (int ei = lo; ei < hi && ids.size() < max; ++ei) {
+            String id = toHex(getIdPosition(ei));
+            if (id.startsWith(prefix)) {
+                ids.add(id);
+            }
+        }
+    }
+
+    protected int getIdPosition(int entry) {
+        return version == 2 ? 8 + 256 * 4 + entry * 20 : 256 * 4 + entry * 24 + 4;
+    }
+
+    protected long getOffset(int entry) {
+        if (version == 1) {
+            return index.getInt(256 * 4 + entry * 24) & 0xffffffffL;
+        }
+
+        int offsetsPosition = 8 + 256 * 4 + count * 20 + count * 4;
+        int offset = index.getInt(offsetsPosition + entry * 4);
+        if ((offset & 0x80000000) == 0) {
+            return offset;
+        }
+        int largePosition = offsetsPosition + count * 4 + (offset & 0x7fffffff) * 8;
+        return index.getLong(largePosition);
+    }
+
+    protected int compareId(byte[] id, int position) {
+        for (int bi = 0; bi < 20; ++bi) {
+            int a = id[bi] & 0xff;
+            int b = index.get(position + bi) & 0xff;
+            if (a != b) {
+                return a < b ? -1 : 1;
+            }
+        }
+        return 0;
+    }
+
+    protected String toHex(int position) {
+        byte[] id = new byte[20];
+        for (int bi = 0; bi < 20; ++bi) {
+            id[bi] = index.get(position + bi);
+        }
+        return GitRepository.toHex(id, 0);
+    }
+
+    /**
+     * Reads the object at the offset, resolving it if it is a delta.
+     */
+    public GitObject read(long offset) throws DiffJException {
+        synchronized (bases) {
+            GitObject cached = bases.get(offset);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        ByteBuffer buf = pack.duplicate();
+        buf.position((int)offset);
+
+        int b = buf.get() & 0xff;
+        int type = (b >> 4) & 7;
+        long size = b & 0x0f;
+        int shift = 4;
+        while ((b & 0x80) != 0) {
+            b = buf.get() & 0xff;
+            size |= (long)(b & 0x7f) << shift;
+            shift += 7;
+        }
+
+        GitObject obj;
+        if (type == OFS_DELTA) {
+            b = buf.get() & 0xff;
+            long baseDistance = b & 0x7f;
+            while ((b & 0x80) != 0) {
+                b = buf.get() & 0xff;
+                baseDistance = ((baseDistance + 1) << 7) | (b & 0x7f);
+            }
+            GitObject base = read(offset - baseDistance);
+            obj = applyDelta(base, inflate(buf, size));
+        }
+        else if (type == REF_DELTA) {
+            byte[] baseId = new byte[20];
+            buf.get(baseId);
+            GitObject base = repository.read(GitRepository.toHex(baseId, 0));
+            obj = applyDelta(base, inflate(buf, size));
+        }
+        else {
+            obj = new GitObject(type, inflate(buf, size));
+        }
+
+        cache(offset, obj);
+        return obj;
+    }
+
+    /**
+     * Caches the object, of any type, as a base of deltas, removing the least
+     * recently used ones while the total size is over the maximum.
+     */
+    protected void cache(long offset, GitObject obj) {
+        int size = obj.getData().length;
+        if (size > MAX_CACHED_BYTES) {
+            return;
+        }
+
+        synchronized (bases) {
+            GitObject previous = bases.put(offset, obj);
+            if (previous != null) {
+                cachedBytes -= previous.getData().length;
+            }
+            cachedBytes += size;
+
+            Iterator<GitObject> it = bases.values().iterator();
+            while (cachedBytes > MAX_CACHED_BYTES && it.hasNext()) {
+                cachedBytes -= it.next().getData().length;
+                it.remove();
+            }
+        }
+    }
+
+    protected byte[] inflate(ByteBuffer buf, long size) throws DiffJException {
+        if (size > Integer.MAX_VALUE) {
+            throw new DiffJException("object too large in " + packFile);
+        }
+
+        byte[] data = new byte[(int)size];
+        byte[] input = new byte[8192];
+        Inflater inflater = new Inflater();
+        try {
+            // the size is known, so the trailing checksum is not needed:
+            int nInflated = 0;
+            while (nInflated < data.length) {
+                if (inflater.needsInput()) {
+                    int len = Math.min(input.length, buf.remaining());
+                    if (len == 0) {
+                        throw new DiffJException("truncated object in " + packFile);
+                    }
+                    buf.get(input, 0, len);
+                    inflater.setInput(input, 0, len);
+                }
+                int n = inflater.inflate(data, nInflated, data.length - nInflated);
+                nInflated += n;
+                if (n == 0 && (inflater.finished() || inflater.needsDictionary())) {
+                    throw new DiffJException("invalid compressed object in " + packFile);
+                }
+            }
+            return data;
+        }
+        catch (DataFormatException dfe) {
+            throw new DiffJException("invalid compressed object in " + packFile, dfe);
+        }
+        finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Applies the delta to the base object, returning an object of the base's
+     * type.
+     */
+    protected GitObject applyDelta(GitObject base, byte[] delta) throws DiffJException {
+        byte[] src = base.getData();
+        int[] pos = new int[] { 0 };
+        long srcSize = readSize(delta, pos);
+        long dstSize = readSize(delta, pos);
+        if (srcSize != src.length) {
+            throw new DiffJException("delta base size mismatch in " + packFile);
+        }
+
+        ByteArrayOutputStream dst = new ByteArrayOutputStream((int)dstSize);
+        int di = pos[0];
+        while (di < delta.length) {
+            int cmd = delta[di++] & 0xff;
+            if ((cmd & 0x80) != 0) {
+                int copyOffset = 0;
+                int copySize = 0;
+                for (int bi = 0; bi < 4; ++bi) {
+                    if ((cmd & (1 << bi)) != 0) {
+                        copyOffset |= (delta[di++] & 0xff) << (8 * bi);
+                    }
+                }
+                for (int bi = 0; bi < 3; ++bi) {
+                    if ((cmd & (0x10 << bi)) != 0) {
+                        copySize |= (delta[di++] & 0xff) << (8 * bi);
+                    }
+                }
+                if (copySize == 0) {
+                    copySize = 0x10000;
+                }
+                dst.write(src, copyOffset, copySize);
+            }
+            else if (cmd != 0) {
+                dst.write(delta, di, cmd);
+                di += cmd;
+            }
+            else {
+                throw new DiffJException("invalid delta in " + packFile);
+            }
+        }
+
+        if (dst.size() != dstSize) {
+            throw new DiffJException("delta result size mismatch in " + packFile);
+        }
+        return new GitObject(base.getType(), dst.toByteArray());
+    }
+
+    protected static long readSize(byte[] delta, int[] pos) {
+        long size = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = delta[pos[0]++] & 0xff;
+            size |= (long)(b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return size;
+    }
+}
@@ -0,0 +1,91 @@
+package org.incava.diffj.git;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import org.incava.analysis.Report;
+import org.incava.diffj.io.FileComparisons;
+import org.incava.diffj.io.FileContents;
+import org.incava.diffj.io.FilePair;
+import org.incava.diffj.io.JavaFile;
+import org.incava.diffj.lang.DiffJException;
+
+/**
+ * Compares the Java files of two revisions of a repository, without checking
+ * them out. The trees are walked in parallel, skipping subtrees whose ids are
+ * the same, and only files in both revisions with different blob ids are
+ * read and compared.
+ */
+public class RevisionComparison {
+    private final GitRepository repository;
+    private final String fromRev;
+    private final String fromSource;
+    private final String toRev;
+    private final String toSource;
+    private final int jobs;
+
+    public RevisionComparison(GitRepository repository, String fromRev, String fromSource, String toRev, String toSource, int jobs) {
+        this.repository = repository;
+        this.fromRev = fromRev;
+        this.fromSource = fromSource;
+        this.toRev = toRev;
+        this.toSource = toSource;
+        this.jobs = jobs;
+    }
+
+    public void compare(Report report) throws DiffJException {
+        String fromTree = repository.resolveTree(fromRev);
+        String toTree = repository.resolveTree(toRev);
+
+        FileComparisons comparisons = new FileComparisons(jobs);
+        addComparisons(comparisons, "", fromTree, toTree);
+        comparisons.run(report);
+    }
+
+    protected void addComparisons(FileComparisons comparisons, String path, String fromTree, String toTree) throws DiffJException {
+        if (fromTree.equals(toTree)) {
+            // nothing under it has changed
+            return;
+        }
+
+        Map<String, TreeEntry> toEntries = new HashMap<String, TreeEntry>();
+        for (TreeEntry toEntry : repository.readTree(toTree)) {
+            toEntries.put(toEntry.getName(), toEntry);
+        }
+
+        for (TreeEntry fromEntry : repository.readTree(fromTree)) {
+            TreeEntry toEntry = toEntries.get(fromEntry.getName());
+            if (toEntry == null || toEntry.getId().equals(fromEntry.getId())) {
+                continue;
+            }
+
+            String entryPath = path + fromEntry.getName();
+            if (fromEntry.isTree() && toEntry.isTree()) {
+                addComparisons(comparisons, entryPath + "/", fromEntry.getId(), toEntry.getId());
+            }
+            else if (fromEntry.isFile() && toEntry.isFile() && entryPath.endsWith(".java")) {
+                comparisons.add(createPair(entryPath, fromEntry.getId(), toEntry.getId()));
+            }
+        }
+    }
+
+    protected FilePair createPair(final String path, final String fromId, final String toId) {
+        return new FilePair() {
+                public void compare(Report report) throws DiffJException {
+                    JavaFile fromFile = createFile(fromRev + ":" + path, fromId, fromSource);
+                    JavaFile toFile = createFile(toRev + ":" + path, toId, toSource);
+                    JavaFile.compare(report, fromFile, toFile);
+                }
+            };
+    }
+
+    protected JavaFile createFile(String label, String blobId, String source) throws DiffJException {
+        byte[] data = repository.read(blobId, GitObject.BLOB).getData();
+        try {
+            return new JavaFile(label, FileContents.decode(data), source);
+        }
+        catch (IOException ioe) {
+            throw new DiffJException("Error decoding " + label + ": " + ioe.getMessage(), ioe);
+        }
+    }
+}
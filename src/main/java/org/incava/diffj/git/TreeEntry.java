@@ -0,0 +1,47 @@
+package org.incava.diffj.git;
+
+/**
+ * An entry in a git tree: a subtree, a file (blob), a symbolic link, or a
+ * submodule.
+ */
+public class TreeEntry {
+    private final String mode;
+    private final String name;
+    private final String id;
+
+    public TreeEntry(String mode, String name, String id) {
+        this.mode = mode;
+        this.name = name;
+        this.id = id;
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the object id, as a hexadecimal string.
+     */
+    public String getId() {
+        return id;
+    }
+
+    public boolean isTree() {
+        return mode.equals("40000");
+    }
+
+    /**
+     * Returns whether this is a regular (possibly executable) file.
+     */
+    public boolean isFile() {
+        return mode.startsWith("100");
+    }
+
+    public String toString() {
+        return mode + " " + id + " " + name;
+    }
+}
@@ -0,0 +1,60 @@
+package org.incava.diffj.io;
+
+import java.io.Reader;
+import java.nio.CharBuffer;
+
+/**
+ * Reads from a character sequence, such as a decoded file buffer, without
+ * copying it to a string first.
+ */
+public class CharSequenceReader extends Reader {
+    private final CharSequence chars;
+    private final int length;
+    private int position;
+
+    public CharSequenceReader(CharSequence chars) {
+        this.chars = chars;
+        this.length = chars.length();
+        this.position = 0;
+    }
+
+    public int read() {
+        return position < length ? chars.charAt(position++) : -1;
+    }
+
+    public int read(char[] cbuf, int off, int len) {
+        if (position >= length) {
+            return -1;
+        }
+
+        int count = Math.min(len, length - position);
+        if (chars instanceof String) {
+            ((String)chars).getChars(position, position + count, cbuf, off);
+        }
+        else if (chars instanceof CharBuffer) {
+            CharBuffer buf = ((CharBuffer)chars).duplicate();
+            buf.position(buf.position() + position);
+            buf.get(cbuf, off, count);
+        }
+        else {
+            for (int ci = 0; ci < count; ++ci) {
+                cbuf[off + ci] = chars.charAt(position + ci);
+            }
+        }
+        position += count;
+        return count;
+    }
+
+    public long skip(long n) {
+        int count = (int)Math.min(Math.max(n, 0), length - position);
+        position += count;
+        return count;
+    }
+
+    public boolean ready() {
+        return true;
+    }
+
+    public void close() {
+    }
+}
@@ -0,0 +1,150 @@
+package org.incava.diffj.io;
+
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import org.incava.analysis.Report;
+import org.incava.diffj.lang.DiffJException;
+
+/**
+ * Compares pairs of files, either one after another, or with a pool of
+ * threads. In the latter case each pair is compared with its own report, and
+ * the output of each is written in the order in which the pairs were added.
+ *
+ * Each pair is released once it is compared, and only a few more pairs than
+ * there are threads are compared ahead of the one being written, so memory
+ * does not grow with the number of pairs.
+ *
+ * If the report has a limit of differences, each report in the pool shares it,
+ * and once it is reached, no more pairs are compared, and those being compared
+ * are cancelled.
+ */
+public class FileComparisons {
+    /**
+     * The output of one comparison run in the pool.
+     */
+    private static class Output {
+        private final Report report;
+        private final String str;
+
+        public Output(Report report, String str) {
+            this.report = report;
+            this.str = str;
+        }
+    }
+
+    /**
+     * The number of comparisons, per thread, that are run or held ahead of the
+     * one whose output is being written.
+     */
+    public static final int PAIRS_PER_JOB = 2;
+
+    private final int jobs;
+    private final List<FilePair> pairs;
+
+    public FileComparisons(int jobs) {
+        this.jobs = jobs;
+        this.pairs = new ArrayList<FilePair>();
+    }
+
+    public void add(FilePair pair) {
+        pairs.add(pair);
+    }
+
+    public int size() {
+        return pairs.size();
+    }
+
+    /**
+     * Runs the comparisons, writing to the given report.
+     */
+    public void run(Report report) throws DiffJException {
+        if (jobs <= 1 || pairs.size() <= 1) {
+            runSerial(report);
+        }
+        else {
+            runParallel(report);
+        }
+    }
+
+    protected void runSerial(Report report) throws DiffJException {
+        int nPairs = pairs.size();
+        for (int pi = 0; pi < nPairs; ++pi) {
+            FilePair pair = pairs.set(pi, null);
+            pair.compare(report);
+        }
+    }
+
+    protected void runParallel(Report report) throws DiffJException {
+        ForkJoinPool pool = new ForkJoinPool(jobs);
+        try {
+            // written in the order added, regardless of the order finished:
+            int window = jobs * PAIRS_PER_JOB;
+            Deque<Future<Output>> outputs = new ArrayDeque<Future<Output>>();
+            int nPairs = pairs.size();
+            for (int pi = 0; pi < nPairs && !report.isLimitReached(); ++pi) {
+                if (outputs.size() >= window) {
+                    writeOutput(report, outputs.poll());
+                }
+                FilePair pair = pairs.set(pi, null);
+                outputs.add(pool.submit(createTask(pair, report)));
+            }
+
+            while (!outputs.isEmpty()) {
+                writeOutput(report, outputs.poll());
+            }
+        }
+        finally {
+            // cancels those in flight, such as after the limit was reached:
+            pool.shutdownNow();
+        }
+    }
+
+    protected void writeOutput(Report report, Future<Output> output) throws DiffJException {
+        Output out = getOutput(output);
+        report.writeOutput(out.report, out.str);
+    }
+
+    protected Callable<Output> createTask(final FilePair pair, final Report report) {
+        return new Callable<Output>() {
+            public Output call() throws DiffJException {
+                StringWriter sw = new StringWriter();
+                Report pairReport = report.createReport(sw);
+                pairReport.setLimit(report.getLimit());
+                pair.compare(pairReport);
+                return new Output(pairReport, sw.toString());
+            }
+        };
+    }
+
+    protected Output getOutput(Future<Output> output) throws DiffJException {
+        try {
+            return output.get();
+        }
+        catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new DiffJException("interrupted while comparing files", ie);
+        }
+        catch (ExecutionException ee) {
+            Throwable cause = ee.getCause();
+            if (cause instanceof DiffJException) {
+                throw (DiffJException)cause;
+            }
+            else if (cause instanceof RuntimeException) {
+                throw (RuntimeException)cause;
+            }
+            else if (cause instanceof Error) {
+                throw (Error)cause;
+            }
+            else {
+                throw new DiffJException(ee);
+            }
+        }
+    }
+}
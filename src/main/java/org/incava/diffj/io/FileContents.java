@@ -0,0 +1,135 @@
+package org.incava.diffj.io;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the contents of a source file, decoding it exactly once. Large files
+ * are memory-mapped; smaller ones are read into a buffer that is reused by the
+ * current thread. The result is shared, as a character sequence, by the parser
+ * and the report.
+ */
+public class FileContents {
+    /**
+     * Files of this size or larger are memory-mapped instead of read.
+     */
+    public static final int MAP_THRESHOLD = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> readBuffer = new ThreadLocal<ByteBuffer>() {
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(MAP_THRESHOLD);
+        }
+    };
+
+    /**
+     * Reads and decodes the file, with the default character set, as
+     * <code>FileReader</code> does.
+     */
+    public static CharSequence read(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            long size = channel.size();
+            ByteBuffer bytes;
+            if (size >= MAP_THRESHOLD) {
+                bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            }
+            else {
+                bytes = readBuffer.get();
+                bytes.clear();
+                while (bytes.hasRemaining() && channel.read(bytes) >= 0) {
+                }
+                bytes.flip();
+            }
+            return withEndOfLine(createDecoder().decode(bytes));
+        }
+        finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Decodes the bytes, such as a blob read from a repository, with the
+     * default character set.
+     */
+    public static CharSequence decode(byte[] bytes) throws IOException {
+        return withEndOfLine(createDecoder().decode(ByteBuffer.wrap(bytes)));
+    }
+
+    /**
+     * Reads the contents from the reader, such as for standard input.
+     */
+    public static CharSequence read(Reader reader) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] buf = new char[8192];
+        int nRead;
+        while ((nRead = reader.read(buf)) >= 0) {
+            sb.append(buf, 0, nRead);
+        }
+        return withEndOfLine(sb);
+    }
+
+    /**
+     * Returns whether the contents are the same, character by character.
+     */
+    public static boolean isEqual(CharSequence from, CharSequence to) {
+        int len = from.length();
+        if (len != to.length()) {
+            return false;
+        }
+        for (int ci = 0; ci < len; ++ci) {
+            if (from.charAt(ci) != to.charAt(ci)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns a 64-bit hash of the contents, for quickly determining that two
+     * files differ, and for naming their entries in the parse cache.
+     */
+    public static long hash(CharSequence contents) {
+        // FNV-1a, over characters instead of bytes.
+        long hash = 0xcbf29ce484222325L;
+        int len = contents.length();
+        for (int ci = 0; ci < len; ++ci) {
+            hash ^= contents.charAt(ci);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    protected static CharsetDecoder createDecoder() {
+        return Charset.defaultCharset().newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    /**
+     * Returns the contents, ending with an end-of-line. This was previously
+     * done for each line as the file was read, so a trailing comment without
+     * an end-of-line will still be tokenized.
+     */
+    protected static CharSequence withEndOfLine(CharSequence contents) {
+        int len = contents.length();
+        if (len == 0 || contents.charAt(len - 1) == '\n' || contents.charAt(len - 1) == '\r') {
+            return contents;
+        }
+        else if (contents instanceof StringBuilder) {
+            return ((StringBuilder)contents).append('\n');
+        }
+
+        CharBuffer withEoln = CharBuffer.allocate(len + 1);
+        withEoln.append(contents).append('\n');
+        withEoln.flip();
+        return withEoln;
+    }
+}
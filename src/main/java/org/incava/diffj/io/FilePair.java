@@ -0,0 +1,13 @@
+package org.incava.diffj.io;
+
+import org.incava.analysis.Report;
+import org.incava.diffj.lang.DiffJException;
+
+/**
+ * A from-element and to-element to be compared. The elements are not created
+ * (and thus files are not read) until the comparison is run, which might be in
+ * a separate thread.
+ */
+public abstract class FilePair {
+    public abstract void compare(Report report) throws DiffJException;
+}
@@ -0,0 +1,194 @@
+package org.incava.diffj.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.incava.analysis.Moves;
+import org.incava.analysis.Report;
+import org.incava.diffj.lang.DiffJException;
+
+/**
+ * An archive (jar or zip) of Java files, such as a source jar. Its entries
+ * are read from the central directory, and are compared by name with those of
+ * another archive. Entries with the same checksum and size are skipped without
+ * being decompressed.
+ */
+public class JavaArchive extends JavaFSElement {
+    public static final long serialVersionUID = 1L;
+
+    private final int jobs;
+
+    private transient ZipFile zipFile;
+
+    private transient Map<String, ZipEntry> entries;
+
+    public static boolean isArchive(File file) {
+        String name = file.getName().toLowerCase();
+        return name.endsWith(".jar") || name.endsWith(".zip");
+    }
+
+    public JavaArchive(File file, String sourceVersion, int jobs) {
+        super(file.getPath(), sourceVersion);
+        this.jobs = jobs;
+    }
+
+    protected synchronized ZipFile getZipFile() throws DiffJException {
+        if (zipFile == null) {
+            try {
+                zipFile = new ZipFile(this);
+            }
+            catch (IOException ioe) {
+                throw new DiffJException("Error opening archive '" + getAbsolutePath() + "': " + ioe.getMessage(), ioe);
+            }
+        }
+        return zipFile;
+    }
+
+    protected synchronized void close() {
+        if (zipFile != null) {
+            try {
+                zipFile.close();
+            }
+            catch (IOException ioe) {
+                // nothing more to read from it.
+            }
+            zipFile = null;
+            entries = null;
+        }
+    }
+
+    /**
+     * Returns the Java files in this archive, by name.
+     */
+    public synchronized Map<String, ZipEntry> getEntries() throws DiffJException {
+        if (entries == null) {
+            entries = new TreeMap<String, ZipEntry>();
+            Enumeration<? extends ZipEntry> en = getZipFile().entries();
+            while (en.hasMoreElements()) {
+                ZipEntry entry = en.nextElement();
+                if (!entry.isDirectory() && entry.getName().endsWith(".java")) {
+                    entries.put(entry.getName(), entry);
+                }
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Returns whether the entries have the same checksum and size, and so
+     * (almost certainly) the same contents.
+     */
+    protected boolean isSameEntry(ZipEntry fromEntry, ZipEntry toEntry) {
+        return (fromEntry.getCrc() != -1 && fromEntry.getCrc() == toEntry.getCrc() &&
+                fromEntry.getSize() != -1 && fromEntry.getSize() == toEntry.getSize());
+    }
+
+    /**
+     * Decompresses the entry, as a Java file of the given label.
+     */
+    public JavaFile createJavaFile(ZipEntry entry) throws DiffJException {
+        String label = getPath() + "!/" + entry.getName();
+        try {
+            InputStream in = getZipFile().getInputStream(entry);
+            try {
+                long size = entry.getSize();
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream(size > 0 && size < Integer.MAX_VALUE ? (int)size : 8192);
+                byte[] buf = new byte[8192];
+                int nRead;
+                while ((nRead = in.read(buf)) >= 0) {
+                    bytes.write(buf, 0, nRead);
+                }
+                return new JavaFile(label, FileContents.decode(bytes.toByteArray()), getSourceVersion());
+            }
+            finally {
+                in.close();
+            }
+        }
+        catch (IOException ioe) {
+            throw new DiffJException("Error reading '" + label + "': " + ioe.getMessage(), ioe);
+        }
+    }
+
+    public int compareTo(Report report, JavaFSElement toElmt) throws DiffJException {
+        return toElmt.compareFrom(report, this);
+    }
+
+    public int compareFrom(Report report, JavaFile fromFile) throws DiffJException {
+        throw new DiffJException("Cannot compare file " + fromFile.getPath() + " with archive " + getPath());
+    }
+
+    public int compareFrom(Report report, JavaDirectory fromDir) throws DiffJException {
+        throw new DiffJException("Cannot compare directory " + fromDir.getPath() + " with archive " + getPath());
+    }
+
+    /**
+     * Compares the Java files in both archives with the same names, all of
+     * which are compared, regardless of their directories. When detecting
+     * moves, the files in only one of the archives are read for the methods
+     * and fields that they remove or add.
+     */
+    public int compareFrom(Report report, final JavaArchive fromArchive) throws DiffJException {
+        try {
+            Map<String, ZipEntry> fromEntries = fromArchive.getEntries();
+            Map<String, ZipEntry> toEntries = getEntries();
+
+            FileComparisons comparisons = new FileComparisons(jobs);
+            for (String name : fromEntries.keySet()) {
+                final ZipEntry fromEntry = fromEntries.get(name);
+                final ZipEntry toEntry = toEntries.get(name);
+
+                if (toEntry == null) {
+                    if (Moves.detectMoves) {
+                        comparisons.add(createOneSided(fromArchive, fromEntry, true));
+                    }
+                    continue;
+                }
+
+                comparisons.add(new FilePair() {
+                        public void compare(Report report) throws DiffJException {
+                            if (isSameEntry(fromEntry, toEntry)) {
+                                report.getStats().fileIdentical();
+                                return;
+                            }
+                            JavaFile fromFile = fromArchive.createJavaFile(fromEntry);
+                            JavaFile toFile = createJavaFile(toEntry);
+                            JavaFile.compare(report, fromFile, toFile);
+                        }
+                    });
+            }
+
+            if (Moves.detectMoves) {
+                for (String name : toEntries.keySet()) {
+                    if (!fromEntries.containsKey(name)) {
+                        comparisons.add(createOneSided(this, toEntries.get(name), false));
+                    }
+                }
+            }
+
+            comparisons.run(report);
+            return 0;
+        }
+        finally {
+            fromArchive.close();
+            close();
+        }
+    }
+
+    /**
+     * Returns the entry in only one of the archives, for its methods and
+     * fields to be added to those removed, or to those added.
+     */
+    protected FilePair createOneSided(final JavaArchive archive, final ZipEntry entry, final boolean removed) {
+        return new FilePair() {
+            public void compare(Report report) throws DiffJException {
+                archive.createJavaFile(entry).addMoveItems(report, removed);
+            }
+        };
+    }
+}
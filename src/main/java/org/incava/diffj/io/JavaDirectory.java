@@ -1,10 +1,19 @@
 package org.incava.diffj.io;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
+import java.util.Map;
+import java.util.TreeMap;
+import org.incava.analysis.Moves;
 import org.incava.analysis.Report;
 import org.incava.diffj.lang.DiffJException;
 
@@ -16,9 +25,26 @@ public class JavaDirectory extends JavaFSElement {
 
     private final boolean canRecurse;
 
+    /**
+     * The number of threads with which to compare files. Files are compared
+     * serially when this is one.
+     */
+    private final int jobs;
+
+    /**
+     * The subdirectories and Java files in this directory, by name. This is
+     * read once, when first used.
+     */
+    private transient Map<String, BasicFileAttributes> entries;
+
     public JavaDirectory(File file, String sourceVersion, boolean canRecurse) {
+        this(file, sourceVersion, canRecurse, 1);
+    }
+
+    public JavaDirectory(File file, String sourceVersion, boolean canRecurse, int jobs) {
         super(file.getPath(), sourceVersion);
         this.canRecurse = canRecurse;
+        this.jobs = jobs;
     }
 
     public JavaFile createJavaFile(File file, String label) throws DiffJException {
@@ -26,34 +52,68 @@ public class JavaDirectory extends JavaFSElement {
     }
 
     public JavaDirectory createJavaDirectory(File file) {
-        return new JavaDirectory(file, getSourceVersion(), canRecurse);
+        return new JavaDirectory(file, getSourceVersion(), canRecurse, jobs);
     }
 
-    public JavaFSElement getElement(String name) throws DiffJException {
-        File[] files = listFiles();
-        for (File file : files) {
-            if (file.getName().equals(name)) {
-                return file.isDirectory() ? createJavaDirectory(file) : createJavaFile(file, null);
-            }
-        }
+    public JavaFSElement createElement(File file, BasicFileAttributes attrs) throws DiffJException {
+        return attrs.isDirectory() ? createJavaDirectory(file) : createJavaFile(file, null);
+    }
 
-        return null;
+    /**
+     * Returns the subdirectories and Java files in this directory, by name,
+     * with the attributes read when the directory was listed. The directory is
+     * listed only once, and without a separate call per file to get its type.
+     */
+    public synchronized Map<String, BasicFileAttributes> getEntries() throws DiffJException {
+        if (entries == null) {
+            entries = readEntries();
+        }
+        return entries;
     }
 
-    public List<String> getElementNames() {
-        File[] files = listFiles();
-        List<String> names = new ArrayList<String>();
-        if (files == null) {
-            return names;
+    protected Map<String, BasicFileAttributes> readEntries() throws DiffJException {
+        final Map<String, BasicFileAttributes> found = new TreeMap<String, BasicFileAttributes>();
+        final Path dir = toPath();
+
+        try {
+            Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), 1, new SimpleFileVisitor<Path>() {
+                    public FileVisitResult visitFile(Path path, BasicFileAttributes attrs) {
+                        String name = path.getFileName().toString();
+                        if (attrs.isDirectory() || (attrs.isRegularFile() && name.endsWith(".java"))) {
+                            found.put(name, attrs);
+                        }
+                        return FileVisitResult.CONTINUE;
+                    }
+
+                    public FileVisitResult visitFileFailed(Path path, IOException ioe) {
+                        // unreadable files and broken links are skipped, as
+                        // they were with File#isFile and File#isDirectory.
+                        return FileVisitResult.CONTINUE;
+                    }
+                });
         }
-        
-        for (File file : files) {
-            if (file.isDirectory() || (file.isFile() && file.getName().endsWith(".java"))) {
-                names.add(file.getName());
-            }
+        catch (IOException ioe) {
+            throw new DiffJException("Error reading directory '" + getAbsolutePath() + "': " + ioe.getMessage(), ioe);
         }
 
-        return names;
+        return found;
+    }
+
+    /**
+     * Returns the file in this directory with the given name, or null if there
+     * is no such subdirectory or Java file.
+     */
+    public File getFile(String name) throws DiffJException {
+        return getEntries().containsKey(name) ? new File(this, name) : null;
+    }
+
+    public JavaFSElement getElement(String name) throws DiffJException {
+        BasicFileAttributes attrs = getEntries().get(name);
+        return attrs == null ? null : createElement(new File(this, name), attrs);
+    }
+
+    public List<String> getElementNames() throws DiffJException {
+        return new ArrayList<String>(getEntries().keySet());
     }
 
     public int compareTo(Report report, JavaFSElement toElmt) throws DiffJException {
@@ -65,20 +125,100 @@ public class JavaDirectory extends JavaFSElement {
     }
 
     public int compareFromDirectory(Report report, JavaDirectory fromDir) throws DiffJException {
-        Set<String> names = new TreeSet<String>();
-        names.addAll(fromDir.getElementNames());
-        names.addAll(getElementNames());
-        
-        for (String name : names) {
-            JavaFSElement fromElmt = fromDir.getElement(name);
-            JavaFSElement toElmt = getElement(name);
-
-            if (fromElmt != null && toElmt != null && (fromElmt.isFile() || (fromElmt.isDirectory() && canRecurse))) {
-                fromElmt.compareTo(report, toElmt);
+        FileComparisons comparisons = new FileComparisons(jobs);
+        addComparisons(comparisons, fromDir);
+        comparisons.run(report);
+        return 0;
+    }
+
+    /**
+     * Adds the comparisons of the elements in the from-directory to those in
+     * this one, in sorted order by name, descending into subdirectories if
+     * recursing. Only names in both directories are compared, so the walk
+     * is driven by the from-directory's entries, looked up in this one's. When
+     * detecting moves, the files in only one of the directories are read for
+     * the methods and fields that they remove or add.
+     */
+    protected void addComparisons(FileComparisons comparisons, final JavaDirectory fromDir) throws DiffJException {
+        Map<String, BasicFileAttributes> fromEntries = fromDir.getEntries();
+        Map<String, BasicFileAttributes> toEntries = getEntries();
+
+        for (String name : fromEntries.keySet()) {
+            final BasicFileAttributes fromAttrs = fromEntries.get(name);
+            final BasicFileAttributes toAttrs = toEntries.get(name);
+
+            if (toAttrs == null) {
+                if (Moves.detectMoves) {
+                    addOneSided(comparisons, fromDir, name, fromAttrs, true);
+                }
+                continue;
+            }
+
+            final File fromFile = new File(fromDir, name);
+            final File toFile = new File(this, name);
+
+            if (fromAttrs.isDirectory() && toAttrs.isDirectory()) {
+                if (canRecurse) {
+                    createJavaDirectory(toFile).addComparisons(comparisons, fromDir.createJavaDirectory(fromFile));
+                }
+            }
+            else if (!fromAttrs.isDirectory() || canRecurse) {
+                comparisons.add(new FilePair() {
+                        public void compare(Report report) throws DiffJException {
+                            if (isSameFile(fromAttrs, toAttrs)) {
+                                report.getStats().fileIdentical();
+                                return;
+                            }
+                            JavaFSElement fromElmt = fromDir.createElement(fromFile, fromAttrs);
+                            JavaFSElement toElmt = createElement(toFile, toAttrs);
+                            fromElmt.compareTo(report, toElmt);
+                        }
+                    });
             }
         }
 
-        return 0;
+        if (Moves.detectMoves) {
+            for (String name : toEntries.keySet()) {
+                if (!fromEntries.containsKey(name)) {
+                    addOneSided(comparisons, this, name, toEntries.get(name), false);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the element in only one of the directories, being the from-directory
+     * if <code>removed</code>, for its methods and fields to be added to those
+     * removed or added, descending into it if it is a directory and recursing.
+     */
+    protected void addOneSided(FileComparisons comparisons, final JavaDirectory dir, String name, BasicFileAttributes attrs, final boolean removed) throws DiffJException {
+        final File file = new File(dir, name);
+
+        if (attrs.isDirectory()) {
+            if (canRecurse) {
+                JavaDirectory subdir = dir.createJavaDirectory(file);
+                Map<String, BasicFileAttributes> subEntries = subdir.getEntries();
+                for (String subName : subEntries.keySet()) {
+                    addOneSided(comparisons, subdir, subName, subEntries.get(subName), removed);
+                }
+            }
+        }
+        else {
+            comparisons.add(new FilePair() {
+                    public void compare(Report report) throws DiffJException {
+                        dir.createJavaFile(file, null).addMoveItems(report, removed);
+                    }
+                });
+        }
+    }
+
+    /**
+     * Returns whether the attributes are of the same regular file, such as a
+     * hard link or the same path, which therefore does not need to be read.
+     */
+    protected boolean isSameFile(BasicFileAttributes fromAttrs, BasicFileAttributes toAttrs) {
+        Object fromKey = fromAttrs.fileKey();
+        return fromAttrs.isRegularFile() && fromKey != null && fromKey.equals(toAttrs.fileKey());
     }
 
     public int compareFrom(Report report, JavaFile fromFile) throws DiffJException {
@@ -88,4 +228,8 @@ public class JavaDirectory extends JavaFSElement {
     public int compareFrom(Report report, JavaDirectory fromDir) throws DiffJException {
         return compareFromDirectory(report, fromDir);
     }
+
+    public int compareFrom(Report report, JavaArchive fromArchive) throws DiffJException {
+        throw new DiffJException("Cannot compare archive " + fromArchive.getPath() + " with directory " + getPath());
+    }
 }
@@ -5,16 +5,24 @@ import org.incava.analysis.Report;
 import org.incava.diffj.lang.DiffJException;
 
 /**
- * Creates Java filesystem elements (files and directories).
+ * Creates Java filesystem elements (files, directories, and archives).
  */
 public class JavaElementFactory {
     public JavaFSElement createElement(File file, String label, String source, boolean recurseDirectories) throws DiffJException {
+        return createElement(file, label, source, recurseDirectories, 1);
+    }
+
+    public JavaFSElement createElement(File file, String label, String source, boolean recurseDirectories, int jobs) throws DiffJException {
+        if (file != null && file.isFile() && JavaArchive.isArchive(file)) {
+            return new JavaArchive(file, source, jobs);
+        }
+
         JavaFile javaFile = createFile(file, label, source);
         if (javaFile != null) {
             return javaFile;
         }
         else if (file.isDirectory()) {
-            return new JavaDirectory(file, source, recurseDirectories);
+            return new JavaDirectory(file, source, recurseDirectories, jobs);
         }
         else {
             noSuchFile(file, label);
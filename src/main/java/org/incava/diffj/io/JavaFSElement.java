@@ -5,7 +5,7 @@ import org.incava.analysis.Report;
 import org.incava.diffj.lang.DiffJException;
 
 /**
- * A filesystem element, such as a directory or a file.
+ * A filesystem element, such as a directory, a file, or an archive.
  */
 public abstract class JavaFSElement extends File {
     public static final long serialVersionUID = 1L;
@@ -26,4 +26,6 @@ public abstract class JavaFSElement extends File {
     public abstract int compareFrom(Report report, JavaFile file) throws DiffJException;
 
     public abstract int compareFrom(Report report, JavaDirectory dir) throws DiffJException;
+
+    public abstract int compareFrom(Report report, JavaArchive archive) throws DiffJException;
 }
@@ -6,19 +6,25 @@ import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
-import java.util.EnumSet;
+import java.nio.file.FileSystemException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
 import net.sourceforge.pmd.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.ast.JavaCharStream;
 import net.sourceforge.pmd.ast.JavaParser;
+import net.sourceforge.pmd.ast.JavaParserConstants;
+import net.sourceforge.pmd.ast.JavaParserTokenManager;
 import net.sourceforge.pmd.ast.ParseException;
+import net.sourceforge.pmd.ast.Token;
 import net.sourceforge.pmd.ast.TokenMgrError;
+import org.incava.analysis.LimitReachedException;
 import org.incava.analysis.Report;
 import org.incava.diffj.compunit.CompilationUnit;
 import org.incava.diffj.lang.DiffJException;
-import org.incava.ijdk.io.ReadOptionType;
-import org.incava.ijdk.io.ReaderExt;
+import org.incava.diffj.lang.Parallel;
 import org.incava.java.Java;
+import org.incava.log.Log;
 
 /**
  * Represents a Java file in this crazy DiffJ world of ours.
@@ -26,8 +32,13 @@ import org.incava.java.Java;
 public class JavaFile extends JavaFSElement {
     public static final long serialVersionUID = 1L;
 
+    /**
+     * The cache of parsed tokens, if any.
+     */
+    public static ParseCache parseCache = null;
+
     public static JavaFile createFile(File dir, JavaFSElement otherElmt) throws DiffJException {
-        tr.Ace.onRed("dir: " + dir + "; otherElmt: " + otherElmt);
+        Log.log("dir", dir, "otherElmt", otherElmt);
         try {
             JavaElementFactory jef = new JavaElementFactory();
             return jef.createFile(new File(dir, otherElmt.getName()), null, otherElmt.getSourceVersion());
@@ -36,19 +47,22 @@ public class JavaFile extends JavaFSElement {
             throw de;
         }
         catch (Exception e) {
-            tr.Ace.log("e", e);
+            Log.log("e", e);
             e.printStackTrace();
             throw new DiffJException(e);
         }
     }
 
     public static int compare(Report report, JavaFile fromFile, JavaFile toFile) throws DiffJException {
-        tr.Ace.onRed("fromFile: " + fromFile + "; toFile: " + toFile);
+        Log.log("fromFile", fromFile, "toFile", toFile);
         try {
             fromFile.compare(report, toFile);
         }
+        catch (LimitReachedException lre) {
+            throw lre;
+        }
         catch (Exception e) {
-            tr.Ace.log("e", e);
+            Log.log("e", e);
             e.printStackTrace();
             throw new DiffJException(e);
         }
@@ -59,30 +73,39 @@ public class JavaFile extends JavaFSElement {
     }
 
     private final String label; // not necessarily the same as the name.
-    private final String contents;
+    private final CharSequence contents;
+    private long contentHash;
+    private boolean hasContentHash;
+    private List<Token> tokens;
+    private ASTCompilationUnit astCompUnit;
 
-    protected JavaFile(File file, String label, String contents, String sourceVersion) throws DiffJException {
+    protected JavaFile(File file, String label, CharSequence contents, String sourceVersion) throws DiffJException {
         super(label != null ? label : file.getPath(), sourceVersion);
         try {
             boolean isStdin = file == null || file.getName().equals("-");
             if (contents != null) {
                 this.contents = contents;
             }
+            else if (isStdin) {
+                this.contents = FileContents.read(new FileReader(FileDescriptor.in));
+            }
             else {
-                FileReader reader = isStdin ? new FileReader(FileDescriptor.in) : new FileReader(file);
-                this.contents = ReaderExt.readAsString(reader, EnumSet.of(ReadOptionType.ADD_EOLNS));
+                this.contents = FileContents.read(file);
             }
             this.label = label == null ? (isStdin ? "-" : file.getPath()) : label;
         }
         catch (FileNotFoundException e) {
             throw new DiffJException("Error opening file '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
         }
+        catch (FileSystemException e) {
+            throw new DiffJException("Error opening file '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
+        }
         catch (IOException e) {
             throw new DiffJException("I/O error with file '" + file.getAbsolutePath() + "': " + e.getMessage(), e);
         }
     }
 
-    public JavaFile(String label, String contents, String sourceVersion) throws DiffJException {
+    public JavaFile(String label, CharSequence contents, String sourceVersion) throws DiffJException {
         this(null, label, contents, sourceVersion);
     }
 
@@ -101,14 +124,118 @@ public class JavaFile extends JavaFSElement {
         return label;
     }
 
-    public String getContents() {
+    /**
+     * Returns the contents, as read (and decoded) once from the file. This is
+     * shared by the parser and the report.
+     */
+    public CharSequence getContents() {
         return contents;
     }
 
+    /**
+     * Returns the hash of the contents, computed when first requested.
+     */
+    public synchronized long getContentHash() {
+        if (!hasContentHash) {
+            contentHash = FileContents.hash(contents);
+            hasContentHash = true;
+        }
+        return contentHash;
+    }
+
+    /**
+     * Returns whether the hash of the contents has been computed, such as for
+     * the parse cache.
+     */
+    protected synchronized boolean isContentHashed() {
+        return hasContentHash;
+    }
+
+    /**
+     * Returns whether this file has the same contents as the other, in which
+     * case they have no differences and do not need to be parsed. The lengths
+     * are compared first, then the hashes if both were already computed, and
+     * then the contents themselves, so files with a colliding hash are still
+     * compared. Files of different source versions are not considered
+     * identical, since one might not be valid for its version.
+     */
+    public boolean isIdentical(JavaFile toFile) {
+        if (contents.length() != toFile.contents.length() || !getSourceVersion().equals(toFile.getSourceVersion())) {
+            return false;
+        }
+        if (isContentHashed() && toFile.isContentHashed() && getContentHash() != toFile.getContentHash()) {
+            return false;
+        }
+        return FileContents.isEqual(contents, toFile.contents);
+    }
+
+    /**
+     * Returns all tokens of the file, including the end-of-file token, with
+     * the special tokens (comments) preceding each.
+     */
+    public List<Token> readTokens() {
+        Reader reader = new CharSequenceReader(contents);
+        JavaParserTokenManager tokenMgr = new JavaParserTokenManager(new JavaCharStream(reader));
+        List<Token> tokens = new ArrayList<Token>();
+        Token tk;
+        do {
+            tk = tokenMgr.getNextToken();
+            tokens.add(tk);
+        } while (tk.kind != JavaParserConstants.EOF);
+        return tokens;
+    }
+
+    /**
+     * Returns the tokens of the file, read when first requested, from the
+     * parse cache if there is one. These are then used by the parser, so the
+     * file is tokenized only once.
+     */
+    public synchronized List<Token> getTokens() {
+        if (tokens == null) {
+            ParseCache cache = parseCache;
+            tokens = cache == null ? readTokens() : cache.getTokens(this);
+        }
+        return tokens;
+    }
+
+    /**
+     * Returns whether this file has the same tokens as the other, by kind and
+     * image, ignoring whitespace and comments. If so, their code is the same,
+     * and they have no differences. Returns false if either file cannot be
+     * tokenized, leaving the error to be reported by the parser.
+     */
+    public boolean hasSameTokens(JavaFile toFile) {
+        if (!getSourceVersion().equals(toFile.getSourceVersion())) {
+            return false;
+        }
+
+        List<Token> fromTokens;
+        List<Token> toTokens;
+        try {
+            fromTokens = getTokens();
+            toTokens = toFile.getTokens();
+        }
+        catch (TokenMgrError tme) {
+            return false;
+        }
+
+        int size = fromTokens.size();
+        if (size != toTokens.size()) {
+            return false;
+        }
+
+        for (int ti = 0; ti < size; ++ti) {
+            Token fromTk = fromTokens.get(ti);
+            Token toTk = toTokens.get(ti);
+            if (fromTk.kind != toTk.kind || !fromTk.image.equals(toTk.image)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     protected JavaParser getParser() throws DiffJException {
-        Reader reader = new StringReader(contents);
-        JavaCharStream jcs = new JavaCharStream(reader);
-        JavaParser parser = new JavaParser(jcs);
+        JavaParser parser = new JavaParser(new TokenReplayManager(getTokens()));
         String sourceVersion = getSourceVersion();
         
         if (sourceVersion.equals(Java.SOURCE_1_3)) {
@@ -127,7 +254,27 @@ public class JavaFile extends JavaFSElement {
         return parser;
     }
 
-    public ASTCompilationUnit compile() throws DiffJException {
+    /**
+     * Returns the compilation unit, parsed when first requested, and then
+     * shared by all comparisons with this file, such as of several from-files
+     * with the same to-file.
+     */
+    public synchronized ASTCompilationUnit compile() throws DiffJException {
+        if (astCompUnit == null) {
+            astCompUnit = parse();
+        }
+        return astCompUnit;
+    }
+
+    protected Callable<ASTCompilationUnit> getCompileTask() {
+        return new Callable<ASTCompilationUnit>() {
+            public ASTCompilationUnit call() throws DiffJException {
+                return compile();
+            }
+        };
+    }
+
+    protected ASTCompilationUnit parse() throws DiffJException {
         try {
             return getParser().CompilationUnit();
         }
@@ -143,6 +290,23 @@ public class JavaFile extends JavaFSElement {
         }
     }
 
+    /**
+     * Adds the methods and fields of this file to those removed, or added, in
+     * the report, for a file in only one of the trees compared. These are used
+     * only to find the items moved to or from other files; nothing else about
+     * the file is reported.
+     */
+    public void addMoveItems(Report report, boolean removed) throws DiffJException {
+        CompilationUnit compUnit = new CompilationUnit(compile());
+        report.reset(getLabel(), getContents(), getLabel(), getContents());
+        try {
+            compUnit.addMoveItems(removed, report);
+        }
+        finally {
+            report.flush();
+        }
+    }
+
     public int compareTo(Report report, JavaFSElement toElmt) throws DiffJException {
         return toElmt.compareFrom(report, this);
     }
@@ -155,10 +319,37 @@ public class JavaFile extends JavaFSElement {
         return compare(report, createFile(fromDir, this), this);
     }
 
+    public int compareFrom(Report report, JavaArchive fromArchive) throws DiffJException {
+        throw new DiffJException("Cannot compare archive " + fromArchive.getPath() + " with file " + getPath());
+    }
+
+    /**
+     * Compares this file to the other. Files with the same contents, or the
+     * same tokens, are not parsed, so an invalid file compared to one the
+     * same as it is not reported as an error.
+     */
     public int compare(Report report, JavaFile toFile) throws DiffJException {
+        if (isIdentical(toFile)) {
+            report.getStats().fileIdentical();
+            return 0;
+        }
+
+        if (hasSameTokens(toFile)) {
+            report.getStats().fileEquivalent();
+            return 0;
+        }
+
+        report.getStats().fileCompared();
+        
         try {
-            ASTCompilationUnit fromAstCu = compile();
-            ASTCompilationUnit toAstCu   = toFile.compile();
+            // parsed in parallel, if enabled:
+            List<Callable<ASTCompilationUnit>> compileTasks = new ArrayList<Callable<ASTCompilationUnit>>();
+            compileTasks.add(getCompileTask());
+            compileTasks.add(toFile.getCompileTask());
+            List<ASTCompilationUnit> astCus = Parallel.invokeAll(compileTasks);
+
+            ASTCompilationUnit fromAstCu = astCus.get(0);
+            ASTCompilationUnit toAstCu   = astCus.get(1);
             
             report.reset(getLabel(), getContents(), toFile.getLabel(), toFile.getContents());
 
@@ -169,7 +360,7 @@ public class JavaFile extends JavaFSElement {
             }
         }
         catch (DiffJException de) {
-            tr.Ace.red("de", de);
+            Log.log("de", de);
             System.err.println("Error: " + de.getMessage());
             throw de;
         }
@@ -0,0 +1,436 @@
+package org.incava.diffj.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import net.sourceforge.pmd.PMD;
+import net.sourceforge.pmd.ast.Token;
+import org.incava.diffj.lang.DiffJException;
+
+/**
+ * A persistent cache of the token streams of parsed files, keyed by the
+ * SHA-256 digest of their contents, and their source version. The digest is
+ * also in the header of each entry, and checked when it is read. Entries
+ * written by a different version of the parser (or of this format) are
+ * ignored and eventually evicted. The cache is bounded in size, evicting the
+ * least recently used entries first.
+ *
+ * Only the tokens are cached, since the PMD AST cannot be serialized: a file
+ * read from the cache is not lexed, but is still parsed from its tokens.
+ */
+public class ParseCache {
+    public static final int FORMAT_VERSION = 2;
+
+    public static final long DEFAULT_MAX_SIZE = 256L * 1024 * 1024;
+
+    private static final int MAGIC = 0x444a5443;
+
+    private static final String SUFFIX = ".tok";
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private static final String HEX = "0123456789abcdef";
+
+    private final File dir;
+    private final long maxSize;
+    private final AtomicLong size;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+
+    public ParseCache(File dir, long maxSize) throws DiffJException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new DiffJException("Error creating cache directory '" + dir.getAbsolutePath() + "'");
+        }
+        this.dir = dir;
+        this.maxSize = maxSize;
+        this.size = new AtomicLong(getSizeOfEntries());
+        this.hits = new AtomicLong();
+        this.misses = new AtomicLong();
+    }
+
+    public ParseCache(File dir) throws DiffJException {
+        this(dir, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * The version of the parser, for which cached tokens are valid.
+     */
+    public static String getParserVersion() {
+        return PMD.VERSION;
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the size of the entries, in bytes.
+     */
+    public long getSize() {
+        return size.get();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public String toString() {
+        return "parse cache hits: " + hits.get() + "; misses: " + misses.get();
+    }
+
+    /**
+     * Returns the tokens for the file, reading them from the cache if
+     * present, otherwise tokenizing the file and writing them to the cache.
+     */
+    public List<Token> getTokens(JavaFile file) {
+        byte[] digest = getDigest(file);
+        List<Token> tokens = read(file, digest);
+        if (tokens != null) {
+            hits.incrementAndGet();
+            return tokens;
+        }
+
+        misses.incrementAndGet();
+        tokens = file.readTokens();
+        write(file, digest, tokens);
+        return tokens;
+    }
+
+    /**
+     * Returns the SHA-256 digest of the contents of the file, encoded as
+     * UTF-8.
+     */
+    protected static byte[] getDigest(JavaFile file) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(UTF8.encode(CharBuffer.wrap(file.getContents())));
+            return md.digest();
+        }
+        catch (NoSuchAlgorithmException nsae) {
+            // every Java platform has SHA-256
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    protected File getEntryFile(JavaFile file, byte[] digest) {
+        StringBuilder sb = new StringBuilder();
+        for (byte b : digest) {
+            sb.append(HEX.charAt((b >> 4) & 0x0f));
+            sb.append(HEX.charAt(b & 0x0f));
+        }
+        sb.append('-').append(file.getSourceVersion()).append(SUFFIX);
+        return new File(dir, sb.toString());
+    }
+
+    /**
+     * Returns the cached tokens, or null if the file is not in the cache or
+     * its entry is invalid.
+     */
+    protected List<Token> read(JavaFile file, byte[] digest) {
+        File entry = getEntryFile(file, digest);
+        if (!entry.isFile()) {
+            return null;
+        }
+
+        try {
+            FileChannel channel = FileChannel.open(entry.toPath(), StandardOpenOption.READ);
+            try {
+                ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                List<Token> tokens = readTokens(buf, file, digest);
+                if (tokens != null) {
+                    // marks it as recently used:
+                    entry.setLastModified(System.currentTimeMillis());
+                }
+                return tokens;
+            }
+            finally {
+                channel.close();
+            }
+        }
+        catch (IOException ioe) {
+            return null;
+        }
+        catch (RuntimeException re) {
+            // a corrupt or truncated entry
+            return null;
+        }
+    }
+
+    protected void write(JavaFile file, byte[] digest, List<Token> tokens) {
+        File entry = getEntryFile(file, digest);
+        File tmp = new File(dir, entry.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            byte[] bytes = toBytes(file, digest, tokens);
+            OutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(bytes);
+            }
+            finally {
+                out.close();
+            }
+            // an invalid entry, such as from another version, is replaced:
+            long replacedSize = entry.length();
+            // renaming is atomic, for other processes using the same cache:
+            if (tmp.renameTo(entry)) {
+                if (size.addAndGet(bytes.length - replacedSize) > maxSize) {
+                    evict();
+                }
+            }
+            else {
+                tmp.delete();
+            }
+        }
+        catch (IOException ioe) {
+            // the cache is only an optimization.
+            tmp.delete();
+        }
+    }
+
+    protected File[] getEntries() {
+        File[] entries = dir.listFiles();
+        if (entries == null) {
+            return new File[0];
+        }
+
+        List<File> files = new ArrayList<File>();
+        for (File entry : entries) {
+            if (entry.getName().endsWith(SUFFIX)) {
+                files.add(entry);
+            }
+        }
+        return files.toArray(new File[files.size()]);
+    }
+
+    protected long getSizeOfEntries() {
+        long total = 0;
+        for (File entry : getEntries()) {
+            total += entry.length();
+        }
+        return total;
+    }
+
+    /**
+     * Deletes the least recently used entries until the cache is no more than
+     * 90% of its maximum size.
+     */
+    protected synchronized void evict() {
+        if (size.get() <= maxSize) {
+            return;
+        }
+
+        File[] entries = getEntries();
+        final long[] lastUsed = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        long total = 0;
+        for (int ei = 0; ei < entries.length; ++ei) {
+            lastUsed[ei] = entries[ei].lastModified();
+            order[ei] = ei;
+            total += entries[ei].length();
+        }
+
+        Arrays.sort(order, new Comparator<Integer>() {
+                public int compare(Integer x, Integer y) {
+                    return lastUsed[x] < lastUsed[y] ? -1 : (lastUsed[x] > lastUsed[y] ? 1 : 0);
+                }
+            });
+
+        long target = maxSize / 10 * 9;
+        for (int oi = 0; oi < order.length && total > target; ++oi) {
+            File entry = entries[order[oi]];
+            long len = entry.length();
+            if (entry.delete()) {
+                total -= len;
+            }
+        }
+        size.set(total);
+    }
+
+    // -------------------------------------------------------
+    // serialization
+    // -------------------------------------------------------
+
+    /**
+     * Writes the header, the table of token images, and the tokens, each with
+     * its preceding special tokens (comments). Numbers are written as
+     * variable-length integers.
+     */
+    protected byte[] toBytes(JavaFile file, byte[] digest, List<Token> tokens) throws IOException {
+        Map<String, Integer> imageIndices = new HashMap<String, Integer>();
+        List<String> images = new ArrayList<String>();
+
+        ByteArrayOutputStream tokenBytes = new ByteArrayOutputStream();
+        for (Token tk : tokens) {
+            List<Token> specials = getSpecialTokens(tk);
+            writeVarInt(tokenBytes, specials.size());
+            for (Token special : specials) {
+                writeToken(tokenBytes, special, imageIndices, images);
+            }
+            writeToken(tokenBytes, tk, imageIndices, images);
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(getParserVersion());
+        out.writeUTF(file.getSourceVersion());
+        out.write(digest);
+        out.flush();
+
+        writeVarInt(bytes, images.size());
+        for (String image : images) {
+            byte[] utf = image.getBytes(UTF8);
+            writeVarInt(bytes, utf.length);
+            bytes.write(utf);
+        }
+
+        writeVarInt(bytes, tokens.size());
+        tokenBytes.writeTo(bytes);
+        return bytes.toByteArray();
+    }
+
+    protected List<Token> getSpecialTokens(Token tk) {
+        List<Token> specials = new ArrayList<Token>();
+        for (Token st = tk.specialToken; st != null; st = st.specialToken) {
+            specials.add(0, st);
+        }
+        return specials;
+    }
+
+    protected void writeToken(ByteArrayOutputStream out, Token tk, Map<String, Integer> imageIndices, List<String> images) {
+        String image = tk.image == null ? "" : tk.image;
+        Integer idx = imageIndices.get(image);
+        if (idx == null) {
+            idx = images.size();
+            imageIndices.put(image, idx);
+            images.add(image);
+        }
+
+        // the parser sets the real kind of a '>' token that closes generics:
+        int realKind = tk instanceof Token.GTToken ? ((Token.GTToken)tk).realKind : -1;
+
+        writeVarInt(out, tk.kind);
+        writeVarInt(out, realKind + 1);
+        writeVarInt(out, idx);
+        writeVarInt(out, tk.beginLine);
+        writeVarInt(out, tk.beginColumn);
+        writeVarInt(out, tk.endLine);
+        writeVarInt(out, tk.endColumn);
+    }
+
+    protected List<Token> readTokens(ByteBuffer buf, JavaFile file, byte[] digest) {
+        if (buf.getInt() != MAGIC || buf.getInt() != FORMAT_VERSION) {
+            return null;
+        }
+
+        if (!readUTF(buf).equals(getParserVersion()) || !readUTF(buf).equals(file.getSourceVersion())) {
+            return null;
+        }
+
+        byte[] entryDigest = new byte[digest.length];
+        buf.get(entryDigest);
+        if (!Arrays.equals(entryDigest, digest)) {
+            return null;
+        }
+
+        int nImages = readVarInt(buf);
+        String[] images = new String[nImages];
+        for (int ii = 0; ii < nImages; ++ii) {
+            byte[] utf = new byte[readVarInt(buf)];
+            buf.get(utf);
+            images[ii] = new String(utf, UTF8);
+        }
+
+        int nTokens = readVarInt(buf);
+        List<Token> tokens = new ArrayList<Token>(nTokens);
+        for (int ti = 0; ti < nTokens; ++ti) {
+            int nSpecials = readVarInt(buf);
+            Token prev = null;
+            for (int si = 0; si < nSpecials; ++si) {
+                Token special = readToken(buf, images);
+                if (prev != null) {
+                    prev.next = special;
+                    special.specialToken = prev;
+                }
+                prev = special;
+            }
+            Token tk = readToken(buf, images);
+            tk.specialToken = prev;
+            tokens.add(tk);
+        }
+        return tokens;
+    }
+
+    protected Token readToken(ByteBuffer buf, String[] images) {
+        int kind = readVarInt(buf);
+        int realKind = readVarInt(buf) - 1;
+
+        Token tk = Token.newToken(kind);
+        tk.kind = kind;
+        tk.image = images[readVarInt(buf)];
+        tk.beginLine = readVarInt(buf);
+        tk.beginColumn = readVarInt(buf);
+        tk.endLine = readVarInt(buf);
+        tk.endColumn = readVarInt(buf);
+
+        if (realKind >= 0) {
+            if (!(tk instanceof Token.GTToken)) {
+                throw new IllegalStateException("no real kind for token " + tk.image);
+            }
+            ((Token.GTToken)tk).realKind = realKind;
+        }
+        return tk;
+    }
+
+    protected static String readUTF(ByteBuffer buf) {
+        int len = buf.getShort() & 0xffff;
+        byte[] bytes = new byte[len];
+        buf.get(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    protected static void writeVarInt(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+
+    protected static int readVarInt(ByteBuffer buf) {
+        int value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            value |= (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
@@ -0,0 +1,35 @@
+package org.incava.diffj.io;
+
+import java.io.StringReader;
+import java.util.List;
+import net.sourceforge.pmd.ast.JavaCharStream;
+import net.sourceforge.pmd.ast.JavaParserConstants;
+import net.sourceforge.pmd.ast.JavaParserTokenManager;
+import net.sourceforge.pmd.ast.Token;
+
+/**
+ * A token manager that returns tokens that were previously read, such as from
+ * the parse cache, instead of reading them from a character stream.
+ */
+public class TokenReplayManager extends JavaParserTokenManager {
+    private final List<Token> tokens;
+    private int index;
+
+    public TokenReplayManager(List<Token> tokens) {
+        super(new JavaCharStream(new StringReader("")));
+        this.tokens = tokens;
+        this.index = 0;
+    }
+
+    public Token getNextToken() {
+        if (index < tokens.size()) {
+            return tokens.get(index++);
+        }
+
+        // past the end, as the parser can look ahead:
+        Token eof = Token.newToken(JavaParserConstants.EOF);
+        eof.kind = JavaParserConstants.EOF;
+        eof.image = "";
+        return eof;
+    }
+}
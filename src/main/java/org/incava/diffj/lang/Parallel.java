@@ -0,0 +1,178 @@
+package org.incava.diffj.lang;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs the tasks within the comparison of one pair of files, such as parsing
+ * each file, and comparing the members of a type, in parallel. Tasks run in
+ * the pool of the current thread, if it is in one, such as when comparing
+ * several files in parallel, and otherwise in a pool shared by all
+ * comparisons. If there is only one thread, tasks are run one after another
+ * in the current thread.
+ */
+public class Parallel {
+    /**
+     * The number of threads in the shared pool, set once, from the options,
+     * before any tasks are run.
+     */
+    private static int threads = 1;
+
+    private static ForkJoinPool pool = null;
+
+    /**
+     * A task that keeps the value or the exception of its callable, to be
+     * returned or thrown in the thread that joins it.
+     */
+    private static class Task<T> extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Callable<T> callable;
+        private T value;
+        private Exception exception;
+
+        public Task(Callable<T> callable) {
+            this.callable = callable;
+            this.value = null;
+            this.exception = null;
+        }
+
+        protected void compute() {
+            try {
+                value = callable.call();
+            }
+            catch (Exception e) {
+                exception = e;
+            }
+        }
+    }
+
+    /**
+     * Sets the number of threads of the shared pool. If the pool was already
+     * created with another number, it is shut down, and a new one is created
+     * when next used.
+     */
+    public static synchronized void setThreads(int nThreads) {
+        nThreads = Math.max(1, nThreads);
+        if (pool != null && pool.getParallelism() != nThreads) {
+            pool.shutdown();
+            pool = null;
+        }
+        threads = nThreads;
+    }
+
+    /**
+     * Returns the number of threads that run tasks from the current thread:
+     * those of its pool, if it is in one, such as when comparing several files
+     * in parallel, and otherwise those of the shared pool.
+     */
+    public static int getThreads() {
+        ForkJoinPool current = ForkJoinTask.getPool();
+        return current != null ? current.getParallelism() : getSharedThreads();
+    }
+
+    protected static synchronized int getSharedThreads() {
+        return threads;
+    }
+
+    public static boolean isEnabled() {
+        return getThreads() > 1;
+    }
+
+    protected static synchronized ForkJoinPool getPool() {
+        if (pool == null) {
+            pool = new ForkJoinPool(threads);
+        }
+        return pool;
+    }
+
+    /**
+     * Runs the callables, returning their values in the same order. If any
+     * throws an exception, the first one, in the order of the callables, is
+     * thrown once all have finished.
+     */
+    public static <T> List<T> invokeAll(List<? extends Callable<T>> callables) throws DiffJException {
+        List<T> values = new ArrayList<T>();
+        if (!isEnabled() || callables.size() <= 1) {
+            for (Callable<T> callable : callables) {
+                values.add(call(callable));
+            }
+            return values;
+        }
+
+        final List<Task<T>> tasks = new ArrayList<Task<T>>();
+        for (Callable<T> callable : callables) {
+            tasks.add(new Task<T>(callable));
+        }
+
+        if (ForkJoinTask.inForkJoinPool()) {
+            ForkJoinTask.invokeAll(tasks);
+        }
+        else {
+            getPool().invoke(new RecursiveAction() {
+                    private static final long serialVersionUID = 1L;
+
+                    protected void compute() {
+                        ForkJoinTask.invokeAll(tasks);
+                    }
+                });
+        }
+
+        for (Task<T> task : tasks) {
+            if (task.exception != null) {
+                throw toDiffJException(task.exception);
+            }
+            values.add(task.value);
+        }
+        return values;
+    }
+
+    /**
+     * Runs the runnables, returning once all have finished. Unchecked
+     * exceptions are rethrown as for <code>invokeAll</code>.
+     */
+    public static void runAll(List<? extends Runnable> runnables) {
+        List<Callable<Object>> callables = new ArrayList<Callable<Object>>();
+        for (Runnable runnable : runnables) {
+            callables.add(Executors.callable(runnable));
+        }
+
+        try {
+            invokeAll(callables);
+        }
+        catch (DiffJException de) {
+            // runnables throw only unchecked exceptions, which are not wrapped:
+            throw new IllegalStateException(de);
+        }
+    }
+
+    protected static <T> T call(Callable<T> callable) throws DiffJException {
+        try {
+            return callable.call();
+        }
+        catch (Exception e) {
+            throw toDiffJException(e);
+        }
+    }
+
+    /**
+     * Returns the exception as a DiffJException, or throws it if it is
+     * unchecked.
+     */
+    protected static DiffJException toDiffJException(Exception e) {
+        if (e instanceof DiffJException) {
+            return (DiffJException)e;
+        }
+        else if (e instanceof RuntimeException) {
+            throw (RuntimeException)e;
+        }
+        else {
+            return new DiffJException(e);
+        }
+    }
+}
@@ -2,15 +2,16 @@ package org.incava.diffj.params;
 
 import net.sourceforge.pmd.ast.ASTFormalParameter;
 import org.incava.diffj.element.Differences;
+import org.incava.log.Log;
 
 public class ParameterExactNameMatch extends ParameterMatch {
     public ParameterExactNameMatch(ASTFormalParameter fromFormalParam, int index, int typeMatch, int nameMatch, Parameters toParams) {
         super(fromFormalParam, index, typeMatch, nameMatch, toParams);
-        tr.Ace.onWhite("index", index);
+        Log.log("index", index);
     }
 
     public void diff(Differences differences) {
-        tr.Ace.onMagenta("differences", differences);
+        Log.log("differences", differences);
 
         ASTFormalParameter toFormalParam = toParams.getParameter(index);
         Parameter toParam = new Parameter(toFormalParam);
@@ -5,6 +5,7 @@ import net.sourceforge.pmd.ast.ASTFormalParameter;
 import net.sourceforge.pmd.ast.ASTFormalParameters;
 import net.sourceforge.pmd.ast.Token;
 import org.incava.diffj.element.Differences;
+import org.incava.log.Log;
 import org.incava.pmdx.ParameterUtil;
 
 public class Parameters {
@@ -83,14 +84,14 @@ public class Parameters {
     public void compareEachParameter(Parameters toParams, Differences differences) {
         ParameterComparator pc = new ParameterComparator(this, toParams);
         List<ParameterMatch> matches = pc.getMatches();
-        tr.Ace.cyan("matches", matches);
+        Log.log("matches", matches);
 
         int size = matches.size();
 
         for (int idx = 0; idx < size; ++idx) {
             ParameterMatch paramMatch = matches.get(idx);
-            tr.Ace.cyan("idx", idx);
-            tr.Ace.cyan("paramMatch", paramMatch);
+            Log.log("idx", idx);
+            Log.log("paramMatch", paramMatch);
             paramMatch.diff(differences);
         }
 
@@ -101,7 +102,7 @@ public class Parameters {
             }
 
             // ASTFormalParameter toFormalParam = toParams.getParameter(toIdx);
-            // tr.Ace.bold("toFormalParam", toFormalParam);
+            // Log.log("toFormalParam", toFormalParam);
             Parameter toParam = new Parameter(unmatchedParam);
             Token toName = toParam.getParameterName();
             differences.changed(params, unmatchedParam, PARAMETER_ADDED, toName.image);
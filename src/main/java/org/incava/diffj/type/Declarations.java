@@ -0,0 +1,92 @@
+package org.incava.diffj.type;
+
+import java.util.ArrayList;
+import java.util.List;
+import net.sourceforge.pmd.ast.ASTClassOrInterfaceBody;
+import net.sourceforge.pmd.ast.ASTClassOrInterfaceBodyDeclaration;
+import net.sourceforge.pmd.ast.ASTClassOrInterfaceDeclaration;
+import net.sourceforge.pmd.ast.ASTConstructorDeclaration;
+import net.sourceforge.pmd.ast.ASTFieldDeclaration;
+import net.sourceforge.pmd.ast.ASTMethodDeclaration;
+import net.sourceforge.pmd.ast.Node;
+
+/**
+ * The methods, fields, ctors and inner types declared in the body of a type,
+ * each in the order declared. They are found in one pass over the body, by the
+ * kind of each declaration.
+ */
+public class Declarations {
+    private final List<ASTMethodDeclaration> methods;
+    private final List<ASTFieldDeclaration> fields;
+    private final List<ASTConstructorDeclaration> ctors;
+    private final List<ASTClassOrInterfaceDeclaration> innerTypes;
+
+    public Declarations(ASTClassOrInterfaceDeclaration decl) {
+        this.methods = new ArrayList<ASTMethodDeclaration>();
+        this.fields = new ArrayList<ASTFieldDeclaration>();
+        this.ctors = new ArrayList<ASTConstructorDeclaration>();
+        this.innerTypes = new ArrayList<ASTClassOrInterfaceDeclaration>();
+
+        int nChildren = decl.jjtGetNumChildren();
+        for (int ci = 0; ci < nChildren; ++ci) {
+            Node child = decl.jjtGetChild(ci);
+            if (child instanceof ASTClassOrInterfaceBody) {
+                addBody((ASTClassOrInterfaceBody)child);
+                break;
+            }
+        }
+    }
+
+    public List<ASTMethodDeclaration> getMethods() {
+        return methods;
+    }
+
+    public List<ASTFieldDeclaration> getFields() {
+        return fields;
+    }
+
+    public List<ASTConstructorDeclaration> getCtors() {
+        return ctors;
+    }
+
+    public List<ASTClassOrInterfaceDeclaration> getInnerTypes() {
+        return innerTypes;
+    }
+
+    protected void addBody(ASTClassOrInterfaceBody body) {
+        int nChildren = body.jjtGetNumChildren();
+        for (int ci = 0; ci < nChildren; ++ci) {
+            Node child = body.jjtGetChild(ci);
+            if (child instanceof ASTClassOrInterfaceBodyDeclaration) {
+                addDeclaration((ASTClassOrInterfaceBodyDeclaration)child);
+            }
+        }
+    }
+
+    /**
+     * Adds the declaration within the body declaration, which is after any
+     * annotations. Others, such as initializers and enums, are not compared.
+     */
+    protected void addDeclaration(ASTClassOrInterfaceBodyDeclaration bodyDecl) {
+        int nChildren = bodyDecl.jjtGetNumChildren();
+        for (int ci = 0; ci < nChildren; ++ci) {
+            Node child = bodyDecl.jjtGetChild(ci);
+            if (child instanceof ASTMethodDeclaration) {
+                methods.add((ASTMethodDeclaration)child);
+                return;
+            }
+            else if (child instanceof ASTFieldDeclaration) {
+                fields.add((ASTFieldDeclaration)child);
+                return;
+            }
+            else if (child instanceof ASTConstructorDeclaration) {
+                ctors.add((ASTConstructorDeclaration)child);
+                return;
+            }
+            else if (child instanceof ASTClassOrInterfaceDeclaration) {
+                innerTypes.add((ASTClassOrInterfaceDeclaration)child);
+                return;
+            }
+        }
+    }
+}
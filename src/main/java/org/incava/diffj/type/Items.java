@@ -2,25 +2,45 @@ package org.incava.diffj.type;
 
 import java.util.ArrayList;
 import java.util.List;
-import net.sourceforge.pmd.ast.ASTClassOrInterfaceBodyDeclaration;
-import net.sourceforge.pmd.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.ast.SimpleNode;
+import net.sourceforge.pmd.ast.Token;
+import org.incava.analysis.Moves;
+import org.incava.analysis.Report;
+import org.incava.diffj.code.Code;
+import org.incava.diffj.code.MinHash;
 import org.incava.diffj.element.Diffable;
 import org.incava.diffj.element.Differences;
+import org.incava.diffj.lang.Parallel;
+import org.incava.ijdk.lang.Pair;
 
 /**
  * Items represents the methods, ctors, fields and inner types of a parent type.
  * Collects PMD AST types into DiffJ Java types.
  */
 public abstract class Items<DiffJType extends Diffable<DiffJType>, PmdAstType extends SimpleNode> {
-    private final Class<PmdAstType> cls;
+    /**
+     * The fewest matched items compared in parallel, below which they are
+     * compared in the current thread.
+     */
+    public static final int MIN_PARALLEL_MATCHES = 16;
+
+    /**
+     * The number of groups of matched items, per thread, compared in
+     * parallel, so that threads finishing early can take on others.
+     */
+    public static final int GROUPS_PER_THREAD = 4;
+
     private final Type type;
 
-    public Items(ASTClassOrInterfaceDeclaration decl, Class<PmdAstType> cls) {
-        this.type = new Type(decl);
-        this.cls = cls;
+    public Items(Type type) {
+        this.type = type;
     }
 
+    /**
+     * Returns the AST nodes of the items, from the declarations of the type.
+     */
+    public abstract List<PmdAstType> getAstDeclarations(Declarations declarations);
+
     public abstract DiffJType getAstType(PmdAstType item);
 
     public List<DiffJType> toAstTypeList(List<PmdAstType> its) {
@@ -32,7 +52,7 @@ public abstract class Items<DiffJType extends Diffable<DiffJType>, PmdAstType ex
     }
 
     public List<DiffJType> getDeclarations() {
-        List<PmdAstType> decls = type.getDeclarationsOfClass(cls);
+        List<PmdAstType> decls = getAstDeclarations(type.getDeclarations());
         return toAstTypeList(decls);
     }
 
@@ -41,15 +61,179 @@ public abstract class Items<DiffJType extends Diffable<DiffJType>, PmdAstType ex
         List<DiffJType> toTypes = toItems.getDeclarations();
 
         TypeMatches<DiffJType> matches = new TypeMatches<DiffJType>(fromTypes);
-        matches.diff(toTypes, differences);
+        diffMatches(matches.match(toTypes), differences);
 
         List<DiffJType> removed = matches.getRemoved();
         List<DiffJType> added = matches.getAdded();
 
+        if (Renames.detectRenames && !removed.isEmpty() && !added.isEmpty()) {
+            compareRenamed(removed, added, differences);
+        }
+
+        if (Moves.detectMoves) {
+            addMoveItems(removed, added, toItems.type, differences);
+        }
+
         addRemoved(removed, toItems.type, differences);
         addAdded(added, differences);
     }
 
+    /**
+     * Compares the matched items. If there are enough of them, they are
+     * compared in parallel, in groups, each adding to its own differences,
+     * which are added to these in the order of the groups.
+     */
+    protected void diffMatches(List<Pair<DiffJType, DiffJType>> matched, Differences differences) {
+        int nMatched = matched.size();
+        int nThreads = Parallel.getThreads();
+        if (nThreads <= 1 || nMatched < MIN_PARALLEL_MATCHES || !canDiffInParallel()) {
+            diffMatches(matched, 0, nMatched, differences);
+            return;
+        }
+
+        int groupSize = Math.max(1, nMatched / (nThreads * GROUPS_PER_THREAD));
+        List<Differences> buffers = new ArrayList<Differences>();
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        for (int from = 0; from < nMatched; from += groupSize) {
+            Differences buffer = differences.createBuffer();
+            buffers.add(buffer);
+            tasks.add(createDiffTask(matched, from, Math.min(nMatched, from + groupSize), buffer));
+        }
+
+        Parallel.runAll(tasks);
+
+        for (Differences buffer : buffers) {
+            differences.addAll(buffer);
+        }
+    }
+
+    protected void diffMatches(List<Pair<DiffJType, DiffJType>> matched, int from, int to, Differences differences) {
+        for (int idx = from; idx < to; ++idx) {
+            Pair<DiffJType, DiffJType> match = matched.get(idx);
+            match.getFirst().diff(match.getSecond(), differences);
+        }
+    }
+
+    protected Runnable createDiffTask(final List<Pair<DiffJType, DiffJType>> matched, final int from, final int to, final Differences buffer) {
+        return new Runnable() {
+            public void run() {
+                diffMatches(matched, from, to, buffer);
+            }
+        };
+    }
+
+    /**
+     * Returns whether matched items can be compared in parallel. By default,
+     * they can.
+     */
+    protected boolean canDiffInParallel() {
+        return true;
+    }
+
+    /**
+     * Returns the tokens by which the item is matched to others when looking
+     * for renames, or null if it is not to be matched. By default, items are
+     * not matched.
+     */
+    protected List<Token> getRenameTokens(DiffJType item) {
+        return null;
+    }
+
+    /**
+     * Compares an item to the one to which it was renamed. Called only for
+     * items with rename tokens.
+     */
+    protected void diffRenamed(DiffJType fromItem, DiffJType toItem, Differences differences) {
+        fromItem.diff(toItem, differences);
+    }
+
+    /**
+     * Compares the removed and added items that are similar enough to have
+     * been renamed, and takes them out of the lists.
+     */
+    protected void compareRenamed(List<DiffJType> removed, List<DiffJType> added, Differences differences) {
+        List<Pair<Integer, Integer>> renames = new Renames(getSignatures(removed), getSignatures(added)).getMatches();
+        if (renames.isEmpty()) {
+            return;
+        }
+
+        List<DiffJType> renamedFrom = new ArrayList<DiffJType>();
+        List<DiffJType> renamedTo = new ArrayList<DiffJType>();
+        for (Pair<Integer, Integer> rename : renames) {
+            DiffJType fromItem = removed.get(rename.getFirst());
+            DiffJType toItem = added.get(rename.getSecond());
+            diffRenamed(fromItem, toItem, differences);
+            renamedFrom.add(fromItem);
+            renamedTo.add(toItem);
+        }
+
+        removed.removeAll(renamedFrom);
+        added.removeAll(renamedTo);
+    }
+
+    protected List<int[]> getSignatures(List<DiffJType> items) {
+        List<int[]> signatures = new ArrayList<int[]>();
+        for (DiffJType item : items) {
+            List<Token> tokens = getRenameTokens(item);
+            signatures.add(tokens == null ? null : MinHash.getSignature(tokens));
+        }
+        return signatures;
+    }
+
+    /**
+     * Returns the kind of item, such as "method", for those that can be moved
+     * from one type to another, and otherwise null. By default, items are not
+     * moved.
+     */
+    protected String getMoveKind() {
+        return null;
+    }
+
+    /**
+     * Adds the removed and added items to those of the report, from which the
+     * ones moved between types, including in other files, are found once all
+     * files are compared.
+     */
+    protected void addMoveItems(List<DiffJType> removed, List<DiffJType> added, Type toType, Differences differences) {
+        String kind = getMoveKind();
+        Report report = differences.getReport();
+        if (kind == null || report == null) {
+            return;
+        }
+
+        Moves moves = report.getMoves();
+        for (DiffJType goner : removed) {
+            moves.removed(createMoveItem(kind, goner, type, report.getFromFileName()));
+        }
+        for (DiffJType toAdd : added) {
+            moves.added(createMoveItem(kind, toAdd, toType, report.getToFileName()));
+        }
+    }
+
+    /**
+     * Adds all the items to those removed, or to those added, of the report.
+     * This is for a type that is itself removed or added, such as in a file
+     * in only one of the trees compared, the items of which might have been
+     * moved to or from another type.
+     */
+    public void addMoveItems(boolean removed, Differences differences) {
+        List<DiffJType> items = getDeclarations();
+        List<DiffJType> none = new ArrayList<DiffJType>();
+        if (removed) {
+            addMoveItems(items, none, type, differences);
+        }
+        else {
+            addMoveItems(none, items, type, differences);
+        }
+    }
+
+    protected Moves.Item createMoveItem(String kind, DiffJType item, Type container, String fileName) {
+        SimpleNode node = item.getNode();
+        Token first = node.getFirstToken();
+        long fingerprint = Code.getFingerprint(first, node.getLastToken());
+        return new Moves.Item(kind, item.getName(), fingerprint, container.getName(), fileName, first.beginLine);
+    }
+
     public void addAdded(List<DiffJType> added, Differences differences) {
         for (DiffJType toAdd : added) {
             String name = toAdd.getName();
@@ -0,0 +1,156 @@
+package org.incava.diffj.type;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.incava.diffj.code.MinHash;
+import org.incava.ijdk.lang.Pair;
+
+/**
+ * Finds the likely renames among removed and added items, by the similarity
+ * of their MinHash signatures. Candidates are found by locality-sensitive
+ * hashing: the signatures are split into bands, and only items with an equal
+ * band are compared.
+ */
+public class Renames {
+    /**
+     * Whether to look for renamed methods and fields.
+     */
+    public static boolean detectRenames = false;
+
+    /**
+     * The estimated similarity at and above which a removed and an added item
+     * are reported as renamed.
+     */
+    public static double similarityThreshold = 0.8;
+
+    public static final int BANDS = 8;
+
+    public static final int ROWS = MinHash.SIGNATURE_SIZE / BANDS;
+
+    /**
+     * Above this many items in a bucket, such as for many identical bodies,
+     * the band does not tell items apart, so it is not used.
+     */
+    public static final int MAX_BUCKET_SIZE = 64;
+
+    private final List<int[]> fromSignatures;
+    private final List<int[]> toSignatures;
+
+    /**
+     * Creates the renames for the signatures, which are null for items that
+     * cannot be matched.
+     */
+    public Renames(List<int[]> fromSignatures, List<int[]> toSignatures) {
+        this.fromSignatures = fromSignatures;
+        this.toSignatures = toSignatures;
+    }
+
+    /**
+     * Returns the indices of the from-item and the to-item of each rename,
+     * assigned greedily by descending similarity. Each item is in at most one
+     * rename.
+     */
+    public List<Pair<Integer, Integer>> getMatches() {
+        List<Candidate> candidates = getCandidates();
+        Collections.sort(candidates);
+
+        List<Pair<Integer, Integer>> matches = new ArrayList<Pair<Integer, Integer>>();
+        BitSet fromMatched = new BitSet();
+        BitSet toMatched = new BitSet();
+
+        for (Candidate candidate : candidates) {
+            if (!fromMatched.get(candidate.fromIdx) && !toMatched.get(candidate.toIdx)) {
+                fromMatched.set(candidate.fromIdx);
+                toMatched.set(candidate.toIdx);
+                matches.add(Pair.create(candidate.fromIdx, candidate.toIdx));
+            }
+        }
+        return matches;
+    }
+
+    protected List<Candidate> getCandidates() {
+        Map<Long, List<Integer>> buckets = new HashMap<Long, List<Integer>>();
+        int nFrom = fromSignatures.size();
+        for (int fromIdx = 0; fromIdx < nFrom; ++fromIdx) {
+            int[] signature = fromSignatures.get(fromIdx);
+            if (signature == null) {
+                continue;
+            }
+            for (int band = 0; band < BANDS; ++band) {
+                Long key = getBandKey(signature, band);
+                List<Integer> bucket = buckets.get(key);
+                if (bucket == null) {
+                    bucket = new ArrayList<Integer>();
+                    buckets.put(key, bucket);
+                }
+                bucket.add(fromIdx);
+            }
+        }
+
+        List<Candidate> candidates = new ArrayList<Candidate>();
+        int nTo = toSignatures.size();
+        for (int toIdx = 0; toIdx < nTo; ++toIdx) {
+            int[] signature = toSignatures.get(toIdx);
+            if (signature == null) {
+                continue;
+            }
+
+            BitSet fromIndices = new BitSet();
+            for (int band = 0; band < BANDS; ++band) {
+                List<Integer> bucket = buckets.get(getBandKey(signature, band));
+                if (bucket != null && bucket.size() <= MAX_BUCKET_SIZE) {
+                    for (Integer fromIdx : bucket) {
+                        fromIndices.set(fromIdx);
+                    }
+                }
+            }
+
+            for (int fromIdx = fromIndices.nextSetBit(0); fromIdx >= 0; fromIdx = fromIndices.nextSetBit(fromIdx + 1)) {
+                double similarity = MinHash.getSimilarity(fromSignatures.get(fromIdx), signature);
+                if (similarity >= similarityThreshold) {
+                    candidates.add(new Candidate(similarity, fromIdx, toIdx));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    protected Long getBandKey(int[] signature, int band) {
+        long key = band;
+        for (int ri = band * ROWS; ri < (band + 1) * ROWS; ++ri) {
+            key = key * 0x100000001b3L + signature[ri];
+        }
+        return key;
+    }
+
+    /**
+     * A pair of items, ordered by descending similarity, then by their
+     * positions.
+     */
+    protected static class Candidate implements Comparable<Candidate> {
+        private final double similarity;
+        private final int fromIdx;
+        private final int toIdx;
+
+        public Candidate(double similarity, int fromIdx, int toIdx) {
+            this.similarity = similarity;
+            this.fromIdx = fromIdx;
+            this.toIdx = toIdx;
+        }
+
+        public int compareTo(Candidate other) {
+            int cmp = Double.compare(other.similarity, similarity);
+            if (cmp == 0) {
+                cmp = fromIdx - other.fromIdx;
+            }
+            if (cmp == 0) {
+                cmp = toIdx - other.toIdx;
+            }
+            return cmp;
+        }
+    }
+}
@@ -1,14 +1,12 @@
 package org.incava.diffj.type;
 
-import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import net.sourceforge.pmd.ast.ASTClassOrInterfaceBodyDeclaration;
 import net.sourceforge.pmd.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.ast.ASTConstructorDeclaration;
 import net.sourceforge.pmd.ast.ASTFieldDeclaration;
 import net.sourceforge.pmd.ast.ASTMethodDeclaration;
 import net.sourceforge.pmd.ast.JavaParserConstants;
-import net.sourceforge.pmd.ast.SimpleNode;
 import net.sourceforge.pmd.ast.Token;
 import org.incava.diffj.element.AccessibleElement;
 import org.incava.diffj.element.Diffable;
@@ -17,7 +15,6 @@ import org.incava.diffj.field.Field;
 import org.incava.diffj.function.Ctor;
 import org.incava.diffj.function.Method;
 import org.incava.pmdx.SimpleNodeUtil;
-import org.incava.pmdx.TypeDeclarationUtil;
 
 public class Type extends AccessibleElement implements Diffable<Type> {
     public static final String TYPE_CHANGED_FROM_CLASS_TO_INTERFACE = "type changed from class to interface";
@@ -30,10 +27,12 @@ public class Type extends AccessibleElement implements Diffable<Type> {
     public static final String INNER_CLASS_REMOVED = "inner class removed: {0}";
 
     private final ASTClassOrInterfaceDeclaration decl;
+    private Declarations declarations;
     
     public Type(ASTClassOrInterfaceDeclaration decl) {
         super(decl);
         this.decl = decl;
+        this.declarations = null;
     }
 
     public void diff(Type toType, Differences differences) {
@@ -55,23 +54,15 @@ public class Type extends AccessibleElement implements Diffable<Type> {
         return decl;
     }
 
-    public <ItemType extends SimpleNode> List<ItemType> getDeclarationsOfClass(Class<ItemType> cls) {
-        List<ASTClassOrInterfaceBodyDeclaration> decls = TypeDeclarationUtil.getDeclarations(decl);
-        return getDeclarationsOfClass(decls, cls);
-    }
-
-    public <ItemType extends SimpleNode> List<ItemType> getDeclarationsOfClass(List<ASTClassOrInterfaceBodyDeclaration> decls, Class<ItemType> cls) {
-        List<ItemType> declList = new ArrayList<ItemType>();
-
-        for (ASTClassOrInterfaceBodyDeclaration decl : decls) {
-            ItemType dec = (ItemType)TypeDeclarationUtil.getDeclaration(decl, cls);
-
-            if (dec != null) {
-                declList.add(dec);
-            }   
+    /**
+     * Returns the declarations in the body of this type, by kind, found when
+     * first requested.
+     */
+    public synchronized Declarations getDeclarations() {
+        if (declarations == null) {
+            declarations = new Declarations(decl);
         }
-        
-        return declList;
+        return declarations;
     }
 
     protected boolean isInterface() {
@@ -91,23 +82,59 @@ public class Type extends AccessibleElement implements Diffable<Type> {
     }
 
     protected Items<Method, ASTMethodDeclaration> getMethods() {
-        return new Items<Method, ASTMethodDeclaration>(decl, net.sourceforge.pmd.ast.ASTMethodDeclaration.class) {
+        return new Items<Method, ASTMethodDeclaration>(this) {
+            public List<ASTMethodDeclaration> getAstDeclarations(Declarations declarations) {
+                return declarations.getMethods();
+            }
+
             public Method getAstType(ASTMethodDeclaration methodDecl) {
                 return new Method(methodDecl);
             }
+
+            protected List<Token> getRenameTokens(Method method) {
+                return method.getBodyTokens();
+            }
+
+            protected void diffRenamed(Method fromMethod, Method toMethod, Differences differences) {
+                fromMethod.diffRenamed(toMethod, differences);
+            }
+
+            protected String getMoveKind() {
+                return "method";
+            }
         };
     }
 
     protected Items<Field, ASTFieldDeclaration> getFields() {
-        return new Items<Field, ASTFieldDeclaration>(decl, net.sourceforge.pmd.ast.ASTFieldDeclaration.class) {
+        return new Items<Field, ASTFieldDeclaration>(this) {
+            public List<ASTFieldDeclaration> getAstDeclarations(Declarations declarations) {
+                return declarations.getFields();
+            }
+
             public Field getAstType(ASTFieldDeclaration fieldDecl) {
                 return new Field(fieldDecl);
             }
+
+            protected List<Token> getRenameTokens(Field field) {
+                return field.getUnnamedTokens();
+            }
+
+            protected void diffRenamed(Field fromField, Field toField, Differences differences) {
+                fromField.diffRenamed(toField, differences);
+            }
+
+            protected String getMoveKind() {
+                return "field";
+            }
         };
     }
 
     protected Items<Ctor, ASTConstructorDeclaration> getCtors() {
-        return new Items<Ctor, ASTConstructorDeclaration>(decl, net.sourceforge.pmd.ast.ASTConstructorDeclaration.class) {
+        return new Items<Ctor, ASTConstructorDeclaration>(this) {
+            public List<ASTConstructorDeclaration> getAstDeclarations(Declarations declarations) {
+                return declarations.getCtors();
+            }
+
             public Ctor getAstType(ASTConstructorDeclaration ctorDecl) {
                 return new Ctor(ctorDecl);
             }
@@ -115,10 +142,31 @@ public class Type extends AccessibleElement implements Diffable<Type> {
     }
             
     protected Items<Type, ASTClassOrInterfaceDeclaration> getInnerTypes() {
-        return new Items<Type, ASTClassOrInterfaceDeclaration>(decl, net.sourceforge.pmd.ast.ASTClassOrInterfaceDeclaration.class) {
+        return new Items<Type, ASTClassOrInterfaceDeclaration>(this) {
+            public List<ASTClassOrInterfaceDeclaration> getAstDeclarations(Declarations declarations) {
+                return declarations.getInnerTypes();
+            }
+
             public Type getAstType(ASTClassOrInterfaceDeclaration decl) {
                 return new Type(decl);
             }
+
+            protected boolean canDiffInParallel() {
+                // inner types add to the moves of the report, in order; their
+                // members are compared in parallel.
+                return false;
+            }
+
+            protected void addMoveItems(List<Type> removed, List<Type> added, Type toType, Differences differences) {
+                // the members of removed and added inner types might have
+                // been moved, although the types themselves are not.
+                for (Type goner : removed) {
+                    goner.addMoveItems(true, differences);
+                }
+                for (Type toAdd : added) {
+                    toAdd.addMoveItems(false, differences);
+                }
+            }
         };
     }
 
@@ -158,10 +206,24 @@ public class Type extends AccessibleElement implements Diffable<Type> {
         fromInnerTypes.diff(toInnerTypes, differences);
     }
 
+    /**
+     * Adds the methods and fields of this type, and of its inner types, to
+     * those removed, or added, for a type that is itself removed or added.
+     */
+    public void addMoveItems(boolean removed, Differences differences) {
+        getMethods().addMoveItems(removed, differences);
+        getFields().addMoveItems(removed, differences);
+        getInnerTypes().addMoveItems(removed, differences);
+    }
+
     public String getName() {
         return SimpleNodeUtil.findToken(decl, JavaParserConstants.IDENTIFIER).image;
     }
 
+    public List<String> getMatchKeys() {
+        return Collections.singletonList(getName());
+    }
+
     public double getMatchScore(Type toType) {
         return getName().equals(toType.getName()) ? 1.0 : 0.0;
     }
@@ -1,35 +1,45 @@
 package org.incava.diffj.type;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.TreeSet;
 import net.sourceforge.pmd.ast.SimpleNode;
 import org.incava.diffj.element.Diffable;
-import org.incava.diffj.element.Differences;
 import org.incava.ijdk.lang.Pair;
 import org.incava.ijdk.util.MultiMap;
 
+/**
+ * Matches items by descending score, greedily. Only items that share a match
+ * key are scored against one another, since all other pairs score zero.
+ */
 public class TypeMatches<ElementType extends Diffable<ElementType>> {
     private final MultiMap<Double, Pair<ElementType, ElementType>> matches;
-    private final List<ElementType> unprocFromItems;
-    private final List<ElementType> unprocToItems;
+    private final Set<ElementType> procFromItems;
+    private final Set<ElementType> procToItems;
     private final List<ElementType> decls;
+    private final List<ElementType> toDecls;
 
     public TypeMatches(List<ElementType> decls) {
         this.matches = new MultiMap<Double, Pair<ElementType, ElementType>>();
-        this.unprocFromItems = new ArrayList<ElementType>();
-        this.unprocToItems = new ArrayList<ElementType>();
+        this.procFromItems = Collections.newSetFromMap(new IdentityHashMap<ElementType, Boolean>());
+        this.procToItems = Collections.newSetFromMap(new IdentityHashMap<ElementType, Boolean>());
         this.decls = decls;
+        this.toDecls = new ArrayList<ElementType>();
     }
 
     public List<ElementType> getRemoved() {
-        return unprocFromItems;
+        return getUnprocessed(decls, procFromItems);
     }
 
     public List<ElementType> getAdded() {
-        return unprocToItems;
+        return getUnprocessed(toDecls, procToItems);
     }
 
     public void add(double score, ElementType firstType, ElementType secondType) {
@@ -46,56 +56,97 @@ public class TypeMatches<ElementType extends Diffable<ElementType>> {
         return descendingScores;
     }
 
-    public void diff(List<ElementType> toTypes, Differences differences) {
+    /**
+     * Returns the pairs of items to be compared, in the order in which they
+     * would be compared. Which pairs match does not depend on the differences
+     * between them, so they can be compared in any order, and in parallel.
+     */
+    public List<Pair<ElementType, ElementType>> match(List<ElementType> toTypes) {
+        toDecls.addAll(toTypes);
         addAllScores(toTypes);
-        compareMatches(toTypes, differences);
+
+        List<Pair<ElementType, ElementType>> matched = new ArrayList<Pair<ElementType, ElementType>>();
+        for (Double score : getDescendingScores()) {
+            matchAtScore(score, matched);
+        }
+        return matched;
+    }
+
+    private List<ElementType> getUnprocessed(List<ElementType> items, Set<ElementType> processed) {
+        List<ElementType> unprocessed = new ArrayList<ElementType>();
+        for (ElementType item : items) {
+            if (!processed.contains(item)) {
+                unprocessed.add(item);
+            }
+        }
+        return unprocessed;
+    }
+
+    /**
+     * Returns the indices of the to-items, by each of their match keys.
+     */
+    private Map<String, BitSet> getToIndices(List<ElementType> toTypes) {
+        Map<String, BitSet> toIndices = new HashMap<String, BitSet>();
+        int nTypes = toTypes.size();
+        for (int idx = 0; idx < nTypes; ++idx) {
+            for (String key : toTypes.get(idx).getMatchKeys()) {
+                BitSet indices = toIndices.get(key);
+                if (indices == null) {
+                    indices = new BitSet();
+                    toIndices.put(key, indices);
+                }
+                indices.set(idx);
+            }
+        }
+        return toIndices;
     }
 
     private void addAllScores(List<ElementType> toTypes) {
+        Map<String, BitSet> toIndices = getToIndices(toTypes);
         for (ElementType fromType : decls) {
-            addScores(fromType, toTypes);
+            addScores(fromType, toTypes, toIndices);
         }
     }
 
-    private void addScores(ElementType fromType, List<ElementType> toTypes) {
-        for (ElementType toType : toTypes) {
+    private void addScores(ElementType fromType, List<ElementType> toTypes, Map<String, BitSet> toIndices) {
+        // scores in the order of the to-items, as if comparing against all of them:
+        BitSet candidates = new BitSet();
+        for (String key : fromType.getMatchKeys()) {
+            BitSet indices = toIndices.get(key);
+            if (indices != null) {
+                candidates.or(indices);
+            }
+        }
+
+        for (int idx = candidates.nextSetBit(0); idx >= 0; idx = candidates.nextSetBit(idx + 1)) {
+            ElementType toType = toTypes.get(idx);
             double matchScore = fromType.getMatchScore(toType);
             if (matchScore > 0.0) {
                 add(matchScore, fromType, toType);
             }
         }
     }
-    
-    private void compareMatches(List<ElementType> toItems, Differences differences) {
-        unprocFromItems.addAll(decls);
-        unprocToItems.addAll(toItems);
-
-        List<Double> descendingScores = getDescendingScores();
-        
-        for (Double score : descendingScores) {
-            diffAtScore(score, differences);
-        }
-    }
 
-    private void diffAtScore(double score, Differences differences) {
+    private void matchAtScore(double score, List<Pair<ElementType, ElementType>> matched) {
         // don't repeat comparisons ...
 
-        List<ElementType> procFromItems = new ArrayList<ElementType>();
-        List<ElementType> procToItems = new ArrayList<ElementType>();
+        List<ElementType> procFromAtScore = new ArrayList<ElementType>();
+        List<ElementType> procToAtScore = new ArrayList<ElementType>();
 
         for (Pair<ElementType, ElementType> declPair : get(score)) {
             ElementType fromType = declPair.getFirst();
-            ElementType toType = declPair.getSecond();;
+            ElementType toType = declPair.getSecond();
+
+            if (!procFromItems.contains(fromType) && !procToItems.contains(toType)) {
+                matched.add(declPair);
 
-            if (unprocFromItems.contains(fromType) && unprocToItems.contains(toType)) {
-                fromType.diff(toType, differences);
-                    
-                procFromItems.add(fromType);
-                procToItems.add(toType);
+                procFromAtScore.add(fromType);
+                procToAtScore.add(toType);
             }
         }
 
-        unprocFromItems.removeAll(procFromItems);
-        unprocToItems.removeAll(procToItems);
+        // items are processed only once all pairs at this score are matched:
+        procFromItems.addAll(procFromAtScore);
+        procToItems.addAll(procToAtScore);
     }
 }
@@ -7,6 +7,7 @@ import net.sourceforge.pmd.ast.ASTClassOrInterfaceDeclaration;
 import net.sourceforge.pmd.ast.ASTCompilationUnit;
 import net.sourceforge.pmd.ast.ASTTypeDeclaration;
 import net.sourceforge.pmd.ast.Token;
+import org.incava.analysis.Moves;
 import org.incava.diffj.element.Differences;
 import org.incava.pmdx.CompilationUnitUtil;
 import org.incava.pmdx.TypeDeclarationUtil;
@@ -38,10 +39,16 @@ public class Types {
         if (fromTypeDecl == null) {
             Token toName = TypeDeclarationUtil.getName(toTypeDecl);
             differences.added(compUnit, toTypeDecl, TYPE_DECLARATION_ADDED, toName.image);
+            if (Moves.detectMoves) {
+                addMoveItems(toTypeDecl, false, differences);
+            }
         }
         else if (toTypeDecl == null) {
             Token toName = TypeDeclarationUtil.getName(fromTypeDecl);
             differences.deleted(fromTypeDecl, toTypes.compUnit, TYPE_DECLARATION_REMOVED, toName.image);
+            if (Moves.detectMoves) {
+                addMoveItems(fromTypeDecl, true, differences);
+            }
         }
         else {
             ASTClassOrInterfaceDeclaration fromDecl = TypeDeclarationUtil.getType(fromTypeDecl);
@@ -55,6 +62,23 @@ public class Types {
         }
     }
 
+    /**
+     * Adds the members of all types to those removed, or to those added, as
+     * for a file in only one of the trees compared.
+     */
+    public void addMoveItems(boolean removed, Differences differences) {
+        for (ASTTypeDeclaration type : types) {
+            addMoveItems(type, removed, differences);
+        }
+    }
+
+    protected void addMoveItems(ASTTypeDeclaration typeDecl, boolean removed, Differences differences) {
+        ASTClassOrInterfaceDeclaration decl = TypeDeclarationUtil.getType(typeDecl);
+        if (decl != null) {
+            new Type(decl).addMoveItems(removed, differences);
+        }
+    }
+
     protected Collection<String> getNames() {
         Collection<String> names = new TreeSet<String>();
         for (ASTTypeDeclaration type : types) {
@@ -1,82 +1,72 @@
 package org.incava.log;
 
-import org.incava.ijdk.util.ANSI;
-
-
-public class Log extends ANSI {
+/**
+ * Writes debugging output to standard error, in verbose mode. Each method
+ * checks the mode before doing anything else, so otherwise no message is
+ * built, no value is converted to a string, and no stack is captured.
+ * Messages are given as names and values, with overloads of fixed arity
+ * rather than varargs, so that calls do not create arrays.
+ */
+public class Log {
     public static int fileWidth = 35;
     public static int lineWidth = 5;
     public static int funcWidth = 70;
 
-    public static boolean verbose = false;
-    static {
-        String verStr = System.getProperty("verbose");
-        if (verStr != null) {
-            verbose = Boolean.valueOf(verStr).booleanValue();
-        }
-    }
+    /**
+     * The number of frames written by <code>stack</code>.
+     */
+    public static final int STACK_FRAMES = 5;
 
-    public static boolean log() {
-        log(null, "", 2);
-        return true;
-    }
+    /**
+     * The index, in the stack captured by <code>write</code>, of the frame
+     * that called the public method.
+     */
+    private static final int CALLER_FRAME = 2;
 
-    public static boolean log(String msg) {
-        log(null, msg, 2);
-        return true;
-    }
+    private static boolean verbose = Boolean.getBoolean("verbose");
 
-    public static boolean log(String[] msg) {
-        for (int i = 0; i < msg.length; ++i) {
-            log(null, msg[i], 2);
-        }
-        return true;
+    public static boolean isVerbose() {
+        return verbose;
     }
 
-    public static boolean log(Object whence, String msg) {
-        log(whence, msg, 1);
-        return true;
+    public static void setVerbose(boolean verb) {
+        verbose = verb;
     }
 
-    public static boolean log(Object whence, String msg, int depth) {
-        StackTraceElement[] stack = (new Exception("")).getStackTrace();
-        if (depth < stack.length) {
-            display(whence, msg, stack, depth);
+    public static void log(String msg) {
+        if (verbose) {
+            write(msg, 1);
         }
-        return true;
     }
 
-    public static boolean stack() {
-        stack(null, "", 2, 5);
-        return true;
-    }
-
-    public static boolean stack(String msg) {
-        stack(null, msg, 2, 5);
-        return true;
+    public static void log(String name, Object value) {
+        if (verbose) {
+            write(name + ": " + value, 1);
+        }
     }
 
-    public static boolean stack(int depth) {
-        stack(null, "", 2, depth);
-        return true;
+    public static void log(String name, int value) {
+        if (verbose) {
+            write(name + ": " + value, 1);
+        }
     }
 
-    public static boolean stack(String msg, int depth) {
-        stack(null, msg, 2, depth);
-        return true;
+    public static void log(String name1, Object value1, String name2, Object value2) {
+        if (verbose) {
+            write(name1 + ": " + value1 + "; " + name2 + ": " + value2, 1);
+        }
     }
 
-    public static boolean stack(Object whence, String msg, int startDepth, int numFrames) {
-        StackTraceElement[] stack = (new Exception("")).getStackTrace();
-        for (int si = startDepth; si < startDepth + numFrames && si < stack.length; ++si) {
-            display(whence, si == startDepth ? msg : "\"\"", stack, si);
+    public static void stack(String msg) {
+        if (verbose) {
+            write(msg, STACK_FRAMES);
         }
-        return true;
     }
 
-    public static boolean logColor(String color, String msg) {
-        log(null, color + msg + NONE, 2);
-        return true;
+    public static void stack(String name, Object value) {
+        if (verbose) {
+            write(name + ": " + value, STACK_FRAMES);
+        }
     }
 
     public static void setWidths(int file, int line, int func) {
@@ -85,46 +75,47 @@ public class Log extends ANSI {
         funcWidth = func;
     }
 
-    protected static void display(Object whence, String msg, StackTraceElement[] stack, int stackIndex) {
-        if (verbose) {
-            String className  = stack[stackIndex].getClassName();
-            String fileName   = stack[stackIndex].getFileName();
-            int    lineNumber = stack[stackIndex].getLineNumber();
-            String methodName = stack[stackIndex].getMethodName();
-
-            // How could Sun take C and leave out printf?
-
-            // should be:
-            //     String fmt = "[%" + fileWidth + "s:%" + lineWidth + "d] {%" + funcWidth + "s} %s";
-            //     String str = FormattedString.toString(fmt, fileName, lineNumber, className + "#" + methodName, msg);
-
-            StringBuffer flBuf = new StringBuffer("[");
-            flBuf.append(fileName).append(":").append(lineNumber);
-            for (int fi = flBuf.length(); fi < fileWidth - 1 + lineWidth; ++fi) {
-                flBuf.append(" ");
-            }
-            flBuf.append("] ");
-
-            // make org.incava into ...
-            StringBuffer cmBuf = new StringBuffer("{");
-            if (className.startsWith("org.") || className.startsWith("com.")) {
-                className = "..." + className.substring(className.indexOf('.', 5) + 1);
-            }
-
-            cmBuf.append(className).append("#").append(methodName);
-            for (int ci = cmBuf.length(); ci < funcWidth - 2; ++ci) {
-                cmBuf.append(" ");
-            }
-            cmBuf.append("} ");
-
-            // remove ending EOLN
-            while (msg.length() > 0 && "\r\n".indexOf(msg.charAt(msg.length() - 1)) != -1) {
-                msg = msg.substring(0, msg.length() - 1);
-            }
-
-            String outstr = flBuf.toString() + cmBuf.toString() + msg;
-            System.err.println(outstr);
+    /**
+     * Writes the message with the frame of the caller of the public method,
+     * and the given number of frames in all.
+     */
+    private static void write(String msg, int numFrames) {
+        StackTraceElement[] stack = (new Exception("")).getStackTrace();
+        for (int si = CALLER_FRAME; si < CALLER_FRAME + numFrames && si < stack.length; ++si) {
+            display(si == CALLER_FRAME ? msg : "\"\"", stack[si]);
         }
     }
 
+    protected static void display(String msg, StackTraceElement frame) {
+        String className  = frame.getClassName();
+        String fileName   = frame.getFileName();
+        int    lineNumber = frame.getLineNumber();
+        String methodName = frame.getMethodName();
+
+        StringBuilder flBuf = new StringBuilder("[");
+        flBuf.append(fileName).append(":").append(lineNumber);
+        for (int fi = flBuf.length(); fi < fileWidth - 1 + lineWidth; ++fi) {
+            flBuf.append(" ");
+        }
+        flBuf.append("] ");
+
+        // make org.incava into ...
+        StringBuilder cmBuf = new StringBuilder("{");
+        if (className.startsWith("org.") || className.startsWith("com.")) {
+            className = "..." + className.substring(className.indexOf('.', 5) + 1);
+        }
+
+        cmBuf.append(className).append("#").append(methodName);
+        for (int ci = cmBuf.length(); ci < funcWidth - 2; ++ci) {
+            cmBuf.append(" ");
+        }
+        cmBuf.append("} ");
+
+        // remove ending EOLN
+        while (msg.length() > 0 && "\r\n".indexOf(msg.charAt(msg.length() - 1)) != -1) {
+            msg = msg.substring(0, msg.length() - 1);
+        }
+
+        System.err.println(flBuf.toString() + cmBuf.toString() + msg);
+    }
 }
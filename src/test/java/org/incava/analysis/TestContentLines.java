@@ -0,0 +1,38 @@
+package org.incava.analysis;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+public class TestContentLines extends TestCase {
+    public TestContentLines(String name) {
+        super(name);
+    }
+
+    public void assertLines(String[] expected, CharSequence contents) {
+        ContentLines lines = new ContentLines(contents);
+        assertEquals(Arrays.asList(expected), lines);
+    }
+
+    public void testEmpty() {
+        assertLines(new String[0], "");
+    }
+
+    public void testNewlines() {
+        assertLines(new String[] { "a", "bc", "", "d" }, "a\nbc\n\nd\n");
+    }
+
+    public void testNoEndingNewline() {
+        assertLines(new String[] { "a", "bc" }, "a\nbc");
+    }
+
+    public void testCarriageReturns() {
+        assertLines(new String[] { "a", "b", "c" }, "a\r\nb\rc\r\n");
+    }
+
+    public void testCharBuffer() {
+        CharBuffer buf = CharBuffer.wrap("xx\nfoo\nbar\n");
+        buf.position(3);
+        assertLines(new String[] { "foo", "bar" }, buf.slice());
+    }
+}
@@ -0,0 +1,127 @@
+package org.incava.analysis;
+
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import net.sourceforge.pmd.ast.JavaParserConstants;
+import net.sourceforge.pmd.ast.Token;
+import org.incava.diffj.code.Code;
+import org.incava.diffj.element.Differences;
+import org.incava.ijdk.text.Location;
+
+public class TestDiffLimit extends TestCase {
+    public TestDiffLimit(String name) {
+        super(name);
+    }
+
+    public FileDiff diff(int line) {
+        return new FileDiffChange("msg", new Location(line, 1), new Location(line, 5), new Location(line, 1), new Location(line, 5));
+    }
+
+    /**
+     * Returns identifier tokens, one per word, all on the first line.
+     */
+    public List<Token> tokens(String ... words) {
+        List<Token> tokens = new ArrayList<Token>();
+        int column = 1;
+        for (String word : words) {
+            Token tk = new Token();
+            tk.kind = JavaParserConstants.IDENTIFIER;
+            tk.image = word;
+            tk.beginLine = 1;
+            tk.endLine = 1;
+            tk.beginColumn = column;
+            tk.endColumn = column + word.length() - 1;
+            column += word.length() + 1;
+            tokens.add(tk);
+        }
+        return tokens;
+    }
+
+    public void testNoLimit() {
+        FileDiffs fileDiffs = new FileDiffs();
+        for (int line = 1; line <= 10; ++line) {
+            fileDiffs.add(diff(line));
+        }
+        assertEquals(10, fileDiffs.size());
+    }
+
+    public void testLimitReached() {
+        FileDiffs fileDiffs = new FileDiffs();
+        DiffLimit limit = new DiffLimit(3);
+        fileDiffs.setLimit(limit);
+        fileDiffs.add(diff(1));
+        fileDiffs.add(diff(2));
+        assertFalse(limit.isReached());
+        try {
+            fileDiffs.add(diff(3));
+            fail("limit should have been reached");
+        }
+        catch (LimitReachedException lre) {
+            assertTrue(limit.isReached());
+            assertTrue(fileDiffs.wasAdded());
+        }
+    }
+
+    public void testDuplicateNotCounted() {
+        FileDiffs fileDiffs = new FileDiffs();
+        DiffLimit limit = new DiffLimit(2);
+        fileDiffs.setLimit(limit);
+        fileDiffs.add(diff(1));
+        fileDiffs.add(diff(1));
+        assertFalse(limit.isReached());
+    }
+
+    public void testShared() {
+        DiffLimit limit = new DiffLimit(2);
+        FileDiffs first = new FileDiffs();
+        first.setLimit(limit);
+        FileDiffs second = new FileDiffs();
+        second.setLimit(limit);
+        first.add(diff(1));
+        try {
+            second.add(diff(1));
+            fail("limit should have been reached");
+        }
+        catch (LimitReachedException lre) {
+        }
+        try {
+            first.add(diff(2));
+            fail("limit should remain reached");
+        }
+        catch (LimitReachedException lre) {
+        }
+    }
+
+    public void testReplacedNotCounted() {
+        FileDiffs fileDiffs = new FileDiffs();
+        DiffLimit limit = new DiffLimit(2);
+        fileDiffs.setLimit(limit);
+        FileDiff first = diff(1);
+        fileDiffs.add(first);
+        fileDiffs.remove(first);
+        fileDiffs.add(diff(1));
+        assertFalse(limit.isReached());
+        assertEquals(1, fileDiffs.size());
+    }
+
+    public void testEditsOnOneLineCountedOnce() {
+        FileDiffs fileDiffs = new FileDiffs();
+        DiffLimit limit = new DiffLimit(2);
+        fileDiffs.setLimit(limit);
+
+        // three changes on the same line, reported as one code change:
+        Code fromCode = new Code("f()", tokens("a", "b", "c", "d", "e", "f", "g"));
+        Code toCode = new Code("f()", tokens("a", "x", "c", "y", "e", "z", "g"));
+        fromCode.diff(toCode, new Differences(fileDiffs));
+
+        assertFalse(limit.isReached());
+        assertEquals(1, fileDiffs.size());
+        try {
+            fileDiffs.add(diff(2));
+            fail("limit should have been reached");
+        }
+        catch (LimitReachedException lre) {
+        }
+    }
+}
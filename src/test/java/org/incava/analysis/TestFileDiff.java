@@ -2,6 +2,7 @@ package org.incava.analysis;
 
 import junit.framework.TestCase;
 import org.incava.ijdk.text.Location;
+import org.incava.ijdk.text.LocationRange;
 
 public class TestFileDiff extends TestCase {
     public TestFileDiff(String name) {
@@ -64,5 +65,28 @@ public class TestFileDiff extends TestCase {
         b = new FileDiffAdd("msg", new Location(0, 0), new Location(0, 1), new Location(0, 0), new Location(0, 2));
         assertTrue("a != b", !a.equals(b));
         assertTrue("a.compareTo(b)", a.compareTo(b) > 0);
-    }    
+    }
+
+    public void testTemplateFormattedWhenRequested() {
+        final int[] count = new int[1];
+        Object arg = new Object() {
+                public String toString() {
+                    ++count[0];
+                    return "foo";
+                }
+            };
+        FileDiff a = new FileDiffDelete("method removed: {0}", new Object[] { arg }, new LocationRange(new Location(1, 1), new Location(1, 4)), null);
+        assertEquals("not yet formatted", 0, count[0]);
+        assertEquals("method removed: {0}", a.getTemplate());
+        assertEquals("method removed: foo", a.getMessage());
+        assertEquals("method removed: foo", a.getMessage());
+        assertEquals("formatted once", 1, count[0]);
+    }
+
+    public void testTemplateEqualsMessage() {
+        FileDiff a = new FileDiffChange("x changed from {0} to {1}", new Object[] { "a", "b" }, new LocationRange(new Location(0, 0), new Location(1, 1)), new LocationRange(new Location(0, 0), new Location(1, 1)));
+        FileDiff b = new FileDiffChange("x changed from a to b", new Location(0, 0), new Location(1, 1), new Location(0, 0), new Location(1, 1));
+        assertEquals("a == b", a, b);
+        assertEquals("a.hashCode() == b.hashCode()", a.hashCode(), b.hashCode());
+    }
 }
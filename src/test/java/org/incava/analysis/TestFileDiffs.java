@@ -0,0 +1,189 @@
+package org.incava.analysis;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import junit.framework.TestCase;
+import org.incava.ijdk.text.Location;
+import org.incava.ijdk.text.LocationRange;
+
+public class TestFileDiffs extends TestCase {
+    public TestFileDiffs(String name) {
+        super(name);
+    }
+
+    public FileDiff change(String msg, int fromLine, int toLine) {
+        return new FileDiffChange(msg, new Location(fromLine, 1), new Location(fromLine, 5), new Location(toLine, 1), new Location(toLine, 5));
+    }
+
+    public List<FileDiff> toList(FileDiffs diffs) {
+        List<FileDiff> list = new ArrayList<FileDiff>();
+        for (FileDiff fd : diffs) {
+            list.add(fd);
+        }
+        return list;
+    }
+
+    public void testAddedInOrder() {
+        FileDiffs diffs = new FileDiffs();
+        FileDiff a = change("a", 1, 1);
+        FileDiff b = change("b", 2, 2);
+        FileDiff c = change("c", 3, 3);
+        assertTrue(diffs.add(a));
+        assertTrue(diffs.add(b));
+        assertTrue(diffs.add(c));
+        assertEquals(3, diffs.size());
+        assertEquals(Arrays.asList(a, b, c), toList(diffs));
+    }
+
+    public void testAddedOutOfOrder() {
+        FileDiffs diffs = new FileDiffs();
+        FileDiff a = change("a", 1, 1);
+        FileDiff b = change("b", 2, 2);
+        FileDiff c = change("c", 3, 3);
+        diffs.add(c);
+        diffs.add(a);
+        diffs.add(b);
+        assertEquals(3, diffs.size());
+        assertEquals(Arrays.asList(a, b, c), toList(diffs));
+    }
+
+    public void testSameLocationsSortedByMessage() {
+        FileDiffs diffs = new FileDiffs();
+        FileDiff b = change("b", 1, 1);
+        FileDiff a = change("a", 1, 1);
+        diffs.add(b);
+        diffs.add(a);
+        assertEquals(Arrays.asList(a, b), toList(diffs));
+    }
+
+    public void testDuplicateOfLastNotAdded() {
+        FileDiffs diffs = new FileDiffs();
+        FileDiff first = change("a", 1, 1);
+        assertTrue(diffs.add(first));
+        assertFalse(diffs.add(change("a", 1, 1)));
+        assertEquals(1, diffs.size());
+        assertSame(first, diffs.iterator().next());
+    }
+
+    public void testDuplicateOfEarlierDropped() {
+        FileDiffs diffs = new FileDiffs();
+        FileDiff first = change("b", 2, 2);
+        diffs.add(first);
+        diffs.add(change("a", 1, 1));
+        diffs.add(change("b", 2, 2));
+        diffs.add(change("c", 3, 3));
+        assertEquals(3, diffs.size());
+        List<FileDiff> list = toList(diffs);
+        assertSame(first, list.get(1));
+    }
+
+    public void testRemoveWhenSorted() {
+        FileDiffs diffs = new FileDiffs();
+        FileDiff a = change("a", 1, 1);
+        FileDiff b = change("b", 2, 2);
+        FileDiff c = change("c", 3, 3);
+        diffs.add(a);
+        diffs.add(b);
+        diffs.add(c);
+        assertTrue(diffs.remove(c));
+        assertTrue(diffs.remove(change("a", 1, 1)));
+        assertFalse(diffs.remove(change("d", 4, 4)));
+        assertEquals(Arrays.asList(b), toList(diffs));
+    }
+
+    public void testRemoveWhenUnsorted() {
+        FileDiffs diffs = new FileDiffs();
+        FileDiff a = change("a", 1, 1);
+        FileDiff b = change("b", 2, 2);
+        FileDiff c = change("c", 3, 3);
+        diffs.add(c);
+        diffs.add(b);
+        diffs.add(a);
+        diffs.add(change("b", 2, 2));
+        // removes all equal ones, as those would otherwise be read:
+        assertTrue(diffs.remove(change("b", 2, 2)));
+        assertFalse(diffs.remove(change("d", 4, 4)));
+        assertEquals(Arrays.asList(a, c), toList(diffs));
+    }
+
+    public void testIteratorRemove() {
+        FileDiffs diffs = new FileDiffs();
+        FileDiff a = change("a", 1, 1);
+        FileDiff b = change("b", 2, 2);
+        diffs.add(b);
+        diffs.add(a);
+        Iterator<FileDiff> it = diffs.iterator();
+        assertSame(a, it.next());
+        it.remove();
+        assertEquals(Arrays.asList(b), toList(diffs));
+    }
+
+    public void testClear() {
+        FileDiffs diffs = new FileDiffs();
+        diffs.add(change("a", 1, 1));
+        diffs.clear();
+        assertTrue(diffs.isEmpty());
+        assertTrue(diffs.wasAdded());
+    }
+
+    public void testBufferedCountedOnce() {
+        DiffLimit limit = new DiffLimit(5);
+        FileDiffs diffs = new FileDiffs();
+        diffs.setLimit(limit);
+        FileDiffs buffer = new FileDiffs();
+        buffer.setLimit(limit);
+
+        diffs.add(change("a", 1, 1));
+        buffer.add(change("b", 2, 2));
+        buffer.add(change("c", 3, 3));
+        // not added, nor counted:
+        buffer.add(change("c", 3, 3));
+        // counted, but dropped, and no longer counted, when merged:
+        buffer.add(change("a", 1, 1));
+        diffs.addBuffered(buffer);
+        assertEquals(3, diffs.size());
+
+        diffs.add(change("d", 4, 4));
+        try {
+            diffs.add(change("e", 5, 5));
+            fail("expected a LimitReachedException");
+        }
+        catch (LimitReachedException lre) {
+            assertTrue(limit.isReached());
+        }
+    }
+
+    public void testSameOrderAsTreeSet() {
+        Random random = new Random(17);
+        String[] msgs = new String[] { "a", "b", "c" };
+        for (int trial = 0; trial < 20; ++trial) {
+            FileDiffs diffs = new FileDiffs();
+            TreeSet<FileDiff> set = new TreeSet<FileDiff>();
+            int count = random.nextInt(200);
+            for (int di = 0; di < count; ++di) {
+                LocationRange fromLoc = null;
+                if (random.nextInt(8) != 0) {
+                    int line = 1 + random.nextInt(10);
+                    fromLoc = new LocationRange(new Location(line, 1 + random.nextInt(3)), new Location(line + random.nextInt(2), 1 + random.nextInt(3)));
+                }
+                int toLine = 1 + random.nextInt(10);
+                LocationRange toLoc = new LocationRange(new Location(toLine, 1), new Location(toLine, 1 + random.nextInt(3)));
+                String msg = msgs[random.nextInt(msgs.length)];
+                FileDiff fd = random.nextBoolean() ? new FileDiffChange(msg, fromLoc, toLoc) : new FileDiffAdd(msg, fromLoc, toLoc);
+                diffs.add(fd);
+                set.add(fd);
+            }
+
+            List<FileDiff> expected = new ArrayList<FileDiff>(set);
+            List<FileDiff> actual = toList(diffs);
+            assertEquals(expected.size(), actual.size());
+            for (int idx = 0; idx < expected.size(); ++idx) {
+                assertSame("trial " + trial + ", index " + idx, expected.get(idx), actual.get(idx));
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.incava.analysis;
+
+import java.util.List;
+import junit.framework.TestCase;
+
+public class TestMoves extends TestCase {
+    public TestMoves(String name) {
+        super(name);
+    }
+
+    public Moves.Item item(String name, long fingerprint, String container, int line) {
+        return new Moves.Item("method", name, fingerprint, container, container + ".java", line);
+    }
+
+    public void testNoneAdded() {
+        Moves moves = new Moves();
+        moves.removed(item("foo()", 1L, "A", 3));
+        assertTrue(moves.isEmpty());
+        assertEquals(0, moves.getMoves().size());
+    }
+
+    public void testMoved() {
+        Moves moves = new Moves();
+        moves.removed(item("foo()", 1L, "A", 3));
+        moves.removed(item("bar()", 2L, "A", 7));
+        moves.added(item("foo()", 1L, "B", 11));
+        List<Moves.Move> list = moves.getMoves();
+        assertEquals(1, list.size());
+        Moves.Move move = list.get(0);
+        assertEquals(3, move.getFrom().getLine());
+        assertEquals("B.java", move.getTo().getFileName());
+        assertEquals(11, move.getTo().getLine());
+        assertFalse(move.isChanged());
+        assertEquals("method foo() moved from A to B", move.getMessage());
+    }
+
+    public void testMovedAndChanged() {
+        Moves moves = new Moves();
+        moves.removed(item("foo()", 1L, "A", 3));
+        moves.added(item("foo()", 2L, "B", 11));
+        List<Moves.Move> list = moves.getMoves();
+        assertEquals(1, list.size());
+        assertTrue(list.get(0).isChanged());
+        assertEquals("method foo() moved from A to B, and changed", list.get(0).getMessage());
+    }
+
+    public void testSameFingerprintPreferred() {
+        Moves moves = new Moves();
+        moves.removed(item("foo()", 1L, "A", 3));
+        moves.removed(item("foo()", 2L, "C", 5));
+        moves.added(item("foo()", 2L, "B", 11));
+        moves.added(item("foo()", 1L, "D", 13));
+        List<Moves.Move> list = moves.getMoves();
+        assertEquals(2, list.size());
+        assertEquals(5, list.get(0).getFrom().getLine());
+        assertEquals(3, list.get(1).getFrom().getLine());
+        assertFalse(list.get(0).isChanged());
+        assertFalse(list.get(1).isChanged());
+    }
+
+    public void testEachRemovedMovedOnce() {
+        Moves moves = new Moves();
+        moves.removed(item("foo()", 1L, "A", 3));
+        moves.added(item("foo()", 1L, "B", 11));
+        moves.added(item("foo()", 1L, "C", 13));
+        assertEquals(1, moves.getMoves().size());
+    }
+
+    public void testAddedFromOther() {
+        Moves moves = new Moves();
+        moves.removed(item("foo()", 1L, "A", 3));
+        Moves other = new Moves();
+        other.added(item("foo()", 1L, "B", 11));
+        moves.add(other);
+        assertEquals(1, moves.getMoves().size());
+    }
+}
@@ -58,11 +58,11 @@ public abstract class OutputContextTest extends OutputTest {
 
         List<String> expected = new ArrayList<String>();
         expected.add("- <=> -");
-        expected.add("3,4d3 code removed in Test()");
+        expected.add("3d3 code removed in Test()");
         expected.add("  class Test {");
         expected.add("      Test() { ");
-        expected.add("!         int " + adorn("j = 0;", true));
-        expected.add("! " + adorn("        int", true) + " i = -1;");
+        expected.add("!         " + adorn("int j = 0;", true));
+        expected.add("          int i = -1;");
         expected.add("      }");
         expected.add("  }");
         expected.add("");
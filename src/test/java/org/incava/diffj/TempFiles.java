@@ -0,0 +1,66 @@
+package org.incava.diffj;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * A temporary directory, with files written to it by tests, and deleted when
+ * the test is done.
+ */
+public class TempFiles {
+    private final File dir;
+
+    public TempFiles() throws IOException {
+        dir = File.createTempFile("diffj", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    public File getDirectory() {
+        return dir;
+    }
+
+    public File getFile(String path) {
+        return new File(dir, path);
+    }
+
+    /**
+     * Writes the contents to the file at the path, relative to the directory,
+     * creating its parent directories.
+     */
+    public File write(String path, byte[] contents) throws IOException {
+        File file = getFile(path);
+        file.getParentFile().mkdirs();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(contents);
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    }
+
+    public File write(String path, String contents) throws IOException {
+        return write(path, contents.getBytes("UTF-8"));
+    }
+
+    public File write(String path, Lines lines) throws IOException {
+        return write(path, lines.toString());
+    }
+
+    public void delete() {
+        delete(dir);
+    }
+
+    protected void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
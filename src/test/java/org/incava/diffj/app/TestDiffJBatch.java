@@ -0,0 +1,168 @@
+package org.incava.diffj.app;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.incava.analysis.ReportStats;
+import org.incava.diffj.Lines;
+import org.incava.diffj.TempFiles;
+
+public class TestDiffJBatch extends TestCase {
+    private TempFiles files;
+
+    public TestDiffJBatch(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new TempFiles();
+
+        // each pair has two differences:
+        for (int pi = 1; pi <= 3; ++pi) {
+            files.write("From" + pi + ".java", new Lines("class Test" + pi + " {",
+                                                         "    int f() { return 1; }",
+                                                         "",
+                                                         "    int g() { return 1; }",
+                                                         "}"));
+            files.write("To" + pi + ".java", new Lines("class Test" + pi + " {",
+                                                       "    int f() { return 2; }",
+                                                       "",
+                                                       "    int g() { return 2; }",
+                                                       "}"));
+        }
+    }
+
+    protected void tearDown() throws Exception {
+        files.delete();
+        super.tearDown();
+    }
+
+    public String path(String name) {
+        return files.getFile(name).getPath();
+    }
+
+    public String pair(int pi) {
+        return path("From" + pi + ".java") + " " + path("To" + pi + ".java");
+    }
+
+    /**
+     * Returns the exit value, output and errors of the batch run with the
+     * arguments.
+     */
+    public String[] runBatch(String batch, String ... args) throws IOException {
+        Options opts = new Options();
+        opts.process(Arrays.asList(args));
+        StringWriter out = new StringWriter();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        BufferedReader reader = new BufferedReader(new StringReader(batch));
+        int exitValue = DiffJ.processBatch(reader, opts, new ReportStats(), out, new PrintStream(err, true, "UTF-8"));
+        return new String[] { String.valueOf(exitValue), out.toString(), err.toString("UTF-8") };
+    }
+
+    /**
+     * Returns the exit value, output and errors of the arguments run as a
+     * separate invocation.
+     */
+    public String[] runSeparate(String ... args) throws IOException {
+        Options opts = new Options();
+        List<String> names = opts.process(Arrays.asList(args));
+        StringWriter out = new StringWriter();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitValue = DiffJ.process(opts, names, out, new PrintStream(err, true, "UTF-8"), null, null);
+        return new String[] { String.valueOf(exitValue), out.toString(), err.toString("UTF-8") };
+    }
+
+    public int countChanges(String output) {
+        int count = 0;
+        for (String line : output.split("\n")) {
+            if (line.contains("code changed in")) {
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    public void testMaxDifferencesForWholeBatch() throws IOException {
+        String batch = pair(1) + "\n" + pair(2) + "\n" + pair(3) + "\n";
+        assertEquals(6, countChanges(runBatch(batch, "--brief")[1]));
+
+        // reached in the second pair, and the third is not compared:
+        String[] actual = runBatch(batch, "--brief", "--max-diffs", "3");
+        assertEquals("1", actual[0]);
+        assertEquals(2, countChanges(actual[1]));
+        assertFalse(actual[1], actual[1].contains("To3.java"));
+    }
+
+    public void testSplitLine() {
+        assertEquals(Arrays.asList("a", "b", "c"), DiffJ.splitLine("a b\tc"));
+        assertEquals(Arrays.asList("a", "b"), DiffJ.splitLine("  a   b  "));
+        assertEquals(Arrays.asList("a b", "c d", "e"), DiffJ.splitLine("\"a b\" 'c d' e"));
+        assertEquals(Arrays.asList("ab c"), DiffJ.splitLine("a\"b c\""));
+        assertEquals(Arrays.asList("a b"), DiffJ.splitLine("a\\ b"));
+        assertEquals(Arrays.asList("a\"b", "c\\d"), DiffJ.splitLine("\"a\\\"b\" 'c\\d'"));
+        assertEquals(Arrays.asList(""), DiffJ.splitLine("''"));
+    }
+
+    public void testSplitEmptyLine() {
+        assertEquals(Arrays.asList(), DiffJ.splitLine(""));
+        assertEquals(Arrays.asList(), DiffJ.splitLine("   \t "));
+    }
+
+    public void testSameAsSeparateRuns() throws IOException {
+        files.write("Same.java", new Lines("class Same {",
+                                           "}"));
+        String[] first = runSeparate(path("From1.java"), path("To1.java"));
+        String[] second = runSeparate(path("Same.java"), path("Same.java"));
+        assertEquals("1", first[0]);
+        assertEquals("0", second[0]);
+
+        String[] actual = runBatch(pair(1) + "\n" + path("Same.java") + " " + path("Same.java") + "\n");
+        assertEquals("1", actual[0]);
+        assertEquals(first[1] + second[1], actual[1]);
+
+        // the highest exit value, regardless of order:
+        actual = runBatch(path("Same.java") + " " + path("Same.java") + "\n" + pair(1) + "\n");
+        assertEquals("1", actual[0]);
+        actual = runBatch(path("Same.java") + " " + path("Same.java") + "\n");
+        assertEquals("0", actual[0]);
+        assertEquals("", actual[1]);
+    }
+
+    public void testLabels() throws IOException {
+        String[] expected = runSeparate("-L", "old A", "-L", "new A", path("From1.java"), path("To1.java"));
+        String[] actual = runBatch("-L 'old A' -L \"new A\" -u " + pair(1) + "\n");
+        assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+        assertTrue(actual[1], actual[1].startsWith("old A <=> new A"));
+
+        // only the from-label:
+        actual = runBatch("-L old " + pair(1) + "\n");
+        assertTrue(actual[1], actual[1].startsWith("old <=> " + path("To1.java")));
+    }
+
+    public void testCommentsAndBlankLinesSkipped() throws IOException {
+        String batch = "# the first pair\n" +
+            "\n" +
+            "   \n" +
+            "#" + pair(2) + "\n" +
+            pair(1) + "\n" +
+            "  # " + pair(3) + "\n";
+        String[] actual = runBatch(batch, "--brief");
+        assertEquals("", actual[2]);
+        assertEquals(runSeparate("--brief", path("From1.java"), path("To1.java"))[1], actual[1]);
+    }
+
+    public void testErrorInPair() throws IOException {
+        String batch = path("NoSuch.java") + " " + path("To1.java") + "\n" + pair(1) + "\n";
+        String[] actual = runBatch(batch, "--brief");
+        assertEquals("1", actual[0]);
+        assertTrue(actual[2], actual[2].contains("NoSuch.java does not exist"));
+        assertEquals(2, countChanges(actual[1]));
+    }
+}
@@ -0,0 +1,193 @@
+package org.incava.diffj.app;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.incava.diffj.Lines;
+import org.incava.diffj.TempFiles;
+
+public class TestDiffJDaemon extends TestCase {
+    private TempFiles files;
+    private String userHome;
+    private DiffJDaemon daemon;
+    private ServerSocket server;
+    private Thread acceptor;
+
+    public TestDiffJDaemon(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new TempFiles();
+        // the secret file is written here:
+        userHome = System.getProperty("user.home");
+        System.setProperty("user.home", files.getDirectory().getPath());
+
+        files.write("From.java", new Lines("class Test {",
+                                           "    int f(int x) { return x + 1; }",
+                                           "}"));
+        files.write("To.java", new Lines("class Test {",
+                                         "    int f(int x) { return x + 2; }",
+                                         "}"));
+
+        daemon = new DiffJDaemon(0);
+        daemon.setTimeout(500);
+        server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        daemon.writeSecret(DiffJDaemon.getSecretFile(server.getLocalPort()));
+        acceptor = new Thread() {
+                public void run() {
+                    try {
+                        daemon.accept(server);
+                    }
+                    catch (IOException ioe) {
+                        // the socket was closed
+                    }
+                }
+            };
+        acceptor.start();
+    }
+
+    protected void tearDown() throws Exception {
+        server.close();
+        acceptor.join();
+        daemon.stop();
+        System.setProperty("user.home", userHome);
+        files.delete();
+        super.tearDown();
+    }
+
+    public String path(String name) {
+        return files.getFile(name).getPath();
+    }
+
+    /**
+     * Returns the exit value, output and errors of the arguments run on the
+     * daemon.
+     */
+    public String[] runClient(String ... args) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitValue = new DiffJClient(server.getLocalPort()).run(args, new PrintStream(out, true, "UTF-8"), new PrintStream(err, true, "UTF-8"));
+        return new String[] { String.valueOf(exitValue), out.toString("UTF-8"), err.toString("UTF-8") };
+    }
+
+    /**
+     * Returns the exit value, output and errors of the arguments run in this
+     * process.
+     */
+    public String[] runLocal(String ... args) throws IOException {
+        Options opts = new Options();
+        List<String> names = opts.process(Arrays.asList(args));
+        StringWriter out = new StringWriter();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitValue = DiffJ.process(opts, names, out, new PrintStream(err, true, "UTF-8"), null, null);
+        return new String[] { String.valueOf(exitValue), out.toString(), err.toString("UTF-8") };
+    }
+
+    /**
+     * Sends the secret frame, with the given length and value, returning the
+     * connected socket.
+     */
+    public Socket sendSecret(int length, String value) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeByte(DiffJDaemon.SECRET);
+        out.writeInt(length);
+        out.write(value.getBytes("UTF-8"));
+        out.flush();
+        return socket;
+    }
+
+    public void testRoundTrip() throws IOException {
+        String[] expected = runLocal("--brief", path("From.java"), path("To.java"));
+        String[] actual = runClient("--brief", path("From.java"), path("To.java"));
+        assertEquals("1", expected[0]);
+        assertTrue(expected[1], expected[1].contains("code changed in f(int)"));
+        assertEquals(Arrays.asList(expected), Arrays.asList(actual));
+    }
+
+    public void testNoDifferences() throws IOException {
+        String[] actual = runClient(path("From.java"), path("From.java"));
+        assertEquals("0", actual[0]);
+        assertEquals("", actual[1]);
+    }
+
+    public void testWrongSecret() throws IOException {
+        String secret = DiffJDaemon.readSecret(server.getLocalPort());
+        char[] wrong = secret.toCharArray();
+        wrong[0] = wrong[0] == '0' ? '1' : '0';
+
+        Socket socket = sendSecret(wrong.length, new String(wrong));
+        try {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            assertEquals(DiffJDaemon.STDERR, in.readByte());
+            assertTrue(DiffJDaemon.readFrame(in).contains("does not have the secret"));
+            assertEquals(DiffJDaemon.EXIT, in.readByte());
+            assertEquals(1, in.readInt());
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    public void testSecretFrameTooLong() throws IOException {
+        // more than the secret is not read, nor allocated:
+        Socket socket = sendSecret(Integer.MAX_VALUE, "");
+        try {
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        finally {
+            socket.close();
+        }
+
+        // the daemon still serves other requests:
+        assertEquals("0", runClient(path("From.java"), path("From.java"))[0]);
+    }
+
+    public void testSecretFrameNegativeLength() throws IOException {
+        Socket socket = sendSecret(-1, "");
+        try {
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    public void testIdleClientTimesOut() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        try {
+            socket.setSoTimeout(10 * 1000);
+            // closed by the daemon after its timeout, well before this one:
+            assertEquals(-1, socket.getInputStream().read());
+        }
+        finally {
+            socket.close();
+        }
+    }
+
+    public void testGlobalOptionRejected() throws IOException {
+        String[] actual = runClient("--tabwidth", "3", path("From.java"), path("To.java"));
+        assertEquals("1", actual[0]);
+        assertEquals("", actual[1]);
+        assertTrue(actual[2], actual[2].contains("must be given when starting the daemon: tabwidth"));
+    }
+
+    public void testCacheDirRejected() throws IOException {
+        String[] actual = runClient("--cache-dir", path("cache"), path("From.java"), path("To.java"));
+        assertEquals("1", actual[0]);
+        assertTrue(actual[2], actual[2].contains("cache-dir"));
+        assertFalse(files.getFile("cache").exists());
+    }
+}
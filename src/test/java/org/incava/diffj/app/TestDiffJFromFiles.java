@@ -0,0 +1,112 @@
+package org.incava.diffj.app;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import net.sourceforge.pmd.ast.ASTCompilationUnit;
+import org.incava.diffj.Lines;
+import org.incava.diffj.TempFiles;
+import org.incava.diffj.io.JavaFile;
+import org.incava.diffj.lang.DiffJException;
+import org.incava.java.Java;
+
+/**
+ * Tests comparing several from-files with one to-file.
+ */
+public class TestDiffJFromFiles extends TestCase {
+    private TempFiles files;
+    private List<String> fromNames;
+
+    public TestDiffJFromFiles(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new TempFiles();
+
+        // each from-file has a different change, and the first is the
+        // largest, so it is likely to be compared last:
+        fromNames = new ArrayList<String>();
+        for (int fi = 0; fi < 3; ++fi) {
+            StringBuilder sb = new StringBuilder("class Test {\n");
+            sb.append("    int f() { return " + fi + "; }\n");
+            int nMethods = fi == 0 ? 200 : 1;
+            for (int mi = 0; mi < nMethods; ++mi) {
+                sb.append("    int g" + mi + "() { return " + mi + "; }\n");
+            }
+            sb.append("}\n");
+            fromNames.add(files.write("From" + fi + ".java", sb.toString()).getPath());
+        }
+        files.write("To.java", new Lines("class Test {",
+                                         "    int f() { return 3; }",
+                                         "",
+                                         "    int g0() { return 0; }",
+                                         "}"));
+    }
+
+    protected void tearDown() throws Exception {
+        files.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Returns the to-file, which counts the number of times that it is
+     * parsed.
+     */
+    public JavaFile createToFile(final AtomicInteger nParsed) throws DiffJException {
+        return new JavaFile(files.getFile("To.java"), null, Java.SOURCE_1_5) {
+            public static final long serialVersionUID = 1L;
+
+            protected ASTCompilationUnit parse() throws DiffJException {
+                nParsed.incrementAndGet();
+                return super.parse();
+            }
+        };
+    }
+
+    public DiffJ createDiffJ(StringWriter out, ByteArrayOutputStream err, int jobs) throws IOException {
+        return new DiffJ(out, new PrintStream(err, true, "UTF-8"), true, false, false, false, jobs, null, Java.SOURCE_1_5, null, Java.SOURCE_1_5);
+    }
+
+    public void testInOrderOfNames() throws Exception {
+        AtomicInteger nParsed = new AtomicInteger();
+        StringWriter out = new StringWriter();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        DiffJ diffj = createDiffJ(out, err, 4);
+        diffj.compareElements(fromNames, createToFile(nParsed));
+
+        assertEquals("", err.toString("UTF-8"));
+        assertEquals(1, diffj.getExitValue());
+        assertEquals(1, nParsed.get());
+
+        String output = out.toString();
+        int prevPos = -1;
+        for (String fromName : fromNames) {
+            int pos = output.indexOf(fromName + " <=> ");
+            assertTrue(output, pos > prevPos);
+            prevPos = pos;
+        }
+    }
+
+    public void testSameAsSerial() throws Exception {
+        StringWriter serialOut = new StringWriter();
+        DiffJ serial = createDiffJ(serialOut, new ByteArrayOutputStream(), 1);
+        JavaFile toFile = createToFile(new AtomicInteger());
+        for (String fromName : fromNames) {
+            assertTrue(serial.compareElements(fromName, toFile));
+        }
+
+        StringWriter parallelOut = new StringWriter();
+        DiffJ parallel = createDiffJ(parallelOut, new ByteArrayOutputStream(), 4);
+        parallel.compareElements(fromNames, createToFile(new AtomicInteger()));
+
+        assertEquals(serialOut.toString(), parallelOut.toString());
+        assertEquals(serial.getExitValue(), parallel.getExitValue());
+    }
+}
@@ -0,0 +1,74 @@
+package org.incava.diffj.code;
+
+import junit.framework.TestCase;
+import net.sourceforge.pmd.ast.JavaParserConstants;
+import net.sourceforge.pmd.ast.Token;
+
+public class TestCode extends TestCase {
+    public TestCode(String name) {
+        super(name);
+    }
+
+    /**
+     * Returns the first of the tokens, linked as by the parser, with the last
+     * followed by a semicolon that is not part of them.
+     */
+    public Token tokens(String text) {
+        Token first = null;
+        Token prev = null;
+        for (String image : (text + " ;").split(" ")) {
+            Token tk = new Token();
+            tk.kind = image.equals(";") ? JavaParserConstants.SEMICOLON : JavaParserConstants.IDENTIFIER;
+            tk.image = image;
+            if (prev == null) {
+                first = tk;
+            }
+            else {
+                prev.next = tk;
+            }
+            prev = tk;
+        }
+        return first;
+    }
+
+    public Token last(Token first, int count) {
+        Token tk = first;
+        for (int idx = 1; idx < count; ++idx) {
+            tk = tk.next;
+        }
+        return tk;
+    }
+
+    public void testSameTokens() {
+        Token from = tokens("a b c");
+        Token to = tokens("a b c");
+        assertTrue(Code.isSameTokens(from, last(from, 3), to, last(to, 3)));
+        assertEquals(Code.getFingerprint(from, last(from, 3)), Code.getFingerprint(to, last(to, 3)));
+    }
+
+    public void testDifferentImage() {
+        Token from = tokens("a b c");
+        Token to = tokens("a x c");
+        assertFalse(Code.isSameTokens(from, last(from, 3), to, last(to, 3)));
+    }
+
+    public void testDifferentKind() {
+        Token from = tokens("a b c");
+        Token to = tokens("a b c");
+        to.next.kind = JavaParserConstants.STRING_LITERAL;
+        assertFalse(Code.isSameTokens(from, last(from, 3), to, last(to, 3)));
+    }
+
+    public void testDifferentLength() {
+        Token from = tokens("a b c");
+        Token to = tokens("a b c");
+        assertFalse(Code.isSameTokens(from, last(from, 2), to, last(to, 3)));
+        assertFalse(Code.isSameTokens(from, last(from, 3), to, last(to, 2)));
+    }
+
+    public void testStopsAtLast() {
+        Token from = tokens("a b c");
+        Token to = tokens("a b d");
+        assertTrue(Code.isSameTokens(from, last(from, 2), to, last(to, 2)));
+    }
+}
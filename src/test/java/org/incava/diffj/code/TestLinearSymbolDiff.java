@@ -0,0 +1,32 @@
+package org.incava.diffj.code;
+
+import java.util.List;
+import org.incava.ijdk.util.diff.Difference;
+
+public class TestLinearSymbolDiff extends TestSymbolDiff {
+    public TestLinearSymbolDiff(String name) {
+        super(name);
+    }
+
+    public List<Difference> execute(int[] a, int[] b) {
+        return new LinearSymbolDiff(a, b, 10).execute();
+    }
+
+    public void testRepeated() {
+        // aligned differently, but with as many matches:
+        List<Difference> diffs = execute(new int[] { 0, 1, 0, 1 }, new int[] { 1, 0, 1, 0 });
+        assertEquals(2, diffs.size());
+    }
+
+    public void testLong() {
+        int[] a = new int[50000];
+        int[] b = new int[50000];
+        for (int idx = 0; idx < a.length; ++idx) {
+            a[idx] = idx % 7;
+            b[idx] = idx == 25000 ? 9 : idx % 7;
+        }
+        List<Difference> diffs = execute(a, b);
+        assertEquals(1, diffs.size());
+        assertDifference(25000, 25000, 25000, 25000, diffs.get(0));
+    }
+}
@@ -0,0 +1,63 @@
+package org.incava.diffj.code;
+
+import java.util.List;
+import junit.framework.TestCase;
+import org.incava.ijdk.util.diff.Difference;
+
+public class TestSymbolDiff extends TestCase {
+    public TestSymbolDiff(String name) {
+        super(name);
+    }
+
+    public List<Difference> execute(int[] a, int[] b) {
+        return new SymbolDiff(a, b, 10).execute();
+    }
+
+    public void assertDifference(int delStart, int delEnd, int addStart, int addEnd, Difference diff) {
+        assertEquals("deleted start", delStart, diff.getDeletedStart());
+        assertEquals("deleted end",   delEnd,   diff.getDeletedEnd());
+        assertEquals("added start",   addStart, diff.getAddedStart());
+        assertEquals("added end",     addEnd,   diff.getAddedEnd());
+    }
+
+    public void testSame() {
+        assertEquals(0, execute(new int[] { 5, 5, 5 }, new int[] { 5, 5, 5 }).size());
+    }
+
+    public void testDeleted() {
+        List<Difference> diffs = execute(new int[] { 0, 1, 2 }, new int[] { 0, 2 });
+        assertEquals(1, diffs.size());
+        assertDifference(1, 1, 1, Difference.NONE, diffs.get(0));
+    }
+
+    public void testAdded() {
+        List<Difference> diffs = execute(new int[] { 0, 2 }, new int[] { 0, 1, 2 });
+        assertEquals(1, diffs.size());
+        assertDifference(1, Difference.NONE, 1, 1, diffs.get(0));
+    }
+
+    public void testChanged() {
+        List<Difference> diffs = execute(new int[] { 0, 1, 2 }, new int[] { 0, 3, 2 });
+        assertEquals(1, diffs.size());
+        assertDifference(1, 1, 1, 1, diffs.get(0));
+    }
+
+    public void testFromEmpty() {
+        List<Difference> diffs = execute(new int[0], new int[] { 1, 2 });
+        assertEquals(1, diffs.size());
+        assertDifference(0, Difference.NONE, 0, 1, diffs.get(0));
+    }
+
+    public void testToEmpty() {
+        List<Difference> diffs = execute(new int[] { 1, 2 }, new int[0]);
+        assertEquals(1, diffs.size());
+        assertDifference(0, 1, 0, Difference.NONE, diffs.get(0));
+    }
+
+    public void testRepeated() {
+        List<Difference> diffs = execute(new int[] { 0, 1, 0, 1 }, new int[] { 1, 0, 1, 0 });
+        assertEquals(2, diffs.size());
+        assertDifference(0, 0, 0, Difference.NONE, diffs.get(0));
+        assertDifference(4, Difference.NONE, 3, 3, diffs.get(1));
+    }
+}
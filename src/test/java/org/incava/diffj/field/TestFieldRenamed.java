@@ -0,0 +1,62 @@
+package org.incava.diffj.field;
+
+import org.incava.analysis.FileDiffChange;
+import org.incava.diffj.*;
+import org.incava.diffj.type.Renames;
+import static org.incava.diffj.field.Field.*;
+import static org.incava.diffj.field.Variable.*;
+
+public class TestFieldRenamed extends ItemsTest {
+    protected final static String[] FIELD_MSGS = new String[] {
+        FIELD_REMOVED,
+        null,
+        FIELD_ADDED,
+    };
+
+    public TestFieldRenamed(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Renames.detectRenames = true;
+    }
+
+    protected void tearDown() throws Exception {
+        Renames.detectRenames = false;
+        super.tearDown();
+    }
+
+    /**
+     * Returns the field, the type of which differs between the tests, since
+     * fields with the same type are matched by it, and not renamed.
+     */
+    public Lines limit(String access, String type, String name) {
+        return new Lines("class Test {",
+                         "    " + access + " static final " + type + " " + name + " = Integer.parseInt(System.getProperty(\"limit\", \"10\"));",
+                         "}");
+    }
+
+    public void testRenamed() {
+        evaluate(limit("private", "int", "LIMIT"),
+                 limit("private", "long", "MAX"),
+                 new FileDiffChange(getFromToMessage(VARIABLE_TYPE_CHANGED, "LIMIT", "int", "long"), loc(2, 26), loc(2, 28), loc(2, 26), loc(2, 29)),
+                 new FileDiffChange(getFromToMessage(FIELD_RENAMED, "LIMIT", "MAX"), loc(2, 30), loc(2, 34), loc(2, 31), loc(2, 33)));
+    }
+
+    public void testRenamedAndAccessChanged() {
+        evaluate(limit("private", "int", "LIMIT"),
+                 limit("public", "long", "MAX"),
+                 makeAccessRef("private", "public", loc(2, 5), loc(2, 5)),
+                 new FileDiffChange(getFromToMessage(VARIABLE_TYPE_CHANGED, "LIMIT", "int", "long"), loc(2, 26), loc(2, 28), loc(2, 25), loc(2, 28)),
+                 new FileDiffChange(getFromToMessage(FIELD_RENAMED, "LIMIT", "MAX"), loc(2, 30), loc(2, 34), loc(2, 30), loc(2, 32)));
+    }
+
+    public void testNotRenamedWhenDisabled() {
+        Renames.detectRenames = false;
+        evaluate(limit("private", "int", "LIMIT"),
+                 limit("private", "long", "MAX"),
+                 makeRef(null, "MAX", FIELD_MSGS, locrg(1, 1, 3, 1), locrg(2, 26, 2, 88)),
+                 makeRef("LIMIT", null, FIELD_MSGS, locrg(2, 26, 2, 89), locrg(1, 1, 3, 1)));
+    }
+}
@@ -55,7 +55,7 @@ public class TestCtorCode extends ItemsTest {
                            "    }",
                            "}"),
                  
-                 makeCodeAddedRef(CODE_ADDED, "Test()", loc(2, 18), loc(2, 18), loc(4, 13), loc(5, 11)));
+                 makeCodeAddedRef(CODE_ADDED, "Test()", loc(2, 14), loc(2, 16), loc(4, 9), loc(4, 18)));
     }
 
     public void testCodeAddedOwnLine() {
@@ -93,7 +93,7 @@ public class TestCtorCode extends ItemsTest {
                            "    Test() { int i = -1; }",
                            "}"),
                  
-                 makeCodeDeletedRef(CODE_REMOVED, "Test()", loc(3, 13), loc(4, 11), loc(3, 18), loc(3, 18)));
+                 makeCodeDeletedRef(CODE_REMOVED, "Test()", loc(3, 9), loc(3, 18), loc(3, 14), loc(3, 16)));
     }
     
     public void testCodeInsertedAndChanged() {
@@ -0,0 +1,86 @@
+package org.incava.diffj.function;
+
+import org.incava.analysis.FileDiffChange;
+import org.incava.diffj.*;
+import org.incava.diffj.type.Renames;
+import static org.incava.diffj.code.Code.*;
+import static org.incava.diffj.function.Method.*;
+
+public class TestMethodRenamed extends ItemsTest {
+    public TestMethodRenamed(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Renames.detectRenames = true;
+    }
+
+    protected void tearDown() throws Exception {
+        Renames.detectRenames = false;
+        super.tearDown();
+    }
+
+    public Lines sumOfSquares(String name, String result) {
+        return new Lines("class Test {",
+                         "    int " + name + "(int[] values, int count) {",
+                         "        int sum = 0;",
+                         "        for (int i = 0; i < count; ++i) {",
+                         "            if (values[i] > 0) {",
+                         "                sum += values[i] * values[i];",
+                         "            }",
+                         "        }",
+                         "        return " + result + ";",
+                         "    }",
+                         "}");
+    }
+
+    public void testRenamed() {
+        evaluate(sumOfSquares("sum", "sum"),
+                 sumOfSquares("sumOfSquares", "sum"),
+                 new FileDiffChange(getFromToMessage(METHOD_RENAMED, "sum", "sumOfSquares"), loc(2, 9), loc(2, 11), loc(2, 9), loc(2, 20)));
+    }
+
+    public void testRenamedAndCodeChanged() {
+        evaluate(sumOfSquares("sum", "sum"),
+                 sumOfSquares("sumOfSquares", "count"),
+                 new FileDiffChange(getFromToMessage(METHOD_RENAMED, "sum", "sumOfSquares"), loc(2, 9), loc(2, 11), loc(2, 9), loc(2, 20)),
+                 makeCodeChangedRef(CODE_CHANGED, "sum(int[], int)", loc(9, 16), loc(9, 18), loc(9, 16), loc(9, 20)));
+    }
+
+    public void testOthersAddedAndRemoved() {
+        evaluate(new Lines("class Test {",
+                           "    void foo() {}",
+                           "    int sum(int[] values, int count) {",
+                           "        int sum = 0;",
+                           "        for (int i = 0; i < count; ++i) {",
+                           "            sum += values[i] * values[i];",
+                           "        }",
+                           "        return sum;",
+                           "    }",
+                           "}"),
+
+                 new Lines("class Test {",
+                           "    int sumOfSquares(int[] values, int count) {",
+                           "        int sum = 0;",
+                           "        for (int i = 0; i < count; ++i) {",
+                           "            sum += values[i] * values[i];",
+                           "        }",
+                           "        return sum;",
+                           "    }",
+                           "    void bar() {}",
+                           "}"),
+
+                 makeMethodRef(null, "bar()", loc(1, 1), loc(10, 1), loc(9, 5), loc(9, 17)),
+                 makeMethodRef("foo()", null, loc(2, 5), loc(2, 17), loc(1, 1), loc(10, 1)),
+                 new FileDiffChange(getFromToMessage(METHOD_RENAMED, "sum", "sumOfSquares"), loc(3, 9), loc(3, 11), loc(2, 9), loc(2, 20)));
+    }
+
+    public void testNotRenamedWhenDisabled() {
+        Renames.detectRenames = false;
+        evaluate(sumOfSquares("sum", "sum"),
+                 sumOfSquares("sumOfSquares", "sum"),
+                 makeMethodRef(null, "sumOfSquares(int[], int)", loc(1, 1), loc(11, 1), loc(2, 5), loc(10, 5)),
+                 makeMethodRef("sum(int[], int)", null, loc(2, 5), loc(10, 5), loc(1, 1), loc(11, 1)));
+    }
+}
@@ -0,0 +1,94 @@
+package org.incava.diffj.function;
+
+import java.io.StringWriter;
+import java.util.Arrays;
+import org.incava.analysis.BriefReport;
+import org.incava.analysis.DiffLimit;
+import org.incava.analysis.LimitReachedException;
+import org.incava.analysis.Report;
+import org.incava.diffj.DiffJTest;
+import org.incava.diffj.io.JavaFile;
+import org.incava.diffj.lang.Parallel;
+import org.incava.diffj.type.Items;
+
+public class TestMethodsInParallel extends DiffJTest {
+    public static final int NUM_METHODS = 3 * Items.MIN_PARALLEL_MATCHES;
+
+    public TestMethodsInParallel(String name) {
+        super(name);
+    }
+
+    protected void tearDown() throws Exception {
+        Parallel.setThreads(1);
+        super.tearDown();
+    }
+
+    /**
+     * Returns a class with the methods, each returning its number plus the
+     * increment, and with a parameter in every third one.
+     */
+    public String createClass(int increment) {
+        StringBuilder sb = new StringBuilder("class Test {\n");
+        for (int mi = 0; mi < NUM_METHODS; ++mi) {
+            String param = mi % 3 == 0 && increment > 0 ? "int x" : "";
+            sb.append("    int m" + mi + "(" + param + ") {\n");
+            sb.append("        return " + mi + " + " + increment + ";\n");
+            sb.append("    }\n");
+            sb.append("\n");
+        }
+        sb.append("}\n");
+        return sb.toString();
+    }
+
+    public String[] getOutput(int threads) {
+        Parallel.setThreads(threads);
+        return getOutput(createClass(0), createClass(1));
+    }
+
+    public void testSameOutputAsSerial() {
+        String[] serial = getOutput(1);
+        String[] parallel = getOutput(4);
+        assertEquals(Arrays.asList(serial), Arrays.asList(parallel));
+
+        int nChanged = 0;
+        int nParams = 0;
+        for (String line : serial) {
+            if (line.contains("code changed in m")) {
+                ++nChanged;
+            }
+            else if (line.contains("parameter added")) {
+                ++nParams;
+            }
+        }
+        assertEquals(NUM_METHODS, nChanged);
+        assertEquals(NUM_METHODS / 3, nParams);
+    }
+
+    public void testLimitSharedWithThreads() throws Exception {
+        Parallel.setThreads(4);
+        Report report = new BriefReport(new StringWriter());
+        final Thread testThread = Thread.currentThread();
+        final boolean[] addedInOtherThread = new boolean[] { false };
+        DiffLimit limit = new DiffLimit(5) {
+                public void added() {
+                    if (Thread.currentThread() != testThread) {
+                        addedInOtherThread[0] = true;
+                    }
+                    super.added();
+                }
+            };
+        report.setLimit(limit);
+
+        JavaFile fromFile = new JavaFile("-", createClass(0), getSource());
+        JavaFile toFile = new JavaFile("-", createClass(1), getSource());
+        try {
+            JavaFile.compare(report, fromFile, toFile);
+            fail("expected a LimitReachedException");
+        }
+        catch (LimitReachedException lre) {
+            // reached in the threads comparing the methods, which stop then:
+            assertTrue(limit.isReached());
+            assertTrue(addedInOtherThread[0]);
+        }
+    }
+}
@@ -0,0 +1,371 @@
+package org.incava.diffj.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import org.incava.diffj.TempFiles;
+
+/**
+ * A bare git repository written by tests, without git itself: objects are
+ * added, then written either loose or into a pack file, in which blobs can be
+ * stored as deltas of others, by offset or by reference.
+ */
+public class GitFixture {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final TempFiles files;
+    private final String gitDir;
+    private final Map<String, GitObject> pending;
+    private final Map<String, String> deltaBases;
+    private final Map<String, Boolean> byOffset;
+    private final List<String> packedRefs;
+    private int nPacks;
+    private long time;
+
+    public GitFixture(TempFiles files, String gitDir) throws IOException {
+        this.files = files;
+        this.gitDir = gitDir;
+        this.pending = new LinkedHashMap<String, GitObject>();
+        this.deltaBases = new LinkedHashMap<String, String>();
+        this.byOffset = new LinkedHashMap<String, Boolean>();
+        this.packedRefs = new ArrayList<String>();
+        this.nPacks = 0;
+        this.time = 1000000000L;
+
+        files.getFile(gitDir + "/objects/pack").mkdirs();
+        files.getFile(gitDir + "/refs/heads").mkdirs();
+        files.getFile(gitDir + "/refs/tags").mkdirs();
+        files.write(gitDir + "/HEAD", "ref: refs/heads/master\n");
+    }
+
+    public File getDirectory() {
+        return files.getFile(gitDir);
+    }
+
+    // -------------------------------------------------------
+    // objects
+    // -------------------------------------------------------
+
+    /**
+     * Adds the object, to be written by the next {@link #writeLoose} or
+     * {@link #writePack}, returning its id.
+     */
+    public String add(int type, byte[] data) {
+        String id = getId(type, data);
+        pending.put(id, new GitObject(type, data));
+        return id;
+    }
+
+    public String blob(String text) {
+        return add(GitObject.BLOB, text.getBytes(UTF8));
+    }
+
+    /**
+     * Adds a blob, to be stored in the pack as a delta of the base blob, which
+     * is in the same pack. A delta by offset must follow its base.
+     */
+    public String deltaBlob(String baseId, String text, boolean isByOffset) {
+        String id = blob(text);
+        deltaBases.put(id, baseId);
+        byOffset.put(id, isByOffset);
+        return id;
+    }
+
+    public String tree(TreeEntry ... entries) throws IOException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        for (TreeEntry entry : entries) {
+            data.write((entry.getMode() + " " + entry.getName()).getBytes(UTF8));
+            data.write(0);
+            data.write(GitRepository.fromHex(entry.getId()));
+        }
+        return add(GitObject.TREE, data.toByteArray());
+    }
+
+    public static TreeEntry file(String name, String id) {
+        return new TreeEntry("100644", name, id);
+    }
+
+    public static TreeEntry dir(String name, String id) {
+        return new TreeEntry("40000", name, id);
+    }
+
+    public String commit(String treeId, String ... parentIds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("tree ").append(treeId).append('\n');
+        for (String parentId : parentIds) {
+            sb.append("parent ").append(parentId).append('\n');
+        }
+        String person = "Test <test@example.com> " + (time++) + " +0000\n";
+        sb.append("author ").append(person);
+        sb.append("committer ").append(person);
+        sb.append('\n').append("commit ").append(time).append('\n');
+        return add(GitObject.COMMIT, sb.toString().getBytes(UTF8));
+    }
+
+    public String tag(String name, String objectId) {
+        String text = "object " + objectId + "\n" +
+            "type commit\n" +
+            "tag " + name + "\n" +
+            "tagger Test <test@example.com> " + (time++) + " +0000\n" +
+            "\n" +
+            "tag " + name + "\n";
+        return add(GitObject.TAG, text.getBytes(UTF8));
+    }
+
+    /**
+     * Writes the pending objects as loose ones.
+     */
+    public void writeLoose() throws IOException {
+        for (Map.Entry<String, GitObject> entry : pending.entrySet()) {
+            String id = entry.getKey();
+            GitObject obj = entry.getValue();
+            ByteArrayOutputStream raw = new ByteArrayOutputStream();
+            raw.write((obj.getTypeName() + " " + obj.getData().length).getBytes(UTF8));
+            raw.write(0);
+            raw.write(obj.getData());
+            files.write(gitDir + "/objects/" + id.substring(0, 2) + "/" + id.substring(2), deflate(raw.toByteArray()));
+        }
+        clear();
+    }
+
+    /**
+     * Writes the pending objects into a new pack file, with a version 2
+     * index.
+     */
+    public void writePack() throws IOException {
+        ByteArrayOutputStream pack = new ByteArrayOutputStream();
+        writeInt(pack, 0x5041434b);     // "PACK"
+        writeInt(pack, 2);
+        writeInt(pack, pending.size());
+
+        Map<String, Long> offsets = new LinkedHashMap<String, Long>();
+        Map<String, Long> crcs = new LinkedHashMap<String, Long>();
+        for (Map.Entry<String, GitObject> entry : pending.entrySet()) {
+            String id = entry.getKey();
+            GitObject obj = entry.getValue();
+            long offset = pack.size();
+
+            ByteArrayOutputStream packed = new ByteArrayOutputStream();
+            String baseId = deltaBases.get(id);
+            if (baseId == null) {
+                writeHeader(packed, obj.getType(), obj.getData().length);
+                packed.write(deflate(obj.getData()));
+            }
+            else {
+                byte[] delta = createDelta(pending.get(baseId).getData(), obj.getData());
+                if (byOffset.get(id)) {
+                    writeHeader(packed, PackFile.OFS_DELTA, delta.length);
+                    writeOffset(packed, offset - offsets.get(baseId));
+                }
+                else {
+                    writeHeader(packed, PackFile.REF_DELTA, delta.length);
+                    packed.write(GitRepository.fromHex(baseId));
+                }
+                packed.write(deflate(delta));
+            }
+
+            CRC32 crc = new CRC32();
+            crc.update(packed.toByteArray());
+            offsets.put(id, offset);
+            crcs.put(id, crc.getValue());
+            packed.writeTo(pack);
+        }
+        byte[] packChecksum = sha1(pack.toByteArray());
+        pack.write(packChecksum);
+
+        List<String> ids = new ArrayList<String>(offsets.keySet());
+        Collections.sort(ids);
+
+        ByteArrayOutputStream index = new ByteArrayOutputStream();
+        writeInt(index, 0xff744f63);
+        writeInt(index, 2);
+        for (int first = 0; first < 256; ++first) {
+            int count = 0;
+            for (String id : ids) {
+                if (Integer.parseInt(id.substring(0, 2), 16) <= first) {
+                    ++count;
+                }
+            }
+            writeInt(index, count);
+        }
+        for (String id : ids) {
+            index.write(GitRepository.fromHex(id));
+        }
+        for (String id : ids) {
+            writeInt(index, crcs.get(id).intValue());
+        }
+        for (String id : ids) {
+            writeInt(index, offsets.get(id).intValue());
+        }
+        index.write(packChecksum);
+        index.write(sha1(index.toByteArray()));
+
+        String name = gitDir + "/objects/pack/pack-" + (nPacks++);
+        files.write(name + ".pack", pack.toByteArray());
+        files.write(name + ".idx", index.toByteArray());
+        clear();
+    }
+
+    protected void clear() {
+        pending.clear();
+        deltaBases.clear();
+        byOffset.clear();
+    }
+
+    // -------------------------------------------------------
+    // references
+    // -------------------------------------------------------
+
+    public void setRef(String name, String id) throws IOException {
+        files.write(gitDir + "/" + name, id + "\n");
+    }
+
+    /**
+     * Adds the reference to the packed ones, followed by the peeled id, if not
+     * null, as for an annotated tag.
+     */
+    public void setPackedRef(String name, String id, String peeledId) throws IOException {
+        packedRefs.add(id + " " + name);
+        if (peeledId != null) {
+            packedRefs.add("^" + peeledId);
+        }
+
+        StringBuilder sb = new StringBuilder("# pack-refs with: peeled fully-peeled sorted \n");
+        for (String line : packedRefs) {
+            sb.append(line).append('\n');
+        }
+        files.write(gitDir + "/packed-refs", sb.toString());
+    }
+
+    // -------------------------------------------------------
+    // encoding
+    // -------------------------------------------------------
+
+    public static String getId(int type, byte[] data) {
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        byte[] header = (GitObject.TYPE_NAMES[type] + " " + data.length).getBytes(UTF8);
+        raw.write(header, 0, header.length);
+        raw.write(0);
+        raw.write(data, 0, data.length);
+        return GitRepository.toHex(sha1(raw.toByteArray()), 0);
+    }
+
+    protected static byte[] sha1(byte[] bytes) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(bytes);
+        }
+        catch (NoSuchAlgorithmException nsae) {
+            throw new IllegalStateException(nsae);
+        }
+    }
+
+    protected static byte[] deflate(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        DeflaterOutputStream deflater = new DeflaterOutputStream(out, new Deflater());
+        deflater.write(bytes);
+        deflater.close();
+        return out.toByteArray();
+    }
+
+    protected static void writeInt(ByteArrayOutputStream out, int value) {
+        byte[] bytes = ByteBuffer.allocate(4).putInt(value).array();
+        out.write(bytes, 0, 4);
+    }
+
+    protected static void writeHeader(ByteArrayOutputStream out, int type, long size) {
+        int b = (type << 4) | (int)(size & 0x0f);
+        size >>>= 4;
+        while (size != 0) {
+            out.write(b | 0x80);
+            b = (int)(size & 0x7f);
+            size >>>= 7;
+        }
+        out.write(b);
+    }
+
+    protected static void writeOffset(ByteArrayOutputStream out, long distance) {
+        byte[] buf = new byte[10];
+        int pos = buf.length - 1;
+        buf[pos] = (byte)(distance & 0x7f);
+        while ((distance >>>= 7) != 0) {
+            buf[--pos] = (byte)(0x80 | (--distance & 0x7f));
+        }
+        out.write(buf, pos, buf.length - pos);
+    }
+
+    protected static void writeSize(ByteArrayOutputStream out, long size) {
+        while (size >= 0x80) {
+            out.write((int)(size & 0x7f) | 0x80);
+            size >>>= 7;
+        }
+        out.write((int)size);
+    }
+
+    /**
+     * Returns a delta from the base to the target: a copy of their common
+     * prefix, an insert of the middle of the target, and a copy of their
+     * common suffix.
+     */
+    protected static byte[] createDelta(byte[] base, byte[] target) {
+        int prefix = 0;
+        while (prefix < base.length && prefix < target.length && base[prefix] == target[prefix]) {
+            ++prefix;
+        }
+        int suffix = 0;
+        while (suffix < base.length - prefix && suffix < target.length - prefix && base[base.length - 1 - suffix] == target[target.length - 1 - suffix]) {
+            ++suffix;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeSize(out, base.length);
+        writeSize(out, target.length);
+        writeCopy(out, 0, prefix);
+        for (int pos = prefix; pos < target.length - suffix; pos += 0x7f) {
+            int len = Math.min(0x7f, target.length - suffix - pos);
+            out.write(len);
+            out.write(target, pos, len);
+        }
+        writeCopy(out, base.length - suffix, suffix);
+        return out.toByteArray();
+    }
+
+    /**
+     * Writes a copy instruction, with only the nonzero bytes of the offset and
+     * the size.
+     */
+    protected static void writeCopy(ByteArrayOutputStream out, int offset, int size) {
+        if (size == 0) {
+            return;
+        }
+        ByteArrayOutputStream args = new ByteArrayOutputStream();
+        int cmd = 0x80;
+        for (int bi = 0; bi < 4; ++bi) {
+            int b = (offset >>> (8 * bi)) & 0xff;
+            if (b != 0) {
+                cmd |= 1 << bi;
+                args.write(b);
+            }
+        }
+        for (int bi = 0; bi < 3; ++bi) {
+            int b = (size >>> (8 * bi)) & 0xff;
+            if (b != 0) {
+                cmd |= 0x10 << bi;
+                args.write(b);
+            }
+        }
+        out.write(cmd);
+        out.write(args.toByteArray(), 0, args.size());
+    }
+}
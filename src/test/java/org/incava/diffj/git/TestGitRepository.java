@@ -0,0 +1,171 @@
+package org.incava.diffj.git;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.incava.diffj.Lines;
+import org.incava.diffj.TempFiles;
+import org.incava.diffj.lang.DiffJException;
+
+public class TestGitRepository extends TestCase {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private TempFiles files;
+    private GitFixture fixture;
+    private String base;
+    private String offsetDelta;
+    private String refDelta;
+    private String looseBlob;
+    private String tree1;
+    private String commit1;
+    private String commit2;
+    private String commit3;
+    private String tag;
+
+    public TestGitRepository(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new TempFiles();
+        fixture = new GitFixture(files, "repo.git");
+
+        // the first two commits are packed, the second with deltas:
+        String text = new Lines("class A {",
+                                "    int f() { return 1; }",
+                                "}").toString();
+        base = fixture.blob(text);
+        tree1 = fixture.tree(GitFixture.file("A.java", base));
+        commit1 = fixture.commit(tree1);
+
+        offsetDelta = fixture.deltaBlob(base, text.replace("return 1", "return 2"), true);
+        refDelta = fixture.deltaBlob(offsetDelta, text.replace("return 1", "return 3"), false);
+        String tree2 = fixture.tree(GitFixture.file("A.java", offsetDelta), GitFixture.file("B.java", refDelta));
+        commit2 = fixture.commit(tree2, commit1);
+        fixture.writePack();
+
+        // the third is loose, as is the tag:
+        looseBlob = fixture.blob(text.replace("return 1", "return 4"));
+        String tree3 = fixture.tree(GitFixture.file("A.java", looseBlob), GitFixture.file("B.java", refDelta));
+        commit3 = fixture.commit(tree3, commit2);
+        tag = fixture.tag("v1", commit1);
+        fixture.writeLoose();
+
+        fixture.setRef("refs/heads/master", commit3);
+        fixture.setPackedRef("refs/heads/old", commit2, null);
+        fixture.setPackedRef("refs/tags/v1", tag, commit1);
+    }
+
+    protected void tearDown() throws Exception {
+        files.delete();
+        super.tearDown();
+    }
+
+    public GitRepository open() throws DiffJException {
+        return new GitRepository(fixture.getDirectory());
+    }
+
+    public String read(GitRepository repository, String id) throws DiffJException {
+        GitObject obj = repository.read(id, GitObject.BLOB);
+        return new String(obj.getData(), UTF8);
+    }
+
+    public void testReadPacked() throws DiffJException {
+        GitRepository repository = open();
+        assertTrue(read(repository, base).contains("return 1"));
+        assertTrue(read(repository, offsetDelta).contains("return 2"));
+        assertTrue(read(repository, refDelta).contains("return 3"));
+    }
+
+    public void testReadDeltasBeforeBases() throws DiffJException {
+        // the delta of a delta, then the (by then cached) bases:
+        GitRepository repository = open();
+        assertTrue(read(repository, refDelta).contains("return 3"));
+        assertTrue(read(repository, offsetDelta).contains("return 2"));
+        assertTrue(read(repository, base).contains("return 1"));
+        assertTrue(read(repository, refDelta).contains("return 3"));
+    }
+
+    public void testReadLoose() throws DiffJException {
+        GitRepository repository = open();
+        assertTrue(read(repository, looseBlob).contains("return 4"));
+        assertEquals(GitObject.COMMIT, repository.read(commit3).getType());
+    }
+
+    public void testReadWrongType() {
+        try {
+            open().read(commit1, GitObject.BLOB);
+            fail("expected a DiffJException");
+        }
+        catch (DiffJException de) {
+            assertTrue(de.getMessage(), de.getMessage().contains("is a commit, not a blob"));
+        }
+    }
+
+    public void testReadTree() throws DiffJException {
+        List<TreeEntry> entries = open().readTree(tree1);
+        assertEquals(1, entries.size());
+        TreeEntry entry = entries.get(0);
+        assertEquals("A.java", entry.getName());
+        assertEquals(base, entry.getId());
+        assertTrue(entry.isFile());
+        assertFalse(entry.isTree());
+    }
+
+    public void testResolveNames() throws DiffJException {
+        GitRepository repository = open();
+        assertEquals(commit3, repository.resolve("HEAD"));
+        assertEquals(commit3, repository.resolve("master"));
+        assertEquals(commit3, repository.resolve("refs/heads/master"));
+        assertEquals(commit2, repository.resolve("old"));
+        assertEquals(tag, repository.resolve("v1"));
+        assertEquals(commit1, repository.resolve(commit1));
+        assertEquals(commit1, repository.resolve(commit1.substring(0, 7)));
+    }
+
+    public void testResolveSuffixes() throws DiffJException {
+        GitRepository repository = open();
+        assertEquals(commit2, repository.resolve("HEAD^"));
+        assertEquals(commit2, repository.resolve("HEAD^1"));
+        assertEquals(commit2, repository.resolve("HEAD~"));
+        assertEquals(commit1, repository.resolve("HEAD~2"));
+        assertEquals(commit1, repository.resolve("master~1^"));
+        assertEquals(commit1, repository.resolve("old~1"));
+        assertEquals(commit3, repository.resolve("HEAD~0"));
+        assertEquals(commit1, repository.resolve("v1^{}"));
+        assertEquals(commit1, repository.resolve("v1^0"));
+    }
+
+    public void testResolveTree() throws DiffJException {
+        GitRepository repository = open();
+        assertEquals(tree1, repository.resolveTree("v1"));
+        assertEquals(tree1, repository.resolveTree("HEAD~2"));
+        assertEquals(tree1, repository.resolveTree(tree1));
+    }
+
+    public void testResolveInvalid() throws DiffJException {
+        GitRepository repository = open();
+        for (String rev : Arrays.asList("nosuchbranch", "HEAD~3", "HEAD^2", "HEAD~x")) {
+            try {
+                repository.resolve(rev);
+                fail("expected a DiffJException for " + rev);
+            }
+            catch (DiffJException de) {
+                // expected
+            }
+        }
+    }
+
+    public void testNotRepository() throws IOException {
+        try {
+            new GitRepository(files.getDirectory());
+            fail("expected a DiffJException");
+        }
+        catch (DiffJException de) {
+            assertTrue(de.getMessage(), de.getMessage().startsWith("not a git repository"));
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.incava.diffj.git;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import org.incava.analysis.BriefReport;
+import org.incava.diffj.Lines;
+import org.incava.diffj.TempFiles;
+import org.incava.diffj.app.DiffJ;
+import org.incava.diffj.app.Options;
+import org.incava.diffj.lang.DiffJException;
+import org.incava.java.Java;
+
+public class TestRevisionComparison extends TestCase {
+    private TempFiles files;
+    private GitFixture fixture;
+    private String libTree;
+
+    public TestRevisionComparison(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new TempFiles();
+        fixture = new GitFixture(files, "repo.git");
+
+        Lines a1 = new Lines("package src;",
+                             "",
+                             "class A {",
+                             "    int f(int x) { return x + 1; }",
+                             "",
+                             "    int g() { return 0; }",
+                             "}");
+        Lines a2 = new Lines("package src;",
+                             "",
+                             "class A {",
+                             "    int f(int x) { return x + 2; }",
+                             "",
+                             "    int g() { return 0; }",
+                             "}");
+        Lines a3 = new Lines("package src;",
+                             "",
+                             "class A {",
+                             "    int f(int x) { return x + 2; }",
+                             "",
+                             "    int g() { return 1; }",
+                             "",
+                             "    int h() { return 2; }",
+                             "}");
+        Lines b1 = new Lines("package lib;",
+                             "",
+                             "public class B {",
+                             "    public String name() { return \"b\"; }",
+                             "}");
+        Lines b2 = new Lines("package lib;",
+                             "",
+                             "public class B {",
+                             "    protected String name() { return \"B\"; }",
+                             "}");
+
+        // the first commit, and the second with its files as deltas of the
+        // first, are packed:
+        String a1Id = fixture.blob(a1.toString());
+        String b1Id = fixture.blob(b1.toString());
+        String readme1Id = fixture.blob("first\n");
+        String commit1 = fixture.commit(fixture.tree(GitFixture.file("README", readme1Id),
+                                                     GitFixture.dir("lib", fixture.tree(GitFixture.file("B.java", b1Id))),
+                                                     GitFixture.dir("src", fixture.tree(GitFixture.file("A.java", a1Id)))));
+
+        String a2Id = fixture.deltaBlob(a1Id, a2.toString(), true);
+        String b2Id = fixture.deltaBlob(b1Id, b2.toString(), false);
+        libTree = fixture.tree(GitFixture.file("B.java", b2Id));
+        String commit2 = fixture.commit(fixture.tree(GitFixture.file("README", readme1Id),
+                                                     GitFixture.dir("lib", libTree),
+                                                     GitFixture.dir("src", fixture.tree(GitFixture.file("A.java", a2Id)))),
+                                        commit1);
+        fixture.writePack();
+
+        // the third is loose, with the same lib tree as the second:
+        String a3Id = fixture.blob(a3.toString());
+        String readme3Id = fixture.blob("third\n");
+        String commit3 = fixture.commit(fixture.tree(GitFixture.file("README", readme3Id),
+                                                     GitFixture.dir("lib", libTree),
+                                                     GitFixture.dir("src", fixture.tree(GitFixture.file("A.java", a3Id)))),
+                                        commit2);
+        fixture.writeLoose();
+        fixture.setRef("refs/heads/master", commit3);
+
+        // the same trees, checked out:
+        writeTree("HEAD~2", a1, b1, "first\n");
+        writeTree("HEAD~1", a2, b2, "first\n");
+        writeTree("HEAD", a3, b2, "third\n");
+    }
+
+    protected void tearDown() throws Exception {
+        files.delete();
+        super.tearDown();
+    }
+
+    protected void writeTree(String rev, Lines a, Lines b, String readme) throws IOException {
+        files.write("trees/" + rev + "/README", readme);
+        files.write("trees/" + rev + "/lib/B.java", b);
+        files.write("trees/" + rev + "/src/A.java", a);
+    }
+
+    protected String getTreePath(String rev) {
+        return files.getFile("trees/" + rev).getPath();
+    }
+
+    /**
+     * Returns the output and exit value of diffj run with the arguments.
+     */
+    protected String run(String ... args) throws IOException {
+        Options opts = new Options();
+        List<String> names = opts.process(Arrays.asList(args));
+        StringWriter out = new StringWriter();
+        ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int exitValue = DiffJ.process(opts, names, out, new PrintStream(err, true, "UTF-8"), null, null);
+        assertEquals("", err.toString("UTF-8"));
+        return exitValue + "\n" + out;
+    }
+
+    /**
+     * Asserts that the output of the revisions compared is the same as that of
+     * their trees compared, with the "rev:path" file names of the first
+     * replaced by those of the second.
+     */
+    protected void assertSameAsTrees(String fromRev, String toRev, String ... options) throws IOException {
+        List<String> gitArgs = new ArrayList<String>(Arrays.asList(options));
+        gitArgs.addAll(Arrays.asList("--git", fixture.getDirectory().getPath(), fromRev, toRev));
+        String gitOutput = run(gitArgs.toArray(new String[gitArgs.size()]));
+
+        List<String> treeArgs = new ArrayList<String>(Arrays.asList(options));
+        treeArgs.addAll(Arrays.asList("-r", getTreePath(fromRev), getTreePath(toRev)));
+        String treeOutput = run(treeArgs.toArray(new String[treeArgs.size()]));
+
+        String expected = treeOutput.replace(getTreePath(fromRev) + File.separator, fromRev + ":").replace(getTreePath(toRev) + File.separator, toRev + ":");
+        assertEquals(expected, gitOutput);
+    }
+
+    public void testPackedToPacked() throws IOException {
+        assertSameAsTrees("HEAD~2", "HEAD~1");
+        assertSameAsTrees("HEAD~2", "HEAD~1", "--brief");
+    }
+
+    public void testPackedToLoose() throws IOException {
+        assertSameAsTrees("HEAD~1", "HEAD");
+        assertSameAsTrees("HEAD~1", "HEAD", "--brief");
+    }
+
+    public void testAcrossBoth() throws IOException {
+        assertSameAsTrees("HEAD~2", "HEAD");
+        assertSameAsTrees("HEAD~2", "HEAD", "--jobs", "4");
+    }
+
+    public void testOutputHasChanges() throws IOException {
+        String output = run("--brief", "--git", fixture.getDirectory().getPath(), "HEAD~2", "HEAD");
+        assertTrue(output, output.startsWith("1\n"));
+        assertTrue(output, output.contains("HEAD~2:lib/B.java <=> HEAD:lib/B.java"));
+        assertTrue(output, output.contains("HEAD~2:src/A.java <=> HEAD:src/A.java"));
+        assertFalse(output, output.contains("README"));
+    }
+
+    public void testSameRevisions() throws IOException {
+        assertEquals("0\n", run("--git", fixture.getDirectory().getPath(), "HEAD", "master"));
+    }
+
+    public void testSubtreesWithSameIdSkipped() throws DiffJException {
+        final List<String> treesRead = new ArrayList<String>();
+        GitRepository repository = new GitRepository(fixture.getDirectory()) {
+                public List<TreeEntry> readTree(String id) throws DiffJException {
+                    treesRead.add(id);
+                    return super.readTree(id);
+                }
+            };
+
+        StringWriter out = new StringWriter();
+        new RevisionComparison(repository, "HEAD~1", Java.SOURCE_1_5, "HEAD", Java.SOURCE_1_5, 1).compare(new BriefReport(out));
+        assertEquals(4, treesRead.size());
+        assertFalse(treesRead.toString(), treesRead.contains(libTree));
+        assertTrue(out.toString(), out.toString().contains("HEAD~1:src/A.java <=> HEAD:src/A.java"));
+        assertFalse(out.toString(), out.toString().contains("B.java"));
+    }
+}
@@ -0,0 +1,165 @@
+package org.incava.diffj.io;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import junit.framework.TestCase;
+import org.incava.analysis.BriefReport;
+import org.incava.analysis.Moves;
+import org.incava.analysis.Report;
+import org.incava.diffj.Lines;
+import org.incava.diffj.TempFiles;
+import org.incava.diffj.lang.DiffJException;
+import org.incava.java.Java;
+
+public class TestJavaArchive extends TestCase {
+    private TempFiles files;
+    private StringWriter output;
+    private Report report;
+    private List<String> read;
+
+    public TestJavaArchive(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new TempFiles();
+        output = new StringWriter();
+        report = new BriefReport(output);
+        read = new ArrayList<String>();
+    }
+
+    protected void tearDown() throws Exception {
+        Moves.detectMoves = false;
+        files.delete();
+        super.tearDown();
+    }
+
+    /**
+     * Writes an archive of the entries, as pairs of names and contents.
+     */
+    public File writeArchive(String name, String ... namesAndContents) throws IOException {
+        File file = files.getFile(name);
+        ZipOutputStream out = new ZipOutputStream(new FileOutputStream(file));
+        try {
+            for (int ni = 0; ni < namesAndContents.length; ni += 2) {
+                out.putNextEntry(new ZipEntry(namesAndContents[ni]));
+                out.write(namesAndContents[ni + 1].getBytes("UTF-8"));
+                out.closeEntry();
+            }
+        }
+        finally {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Returns the archive, which notes the names of the entries that it
+     * reads.
+     */
+    public JavaArchive createArchive(File file) {
+        return new JavaArchive(file, Java.SOURCE_1_5, 1) {
+            public static final long serialVersionUID = 1L;
+
+            public JavaFile createJavaFile(ZipEntry entry) throws DiffJException {
+                read.add(getName() + "!/" + entry.getName());
+                return super.createJavaFile(entry);
+            }
+        };
+    }
+
+    public String getClass(String name, int value) {
+        return new Lines("package p;",
+                         "",
+                         "class " + name + " {",
+                         "    int m() { return " + value + "; }",
+                         "}").toString();
+    }
+
+    public void compare(File fromFile, File toFile) throws DiffJException {
+        createArchive(toFile).compareFrom(report, createArchive(fromFile));
+        report.flush();
+    }
+
+    public void testIdenticalEntrySkipped() throws Exception {
+        File fromFile = writeArchive("from.jar", "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n", "p/A.java", getClass("A", 1));
+        File toFile = writeArchive("to.jar", "META-INF/MANIFEST.MF", "Manifest-Version: 1.0\n", "p/A.java", getClass("A", 1));
+        compare(fromFile, toFile);
+
+        assertEquals("", output.toString());
+        assertEquals(1, report.getStats().getFilesIdentical());
+        assertEquals(0, report.getStats().getFilesCompared());
+        // not decompressed:
+        assertEquals(new ArrayList<String>(), read);
+    }
+
+    public void testChangedEntry() throws Exception {
+        File fromFile = writeArchive("from.jar", "p/A.java", getClass("A", 1), "p/B.java", getClass("B", 1));
+        File toFile = writeArchive("to.jar", "p/A.java", getClass("A", 2), "p/B.java", getClass("B", 1));
+        compare(fromFile, toFile);
+
+        String str = output.toString();
+        assertTrue(str, str.contains(fromFile.getPath() + "!/p/A.java <=> " + toFile.getPath() + "!/p/A.java"));
+        assertTrue(str, str.contains("code changed in m()"));
+        assertFalse(str, str.contains("B.java"));
+        assertEquals(1, report.getStats().getFilesCompared());
+        assertEquals(1, report.getStats().getFilesIdentical());
+        assertEquals(2, read.size());
+        assertTrue(read.toString(), read.contains("from.jar!/p/A.java"));
+        assertTrue(read.toString(), read.contains("to.jar!/p/A.java"));
+    }
+
+    public void testEntriesInOneArchive() throws Exception {
+        File fromFile = writeArchive("from.jar", "p/Old.java", getClass("Old", 1));
+        File toFile = writeArchive("to.jar", "p/New.java", getClass("New", 1));
+        compare(fromFile, toFile);
+
+        assertEquals("", output.toString());
+        assertEquals(0, report.getStats().getFilesCompared());
+        assertEquals(new ArrayList<String>(), read);
+    }
+
+    public void testEntriesInOneArchiveWithMoves() throws Exception {
+        Moves.detectMoves = true;
+        File fromFile = writeArchive("from.jar", "p/Old.java", getClass("Old", 1));
+        File toFile = writeArchive("to.jar", "p/New.java", getClass("New", 1));
+        compare(fromFile, toFile);
+
+        List<Moves.Move> moves = report.getMoves().getMoves();
+        assertEquals(1, moves.size());
+        assertEquals("method m() moved from Old to New", moves.get(0).getMessage());
+        assertEquals(2, read.size());
+    }
+
+    public void assertCannotCompare(String expected, File fromFile, File toFile) throws Exception {
+        JavaElementFactory factory = new JavaElementFactory();
+        JavaFSElement fromElmt = factory.createElement(fromFile, null, Java.SOURCE_1_5, false);
+        JavaFSElement toElmt = factory.createElement(toFile, null, Java.SOURCE_1_5, false);
+        try {
+            fromElmt.compareTo(report, toElmt);
+            fail("expected a DiffJException");
+        }
+        catch (DiffJException de) {
+            assertEquals(expected, de.getMessage());
+        }
+    }
+
+    public void testCannotCompareWithFileOrDirectory() throws Exception {
+        File archive = writeArchive("a.jar", "p/A.java", getClass("A", 1));
+        File file = files.write("A.java", getClass("A", 1));
+        File dir = files.getFile("dir");
+        dir.mkdirs();
+
+        assertCannotCompare("Cannot compare archive " + archive.getPath() + " with file " + file.getPath(), archive, file);
+        assertCannotCompare("Cannot compare file " + file.getPath() + " with archive " + archive.getPath(), file, archive);
+        assertCannotCompare("Cannot compare archive " + archive.getPath() + " with directory " + dir.getPath(), archive, dir);
+        assertCannotCompare("Cannot compare directory " + dir.getPath() + " with archive " + archive.getPath(), dir, archive);
+    }
+}
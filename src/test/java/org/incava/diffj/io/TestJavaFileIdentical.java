@@ -0,0 +1,133 @@
+package org.incava.diffj.io;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import junit.framework.TestCase;
+import org.incava.analysis.BriefReport;
+import org.incava.analysis.Report;
+import org.incava.diffj.Lines;
+import org.incava.diffj.TempFiles;
+import org.incava.diffj.lang.DiffJException;
+import org.incava.java.Java;
+
+/**
+ * Tests skipping files with the same contents, or that are the same file,
+ * without parsing them.
+ */
+public class TestJavaFileIdentical extends TestCase {
+    private static final String TEXT = new Lines("class Test {",
+                                                 "    int f() { return 1; }",
+                                                 "}").toString();
+
+    private TempFiles files;
+    private StringWriter output;
+    private Report report;
+    private List<String> read;
+
+    public TestJavaFileIdentical(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new TempFiles();
+        output = new StringWriter();
+        report = new BriefReport(output);
+        read = new ArrayList<String>();
+    }
+
+    protected void tearDown() throws Exception {
+        files.delete();
+        super.tearDown();
+    }
+
+    public JavaFile createFile(String contents) throws DiffJException {
+        return createFile(contents, Java.SOURCE_1_5);
+    }
+
+    public JavaFile createFile(String contents, String source) throws DiffJException {
+        return new JavaFile("-", contents, source);
+    }
+
+    public void testIsIdentical() throws DiffJException {
+        assertTrue(createFile(TEXT).isIdentical(createFile(TEXT)));
+        assertFalse(createFile(TEXT).isIdentical(createFile(TEXT + " ")));
+        // the same length:
+        assertFalse(createFile(TEXT).isIdentical(createFile(TEXT.replace('1', '2'))));
+        assertFalse(createFile(TEXT).isIdentical(createFile(TEXT, Java.SOURCE_1_4)));
+    }
+
+    public void testIsIdenticalWithHashes() throws DiffJException {
+        JavaFile fromFile = createFile(TEXT);
+        JavaFile sameFile = createFile(TEXT);
+        JavaFile otherFile = createFile(TEXT.replace('1', '2'));
+        for (JavaFile file : new JavaFile[] { fromFile, sameFile, otherFile }) {
+            file.getContentHash();
+        }
+        assertTrue(fromFile.isIdentical(sameFile));
+        assertFalse(fromFile.isIdentical(otherFile));
+    }
+
+    public void testIdenticalCounted() throws DiffJException {
+        JavaFile.compare(report, createFile(TEXT), createFile(TEXT));
+        report.flush();
+        assertEquals("", output.toString());
+        assertEquals(1, report.getStats().getFilesIdentical());
+        assertEquals(0, report.getStats().getFilesEquivalent());
+        assertEquals(0, report.getStats().getFilesCompared());
+    }
+
+    public void testIdenticalNotParsed() throws DiffJException {
+        // invalid, but not parsed, and so without an error:
+        String invalid = "class Test { int f( }";
+        JavaFile.compare(report, createFile(invalid), createFile(invalid));
+        assertEquals(1, report.getStats().getFilesIdentical());
+
+        try {
+            JavaFile.compare(report, createFile(invalid), createFile(invalid + " int g;"));
+            fail("expected a DiffJException");
+        }
+        catch (DiffJException de) {
+            assertTrue(de.getMessage(), de.getMessage().contains("Error parsing -"));
+        }
+    }
+
+    /**
+     * Returns the directory, which notes the names of the elements that it
+     * reads.
+     */
+    public JavaDirectory createDirectory(File dir) {
+        return new JavaDirectory(dir, Java.SOURCE_1_5, false) {
+            public static final long serialVersionUID = 1L;
+
+            public JavaFSElement createElement(File file, BasicFileAttributes attrs) throws DiffJException {
+                read.add(getName() + "/" + file.getName());
+                return super.createElement(file, attrs);
+            }
+        };
+    }
+
+    public void testSameFileNotRead() throws Exception {
+        File fromFile = files.write("from/Test.java", TEXT);
+        File toDir = files.getFile("to");
+        toDir.mkdirs();
+        Files.createLink(new File(toDir, "Test.java").toPath(), fromFile.toPath());
+
+        createDirectory(toDir).compareFrom(report, createDirectory(files.getFile("from")));
+        assertEquals(1, report.getStats().getFilesIdentical());
+        assertEquals(new ArrayList<String>(), read);
+    }
+
+    public void testCopyRead() throws Exception {
+        files.write("from/Test.java", TEXT);
+        files.write("to/Test.java", TEXT);
+
+        createDirectory(files.getFile("to")).compareFrom(report, createDirectory(files.getFile("from")));
+        assertEquals(1, report.getStats().getFilesIdentical());
+        assertEquals(2, read.size());
+    }
+}
@@ -0,0 +1,92 @@
+package org.incava.diffj.io;
+
+import java.io.StringWriter;
+import junit.framework.TestCase;
+import org.incava.analysis.BriefReport;
+import org.incava.analysis.Report;
+import org.incava.diffj.Lines;
+import org.incava.diffj.lang.DiffJException;
+import org.incava.java.Java;
+
+/**
+ * Tests skipping files with the same tokens, ignoring whitespace and comments,
+ * without parsing them.
+ */
+public class TestJavaFileSameTokens extends TestCase {
+    private StringWriter output;
+    private Report report;
+
+    public TestJavaFileSameTokens(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        output = new StringWriter();
+        report = new BriefReport(output);
+    }
+
+    public JavaFile createFile(Lines lines) throws DiffJException {
+        return new JavaFile("-", lines.toString(), Java.SOURCE_1_5);
+    }
+
+    public void compare(Lines fromLines, Lines toLines) throws DiffJException {
+        JavaFile.compare(report, createFile(fromLines), createFile(toLines));
+        report.flush();
+    }
+
+    public void testWhitespaceAndComments() throws DiffJException {
+        Lines fromLines = new Lines("class Test {",
+                                    "    int f(int x) { return x + 1; }",
+                                    "}");
+        Lines toLines = new Lines("/** The test. */",
+                                  "class Test",
+                                  "{",
+                                  "    // the function",
+                                  "    int f(int x) {",
+                                  "        return x+1; /* plus one */",
+                                  "    }",
+                                  "}");
+        assertTrue(createFile(fromLines).hasSameTokens(createFile(toLines)));
+
+        compare(fromLines, toLines);
+        assertEquals("", output.toString());
+        assertFalse(report.getDifferences().wasAdded());
+        assertEquals(1, report.getStats().getFilesEquivalent());
+        assertEquals(0, report.getStats().getFilesIdentical());
+        assertEquals(0, report.getStats().getFilesCompared());
+    }
+
+    public void testTokenDifference() throws DiffJException {
+        Lines fromLines = new Lines("class Test {",
+                                    "    int f(int x) { return x + 1; }",
+                                    "}");
+        Lines toLines = new Lines("class Test {",
+                                  "    // the function",
+                                  "    int f(int x) { return x + 2; }",
+                                  "}");
+        assertFalse(createFile(fromLines).hasSameTokens(createFile(toLines)));
+
+        compare(fromLines, toLines);
+        assertTrue(output.toString(), output.toString().contains("code changed in f(int)"));
+        assertEquals(0, report.getStats().getFilesEquivalent());
+        assertEquals(1, report.getStats().getFilesCompared());
+    }
+
+    public void testDifferentNumberOfTokens() throws DiffJException {
+        Lines fromLines = new Lines("class Test {",
+                                    "    int f(int x) { return x; }",
+                                    "}");
+        Lines toLines = new Lines("class Test {",
+                                  "    int f(int x) { return -x; }",
+                                  "}");
+        assertFalse(createFile(fromLines).hasSameTokens(createFile(toLines)));
+    }
+
+    public void testDifferentSourceVersions() throws DiffJException {
+        Lines lines = new Lines("class Test {",
+                                "}");
+        JavaFile fromFile = new JavaFile("-", lines.toString(), Java.SOURCE_1_4);
+        assertFalse(fromFile.hasSameTokens(createFile(lines)));
+    }
+}
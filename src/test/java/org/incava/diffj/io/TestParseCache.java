@@ -0,0 +1,215 @@
+package org.incava.diffj.io;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import junit.framework.TestCase;
+import net.sourceforge.pmd.ast.JavaParserConstants;
+import net.sourceforge.pmd.ast.Token;
+import org.incava.diffj.Lines;
+import org.incava.diffj.TempFiles;
+import org.incava.diffj.lang.DiffJException;
+import org.incava.java.Java;
+
+public class TestParseCache extends TestCase {
+    private TempFiles files;
+
+    public TestParseCache(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        files = new TempFiles();
+    }
+
+    protected void tearDown() throws Exception {
+        JavaFile.parseCache = null;
+        files.delete();
+        super.tearDown();
+    }
+
+    public JavaFile createFile(String contents) throws DiffJException {
+        return new JavaFile("-", contents, Java.SOURCE_1_5);
+    }
+
+    public JavaFile createFile(Lines lines) throws DiffJException {
+        return createFile(lines.toString());
+    }
+
+    public File getEntryFile(ParseCache cache, JavaFile file) {
+        return cache.getEntryFile(file, ParseCache.getDigest(file));
+    }
+
+    public void assertTokenEquals(String msg, Token expected, Token actual) {
+        assertEquals(msg, expected.kind, actual.kind);
+        assertEquals(msg, expected.image, actual.image);
+        assertEquals(msg, expected.beginLine, actual.beginLine);
+        assertEquals(msg, expected.beginColumn, actual.beginColumn);
+        assertEquals(msg, expected.endLine, actual.endLine);
+        assertEquals(msg, expected.endColumn, actual.endColumn);
+        assertEquals(msg, expected instanceof Token.GTToken, actual instanceof Token.GTToken);
+        if (expected instanceof Token.GTToken) {
+            assertEquals(msg, ((Token.GTToken)expected).realKind, ((Token.GTToken)actual).realKind);
+        }
+    }
+
+    public void testRoundTrip() throws Exception {
+        Lines lines = new Lines("import java.util.*;",
+                                "",
+                                "/** The type. */",
+                                "class Test {",
+                                "    // first",
+                                "    /* second */",
+                                "    Map<String, List<List<String>>> map;",
+                                "",
+                                "    int f(int x) { return x >> 1; }",
+                                "}");
+        ParseCache cache = new ParseCache(files.getFile("cache"));
+        List<Token> expected = cache.getTokens(createFile(lines));
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+
+        List<Token> actual = cache.getTokens(createFile(lines));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertNotSame(expected, actual);
+        assertEquals(expected.size(), actual.size());
+
+        int nComments = 0;
+        int nRealKinds = 0;
+        for (int ti = 0; ti < expected.size(); ++ti) {
+            Token expTk = expected.get(ti);
+            Token actTk = actual.get(ti);
+            assertTokenEquals("token " + ti, expTk, actTk);
+            if (expTk instanceof Token.GTToken && ((Token.GTToken)expTk).realKind == JavaParserConstants.RUNSIGNEDSHIFT) {
+                ++nRealKinds;
+            }
+
+            Token expSt = expTk.specialToken;
+            Token actSt = actTk.specialToken;
+            while (expSt != null) {
+                assertNotNull("special of token " + ti, actSt);
+                assertTokenEquals("special of token " + ti, expSt, actSt);
+                assertSame(actSt, actSt.specialToken == null ? actSt : actSt.specialToken.next);
+                if (expSt.image.startsWith("/")) {
+                    ++nComments;
+                }
+                expSt = expSt.specialToken;
+                actSt = actSt.specialToken;
+            }
+            assertNull("special of token " + ti, actSt);
+        }
+        assertEquals(3, nComments);
+        // ">>>" closing the generics:
+        assertEquals(1, nRealKinds);
+    }
+
+    public void testParsedFromCache() throws Exception {
+        Lines lines = new Lines("class Test {",
+                                "    java.util.List<java.util.List<String>> list;",
+                                "}");
+        JavaFile.parseCache = new ParseCache(files.getFile("cache"));
+        createFile(lines).compile();
+        JavaFile cached = createFile(lines);
+        assertNotNull(cached.compile());
+        assertEquals(1, JavaFile.parseCache.getHits());
+    }
+
+    public void testFormatVersionChanged() throws Exception {
+        ParseCache cache = new ParseCache(files.getFile("cache"));
+        JavaFile file = createFile("class Test {}");
+        cache.getTokens(file);
+
+        // the format version follows the magic number:
+        File entry = getEntryFile(cache, file);
+        byte[] bytes = Files.readAllBytes(entry.toPath());
+        bytes[7] = (byte)(ParseCache.FORMAT_VERSION - 1);
+        files.write("cache/" + entry.getName(), bytes);
+
+        cache.getTokens(file);
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+
+        // and replaced:
+        cache.getTokens(file);
+        assertEquals(1, cache.getHits());
+    }
+
+    public void testParserVersionChanged() throws Exception {
+        ParseCache cache = new ParseCache(files.getFile("cache"));
+        JavaFile file = createFile("class Test {}");
+        cache.getTokens(file);
+
+        File entry = getEntryFile(cache, file);
+        String version = ParseCache.getParserVersion();
+        String otherVersion = version.substring(0, version.length() - 1) + (version.endsWith("0") ? "1" : "0");
+        byte[] bytes = Files.readAllBytes(entry.toPath());
+        String str = new String(bytes, "ISO-8859-1");
+        int pos = str.indexOf(version);
+        assertTrue(pos > 0);
+        files.write("cache/" + entry.getName(), (str.substring(0, pos) + otherVersion + str.substring(pos + version.length())).getBytes("ISO-8859-1"));
+
+        cache.getTokens(file);
+        assertEquals(0, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    public void testDigestMismatch() throws Exception {
+        ParseCache cache = new ParseCache(files.getFile("cache"));
+        JavaFile file = createFile("class A {}");
+        JavaFile other = createFile("class B {}");
+        cache.getTokens(file);
+
+        // an entry for other contents, as if the names of the two collided:
+        files.write("cache/" + getEntryFile(cache, other).getName(), Files.readAllBytes(getEntryFile(cache, file).toPath()));
+        List<Token> tokens = cache.getTokens(other);
+        assertEquals(0, cache.getHits());
+        assertEquals("B", tokens.get(1).image);
+    }
+
+    public void testReplacedEntryCountedOnce() throws Exception {
+        File dir = files.getFile("cache");
+        ParseCache cache = new ParseCache(dir);
+        JavaFile file = createFile("class Test {}");
+        cache.getTokens(file);
+        long size = cache.getSize();
+        assertEquals(getEntryFile(cache, file).length(), size);
+
+        cache.write(file, ParseCache.getDigest(file), file.readTokens());
+        assertEquals(size, cache.getSize());
+        assertEquals(size, new ParseCache(dir).getSize());
+    }
+
+    public void testLeastRecentlyUsedEvicted() throws Exception {
+        File dir = files.getFile("cache");
+        JavaFile[] javaFiles = new JavaFile[4];
+        for (int fi = 0; fi < javaFiles.length; ++fi) {
+            javaFiles[fi] = createFile("class T" + fi + " {}");
+        }
+
+        // room for three and a half entries, all of the same size:
+        ParseCache probe = new ParseCache(files.getFile("probe"));
+        probe.getTokens(javaFiles[0]);
+        long entrySize = probe.getSize();
+        ParseCache cache = new ParseCache(dir, entrySize * 7 / 2);
+
+        long now = System.currentTimeMillis();
+        for (int fi = 0; fi < 3; ++fi) {
+            cache.getTokens(javaFiles[fi]);
+            getEntryFile(cache, javaFiles[fi]).setLastModified(now - (10 - fi) * 60 * 1000L);
+        }
+        assertEquals(3 * entrySize, cache.getSize());
+
+        // the oldest is used, leaving the second as the least recently used:
+        cache.getTokens(javaFiles[0]);
+        assertEquals(1, cache.getHits());
+
+        cache.getTokens(javaFiles[3]);
+        assertEquals(3 * entrySize, cache.getSize());
+        assertTrue(getEntryFile(cache, javaFiles[0]).isFile());
+        assertFalse(getEntryFile(cache, javaFiles[1]).isFile());
+        assertTrue(getEntryFile(cache, javaFiles[2]).isFile());
+        assertTrue(getEntryFile(cache, javaFiles[3]).isFile());
+    }
+}
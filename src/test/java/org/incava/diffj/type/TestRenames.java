@@ -0,0 +1,84 @@
+package org.incava.diffj.type;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+import net.sourceforge.pmd.ast.JavaParserConstants;
+import net.sourceforge.pmd.ast.Token;
+import org.incava.diffj.code.MinHash;
+import org.incava.ijdk.lang.Pair;
+
+public class TestRenames extends TestCase {
+    public TestRenames(String name) {
+        super(name);
+    }
+
+    public int[] signature(String text) {
+        List<Token> tokens = new ArrayList<Token>();
+        for (String image : text.split(" ")) {
+            Token tk = Token.newToken(JavaParserConstants.IDENTIFIER);
+            tk.kind = JavaParserConstants.IDENTIFIER;
+            tk.image = image;
+            tokens.add(tk);
+        }
+        return MinHash.getSignature(tokens);
+    }
+
+    public List<Pair<Integer, Integer>> getMatches(int[][] fromSigs, int[][] toSigs) {
+        return new Renames(Arrays.asList(fromSigs), Arrays.asList(toSigs)).getMatches();
+    }
+
+    public void assertMatch(int fromIdx, int toIdx, Pair<Integer, Integer> match) {
+        assertEquals("from", Integer.valueOf(fromIdx), match.getFirst());
+        assertEquals("to",   Integer.valueOf(toIdx),   match.getSecond());
+    }
+
+    public void testTooShort() {
+        assertNull(signature("a b c"));
+    }
+
+    public void testSameSimilarity() {
+        int[] sig = signature("if ( x ) return y ; else return z ;");
+        assertEquals(1.0, MinHash.getSimilarity(sig, signature("if ( x ) return y ; else return z ;")));
+    }
+
+    public void testDifferentSimilarity() {
+        int[] from = signature("if ( x ) return y ; else return z ;");
+        int[] to = signature("for ( int i = 0 ; i < n ; ++ i ) sum += i ;");
+        assertTrue(MinHash.getSimilarity(from, to) < 0.5);
+    }
+
+    public void testMatched() {
+        int[][] fromSigs = new int[][] {
+            signature("for ( int i = 0 ; i < n ; ++ i ) sum += i ;"),
+            signature("if ( x ) return y ; else return z ;"),
+        };
+        int[][] toSigs = new int[][] {
+            signature("if ( x ) return y ; else return z ;"),
+            signature("while ( it . hasNext ( ) ) it . next ( ) . close ( ) ;"),
+        };
+        List<Pair<Integer, Integer>> matches = getMatches(fromSigs, toSigs);
+        assertEquals(1, matches.size());
+        assertMatch(1, 0, matches.get(0));
+    }
+
+    public void testEachMatchedOnce() {
+        int[][] fromSigs = new int[][] {
+            signature("if ( x ) return y ; else return z ;"),
+            signature("if ( x ) return y ; else return z ;"),
+        };
+        int[][] toSigs = new int[][] {
+            signature("if ( x ) return y ; else return z ;"),
+        };
+        List<Pair<Integer, Integer>> matches = getMatches(fromSigs, toSigs);
+        assertEquals(1, matches.size());
+        assertMatch(0, 0, matches.get(0));
+    }
+
+    public void testNullsNotMatched() {
+        int[][] fromSigs = new int[][] { null, signature("if ( x ) return y ; else return z ;") };
+        int[][] toSigs = new int[][] { null };
+        assertEquals(0, getMatches(fromSigs, toSigs).size());
+    }
+}
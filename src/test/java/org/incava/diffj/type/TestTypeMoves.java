@@ -0,0 +1,118 @@
+package org.incava.diffj.type;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+import org.incava.analysis.BriefReport;
+import org.incava.analysis.Moves;
+import org.incava.analysis.Report;
+import org.incava.diffj.DiffJTest;
+import org.incava.diffj.Lines;
+import org.incava.diffj.io.JavaDirectory;
+import org.incava.diffj.io.JavaFile;
+
+public class TestTypeMoves extends DiffJTest {
+    private File tmpDir;
+
+    public TestTypeMoves(String name) {
+        super(name);
+    }
+
+    protected void setUp() throws Exception {
+        super.setUp();
+        Moves.detectMoves = true;
+    }
+
+    protected void tearDown() throws Exception {
+        Moves.detectMoves = false;
+        if (tmpDir != null) {
+            delete(tmpDir);
+        }
+        super.tearDown();
+    }
+
+    protected void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    protected File write(File dir, String name, Lines lines) throws IOException {
+        dir.mkdirs();
+        File file = new File(dir, name);
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write(lines.toString());
+        }
+        finally {
+            writer.close();
+        }
+        return file;
+    }
+
+    protected void assertMoved(String expected, Report report) {
+        List<Moves.Move> moves = report.getMoves().getMoves();
+        assertEquals(1, moves.size());
+        assertEquals(expected, moves.get(0).getMessage());
+    }
+
+    public void testMovedFromRemovedType() throws Exception {
+        Lines fromLines = new Lines("class A {",
+                                    "}",
+                                    "",
+                                    "class C {",
+                                    "    int m() { return 1; }",
+                                    "}");
+
+        Lines toLines = new Lines("class A {",
+                                  "    int m() { return 1; }",
+                                  "}");
+
+        Report report = new BriefReport(new StringWriter());
+        JavaFile fromFile = new JavaFile("-", fromLines.toString(), getSource());
+        JavaFile toFile = new JavaFile("-", toLines.toString(), getSource());
+        JavaFile.compare(report, fromFile, toFile);
+
+        assertMoved("method m() moved from C to A", report);
+    }
+
+    public void testMovedToFileInOneDirectory() throws Exception {
+        tmpDir = File.createTempFile("diffj", "");
+        tmpDir.delete();
+        File fromDir = new File(tmpDir, "from");
+        File toDir = new File(tmpDir, "to");
+
+        write(fromDir, "A.java", new Lines("class A {",
+                                           "    int m() { return 1; }",
+                                           "",
+                                           "    int n() { return 2; }",
+                                           "}"));
+
+        write(toDir, "A.java", new Lines("class A {",
+                                         "    int n() { return 2; }",
+                                         "}"));
+
+        File toB = write(toDir, "B.java", new Lines("class B {",
+                                                    "    int m() { return 1; }",
+                                                    "}"));
+
+        StringWriter output = new StringWriter();
+        Report report = new BriefReport(output);
+        new JavaDirectory(toDir, getSource(), true).compareFrom(report, new JavaDirectory(fromDir, getSource(), true));
+
+        assertMoved("method m() moved from A to B", report);
+
+        Moves.Move move = report.getMoves().getMoves().get(0);
+        assertEquals(toB.getPath(), move.getTo().getFileName());
+        assertEquals(2, move.getTo().getLine());
+
+        report.writeMoves();
+        assertTrue(output.toString(), output.toString().endsWith(toB.getPath() + ":2: method m() moved from A to B" + System.getProperty("line.separator")));
+    }
+}